@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.baseline.javac;
+
+import com.google.auto.service.AutoService;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.api.BasicJavacTask;
+import com.sun.tools.javac.util.Log;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compiler plugin that records every diagnostic javac reports into a file, in the format described by
+ * {@link DiagnosticsWriter}, so that build tooling doesn't have to scrape them back out of javac's output.
+ *
+ * <p>Usage: {@code -Xplugin:BaselineJavacDiagnostics --out <file>}. javac splits plugin arguments on whitespace, so
+ * {@code <file>} can also be given as a {@code file:} URI, which can name any path.
+ */
+@AutoService(Plugin.class)
+public final class BaselineJavacDiagnostics implements Plugin {
+    @Override
+    public String getName() {
+        return getClass().getSimpleName();
+    }
+
+    @Override
+    public void init(JavacTask task, String... args) {
+        List<String> listArgs = Arrays.asList(args);
+        int outIndex = listArgs.indexOf("--out");
+        if (outIndex == -1 || listArgs.size() <= outIndex + 1) {
+            throw new IllegalArgumentException("No --out specified");
+        }
+        if (!(task instanceof BasicJavacTask)) {
+            throw new IllegalArgumentException("JavacTask not instance of BasicJavacTask");
+        }
+
+        DiagnosticsWriter writer;
+        try {
+            writer = new DiagnosticsWriter(outputFile(listArgs.get(outIndex + 1)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        BasicJavacTask javacTask = (BasicJavacTask) task;
+        Log log = Log.instance(javacTask.getContext());
+        new RecordingDiagnosticHandler(log, writer);
+        task.addTaskListener(new TaskListener() {
+            @Override
+            public void started(TaskEvent event) { }
+
+            @Override
+            public void finished(TaskEvent event) {
+                // Java 8 compiles everything after annotation processing in a new context, whose log starts from
+                // javac's default diagnostic handler
+                if (event.getKind() == TaskEvent.Kind.ANNOTATION_PROCESSING) {
+                    Log finalLog = Log.instance(javacTask.getContext());
+                    if (finalLog != log) {
+                        new RecordingDiagnosticHandler(finalLog, writer);
+                    }
+                }
+                // Errors are flushed as they are reported; this bounds how long warnings sit in the buffer. From the
+                // first generated class on, every diagnostic is written right away: they are rare by then, and
+                // before Java 9's COMPILATION event there is no later event to flush the final summaries on.
+                if (event.getKind() == TaskEvent.Kind.GENERATE) {
+                    writer.flushEachDiagnostic();
+                } else if (event.getKind() == TaskEvent.Kind.ANALYZE
+                        || event.getKind().name().equals("COMPILATION")) {
+                    writer.flush();
+                }
+            }
+        });
+    }
+
+    private static Path outputFile(String value) {
+        return value.startsWith("file:") ? Paths.get(URI.create(value)) : Paths.get(value);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.baseline.javac;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Writes one line per diagnostic, with tab-separated fields:
+ *
+ * <pre>
+ * kind  code  line  column  file  message
+ * </pre>
+ *
+ * <p>{@code kind} is a {@link Diagnostic.Kind} name, {@code line} and {@code column} are -1 and {@code file} is empty
+ * when the diagnostic has no position, and backslashes, tabs and newlines in {@code file} and {@code message} are
+ * escaped as {@code \\}, {@code \t} and {@code \n}.
+ *
+ * <p>Diagnostics are buffered, and appended to the file when {@linkplain #flush flushed}. The file is only open while
+ * it is being appended to, so nothing is left open in a long-lived compiler process however the compilation ends.
+ */
+final class DiagnosticsWriter {
+
+    private final Path file;
+    private final StringBuilder buffer = new StringBuilder();
+    private boolean flushEachDiagnostic;
+
+    DiagnosticsWriter(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.write(file, new byte[0]);
+        this.file = file;
+    }
+
+    synchronized void write(Diagnostic<? extends JavaFileObject> diagnostic) {
+        JavaFileObject source = diagnostic.getSource();
+        buffer.append(diagnostic.getKind().name())
+                .append('\t')
+                .append(diagnostic.getCode())
+                .append('\t')
+                .append(position(diagnostic.getLineNumber()))
+                .append('\t')
+                .append(position(diagnostic.getColumnNumber()))
+                .append('\t')
+                .append(source == null ? "" : escape(source.getName()))
+                .append('\t')
+                .append(escape(diagnostic.getMessage(Locale.ROOT)))
+                .append('\n');
+        // Compilation may stop at any error, so make sure it has been recorded
+        if (flushEachDiagnostic || diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+            flush();
+        }
+    }
+
+    synchronized void flush() {
+        if (buffer.length() == 0) {
+            return;
+        }
+        try {
+            Files.write(file, buffer.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.setLength(0);
+    }
+
+    /**
+     * Flushes, and from now on appends each diagnostic to the file as soon as it is reported, for the end of a
+     * compilation, when there is no later event to flush on.
+     */
+    synchronized void flushEachDiagnostic() {
+        flushEachDiagnostic = true;
+        flush();
+    }
+
+    private static String position(long position) {
+        return Long.toString(position == Diagnostic.NOPOS ? -1 : position);
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    escaped.append(ch);
+            }
+        }
+        return escaped.toString();
+    }
+}
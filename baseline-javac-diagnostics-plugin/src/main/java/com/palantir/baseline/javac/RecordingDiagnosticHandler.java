@@ -0,0 +1,39 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.baseline.javac;
+
+import com.sun.tools.javac.util.JCDiagnostic;
+import com.sun.tools.javac.util.Log;
+
+/**
+ * Sits on top of javac's diagnostic handler stack, recording each diagnostic before passing it on unchanged, so that
+ * javac's own output is unaffected.
+ */
+final class RecordingDiagnosticHandler extends Log.DiagnosticHandler {
+
+    private final DiagnosticsWriter writer;
+
+    RecordingDiagnosticHandler(Log log, DiagnosticsWriter writer) {
+        this.writer = writer;
+        install(log);
+    }
+
+    @Override
+    public void report(JCDiagnostic diagnostic) {
+        writer.write(diagnostic);
+        prev.report(diagnostic);
+    }
+}
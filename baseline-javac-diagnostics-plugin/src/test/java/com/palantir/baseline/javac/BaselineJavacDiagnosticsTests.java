@@ -0,0 +1,117 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.baseline.javac;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.tools.javac.api.JavacTool;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class BaselineJavacDiagnosticsTests {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsErrorsAndWarnings() throws IOException {
+        Path out = folder.getRoot().toPath().resolve("diagnostics.tsv");
+        Path source = source(
+                "class Foo {",
+                "    java.util.List<String> list = new java.util.ArrayList();",
+                "    int value = missing;",
+                "}");
+
+        assertThat(compile(source, out.toString(), "-Xlint:unchecked")).isFalse();
+
+        assertThat(Files.readAllLines(out, StandardCharsets.UTF_8)).containsExactly(
+                "MANDATORY_WARNING\tcompiler.warn.prob.found.req\t2\t35\t" + source + "\tunchecked conversion\\n"
+                        + "  required: java.util.List<java.lang.String>\\n"
+                        + "  found:    java.util.ArrayList",
+                "ERROR\tcompiler.err.cant.resolve.location\t3\t17\t" + source + "\tcannot find symbol\\n"
+                        + "  symbol:   variable missing\\n"
+                        + "  location: class Foo");
+    }
+
+    @Test
+    public void recordsDiagnosticsReportedOnceEverythingIsGenerated() throws IOException {
+        Path out = folder.getRoot().toPath().resolve("diagnostics.tsv");
+        Path source = source(
+                "class Foo {",
+                "    java.util.List<String> list = new java.util.ArrayList();",
+                "}");
+
+        assertThat(compile(source, out.toString())).isTrue();
+
+        // Without -Xlint:unchecked, javac only sums up unchecked warnings at the very end of the compilation
+        assertThat(Files.readAllLines(out, StandardCharsets.UTF_8))
+                .extracting(line -> line.split("\t")[1])
+                .containsExactly("compiler.note.unchecked.filename", "compiler.note.unchecked.recompile");
+    }
+
+    @Test
+    public void writesToFileUriWithSpaces() throws IOException {
+        Path out = folder.getRoot().toPath().resolve("build dir/diagnostics.tsv");
+        Path source = source("class Foo {", "    int value = missing;", "}");
+
+        assertThat(compile(source, out.toUri().toString())).isFalse();
+
+        List<String> diagnostics = Files.readAllLines(out, StandardCharsets.UTF_8);
+        assertThat(diagnostics).hasSize(1);
+        assertThat(diagnostics.get(0)).startsWith("ERROR\tcompiler.err.cant.resolve.location\t2\t17\t");
+    }
+
+    @Test
+    public void writesNothingWhenCompilationSucceeds() throws IOException {
+        Path out = folder.getRoot().toPath().resolve("diagnostics.tsv");
+        Path source = source("class Foo {}");
+
+        assertThat(compile(source, out.toString())).isTrue();
+
+        assertThat(Files.readAllLines(out, StandardCharsets.UTF_8)).isEmpty();
+    }
+
+    private Path source(String... lines) throws IOException {
+        Path source = folder.newFolder().toPath().resolve("Foo.java");
+        Files.write(source, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return source;
+    }
+
+    private boolean compile(Path source, String out, String... extraOptions) throws IOException {
+        JavaCompiler compiler = JavacTool.create();
+        try (StandardJavaFileManager fileManager =
+                compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<String> options = new ArrayList<>(Arrays.asList(extraOptions));
+            options.addAll(Arrays.asList(
+                    "-d", folder.newFolder().toString(),
+                    // As in Gradle, the plugin is on the processor path, so annotation processing runs too
+                    "-processorpath", System.getProperty("java.class.path"),
+                    "-Xplugin:BaselineJavacDiagnostics --out " + out));
+            return compiler.getTask(null, fileManager, diagnostic -> { }, options, null,
+                    fileManager.getJavaFileObjects(source.toFile())).call();
+        }
+    }
+}
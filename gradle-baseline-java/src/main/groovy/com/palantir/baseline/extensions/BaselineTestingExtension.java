@@ -0,0 +1,123 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.extensions;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+
+public class BaselineTestingExtension {
+
+    private final Property<Boolean> balanceForks;
+    private final Property<Boolean> autoTune;
+    private final Property<Boolean> onlyAffectedTests;
+    private final Property<Boolean> failedFirst;
+    private final Property<Boolean> failFast;
+    private final Property<Boolean> concurrentTestClasses;
+    private final Property<Boolean> profileTestClasses;
+    private final Property<Boolean> classDataSharing;
+
+    public BaselineTestingExtension(Project project) {
+        balanceForks = project.getObjects().property(Boolean.class);
+        balanceForks.set(false);
+        autoTune = project.getObjects().property(Boolean.class);
+        autoTune.set(false);
+        onlyAffectedTests = project.getObjects().property(Boolean.class);
+        onlyAffectedTests.set(false);
+        failedFirst = project.getObjects().property(Boolean.class);
+        failedFirst.set(false);
+        failFast = project.getObjects().property(Boolean.class);
+        failFast.set(false);
+        concurrentTestClasses = project.getObjects().property(Boolean.class);
+        concurrentTestClasses.set(false);
+        profileTestClasses = project.getObjects().property(Boolean.class);
+        profileTestClasses.set(false);
+        classDataSharing = project.getObjects().property(Boolean.class);
+        classDataSharing.set(false);
+    }
+
+    /**
+     * Whether to balance the test classes of each {@code Test} task across its {@code maxParallelForks} using the
+     * durations of the test classes in previous runs, which are kept in {@code build/test-durations}.
+     */
+    public final Property<Boolean> getBalanceForks() {
+        return balanceForks;
+    }
+
+    /**
+     * Whether to set the {@code maxParallelForks} and {@code maxHeapSize} of each {@code Test} task, and the number of
+     * threads JUnit 5 uses in each fork, from the available cores and physical memory and the number of {@code Test}
+     * tasks that may run at once. Any of these that the build sets itself are left alone, except for a
+     * {@code maxParallelForks} of 1, so a task that has to run in a single fork sets its own {@code autoTune} to
+     * {@code false}.
+     */
+    public final Property<Boolean> getAutoTune() {
+        return autoTune;
+    }
+
+    /**
+     * Whether each {@code Test} task should only run the test classes that reference, directly or indirectly, a class
+     * that changed since the task last passed. Meant for local development: classes only used through reflection are
+     * not seen, and any change to resources or jars runs every test.
+     */
+    public final Property<Boolean> getOnlyAffectedTests() {
+        return onlyAffectedTests;
+    }
+
+    /**
+     * Whether each {@code Test} task should run the test classes that failed the last time they ran first, then the
+     * test classes that were recompiled since its last run, then the rest. Failures are kept in
+     * {@code build/test-failures}.
+     */
+    public final Property<Boolean> getFailedFirst() {
+        return failedFirst;
+    }
+
+    /** Whether each {@code Test} task should stop at the first failing test, like {@code --fail-fast}. */
+    public final Property<Boolean> getFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Whether JUnit 5 should run the test classes of each {@code Test} task concurrently by default. Test classes that
+     * change static fields, system properties, {@code System.out}, the default locale or time zone, files outside
+     * temporary directories, or open server sockets, are given resource locks, so they never run at the same time as
+     * test classes that use the same state.
+     */
+    public final Property<Boolean> getConcurrentTestClasses() {
+        return concurrentTestClasses;
+    }
+
+    /**
+     * Whether to record the thread CPU time, allocated bytes, garbage collections and peak heap usage of each JUnit 5
+     * test class. With {@code com.palantir.baseline-circleci}, these are added to the {@code <properties>} of the test
+     * class in its JUnit XML report. Each task has its own {@code profileTestClasses}, which follows this one unless it
+     * is set.
+     */
+    public final Property<Boolean> getProfileTestClasses() {
+        return profileTestClasses;
+    }
+
+    /**
+     * Whether the test JVMs of each {@code Test} task on Java 11 or later should start from a class data sharing
+     * archive of the classes that they loaded from the JDK and from jars in a previous run. Only the jars before the
+     * first directory with files on the test runtime classpath are archived, and the classpath itself is unchanged.
+     * The archive is kept in {@code build/class-data-sharing}, and is created again whenever those jars change.
+     */
+    public final Property<Boolean> getClassDataSharing() {
+        return classDataSharing;
+    }
+}
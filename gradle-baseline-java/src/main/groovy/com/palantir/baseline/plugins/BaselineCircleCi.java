@@ -17,6 +17,7 @@
 package com.palantir.baseline.plugins;
 
 import com.google.common.base.Splitter;
+import com.palantir.baseline.plugins.testing.ShardTestsAction;
 import com.palantir.configurationresolver.ConfigurationResolverPlugin;
 import com.palantir.gradle.junit.JunitReportsExtension;
 import com.palantir.gradle.junit.JunitReportsPlugin;
@@ -28,6 +29,7 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.PosixFilePermission;
 import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Optional;
 import java.util.Set;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
@@ -46,6 +48,40 @@ public final class BaselineCircleCi implements Plugin<Project> {
 
         configurePluginsForReports(project);
         configurePluginsForArtifacts(project);
+        configureTestSharding(project);
+    }
+
+    private void configureTestSharding(Project project) {
+        Optional<Integer> index = intEnv("TEST_SHARD_INDEX", "CIRCLE_NODE_INDEX");
+        Optional<Integer> total = intEnv("TEST_SHARD_TOTAL", "CIRCLE_NODE_TOTAL");
+        if (!index.isPresent() || !total.isPresent() || total.get() <= 1) {
+            return;
+        }
+        if (index.get() < 0 || index.get() >= total.get()) {
+            throw new IllegalArgumentException(String.format(
+                    "Test shard index must be between 0 and %d, but was %d", total.get() - 1, index.get()));
+        }
+
+        Optional<Path> durationsDir = Optional.ofNullable(System.getenv("TEST_SHARD_DURATIONS_DIR"))
+                .filter(value -> !value.trim().isEmpty())
+                .map(value -> project.getRootDir().toPath().resolve(value.trim()));
+        project.getRootProject().allprojects(proj -> proj.getTasks().withType(Test.class).configureEach(test ->
+                ShardTestsAction.configure(test, index.get(), total.get(), durationsDir)));
+    }
+
+    /** The value of the first of {@code names} that is set in the environment. */
+    private static Optional<Integer> intEnv(String... names) {
+        for (String name : names) {
+            String value = System.getenv(name);
+            if (value != null && !value.trim().isEmpty()) {
+                try {
+                    return Optional.of(Integer.parseInt(value.trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("$" + name + " must be a number, but was: " + value, e);
+                }
+            }
+        }
+        return Optional.empty();
     }
 
     private void configurePluginsForArtifacts(Project project) {
@@ -16,6 +16,14 @@
 
 package com.palantir.baseline.plugins;
 
+import com.palantir.baseline.extensions.BaselineTestingExtension;
+import com.palantir.baseline.plugins.testing.AutoTuneTestsAction;
+import com.palantir.baseline.plugins.testing.BalanceTestForksAction;
+import com.palantir.baseline.plugins.testing.ClassDataSharingAction;
+import com.palantir.baseline.plugins.testing.ConcurrentTestClassesAction;
+import com.palantir.baseline.plugins.testing.PrioritizeTestsAction;
+import com.palantir.baseline.plugins.testing.ProfileTestClassesAction;
+import com.palantir.baseline.plugins.testing.SelectAffectedTestsAction;
 import java.util.Objects;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
@@ -28,10 +36,25 @@ public final class BaselineTesting implements Plugin<Project> {
 
     private static final Logger log = LoggerFactory.getLogger(BaselineTesting.class);
 
+    public static final String EXTENSION_NAME = "baselineTesting";
+
     @Override
     public void apply(Project project) {
+        BaselineTestingExtension extension = project.getExtensions()
+                .create(EXTENSION_NAME, BaselineTestingExtension.class, project);
+
         project.getTasks().withType(Test.class).all(task -> {
             task.jvmArgs("-XX:+HeapDumpOnOutOfMemoryError", "-XX:+CrashOnOutOfMemoryError");
+            // Last, so that it sees every change the other actions make to the classpath
+            task.doFirst(new ClassDataSharingAction(extension.getClassDataSharing()::get));
+            task.doFirst(new ConcurrentTestClassesAction(extension.getConcurrentTestClasses()::get));
+            ProfileTestClassesAction.configure(task, extension.getProfileTestClasses());
+            // Prioritized last, so that classes keep their balanced order within each priority
+            task.doFirst(new PrioritizeTestsAction(extension.getFailedFirst()::get, extension.getFailFast()::get));
+            // Tuned first, so that the forks are balanced across the tuned number of forks
+            task.doFirst(new BalanceTestForksAction(extension.getBalanceForks()::get));
+            AutoTuneTestsAction.configure(task, extension.getAutoTune());
+            SelectAffectedTestsAction.configure(task, extension.getOnlyAffectedTests()::get);
         });
 
         project.getPlugins().withType(JavaPlugin.class, p -> {
@@ -0,0 +1,101 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.function.Supplier;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.invocation.Gradle;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.reflect.TypeOf;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Runs before a {@link Test} task's tests, and sets its {@code maxParallelForks}, {@code maxHeapSize} and JUnit 5
+ * {@code dynamic} parallelism factor from {@link TestResources}, unless the build has set them already. Each task gets
+ * an {@value #TASK_PROPERTY} property, which follows the project's setting unless it is set for that task.
+ *
+ * <p>This happens once the task's inputs have been fingerprinted, so that machines with different hardware still
+ * share test results through the build cache.
+ */
+public final class AutoTuneTestsAction implements Action<Task> {
+
+    static final String DYNAMIC_FACTOR = "junit.jupiter.execution.parallel.config.dynamic.factor";
+    public static final String TASK_PROPERTY = "autoTune";
+
+    private final Supplier<Boolean> enabled;
+
+    public AutoTuneTestsAction(Supplier<Boolean> enabled) {
+        this.enabled = enabled;
+    }
+
+    public static void configure(Test test, Provider<Boolean> projectEnabled) {
+        Property<Boolean> enabled = test.getProject().getObjects().property(Boolean.class);
+        enabled.set(projectEnabled);
+        test.getExtensions().add(new TypeOf<Property<Boolean>>() {}, TASK_PROPERTY, enabled);
+        test.doFirst(new AutoTuneTestsAction(enabled::get));
+    }
+
+    @Override
+    public void execute(Task task) {
+        if (!enabled.get()) {
+            return;
+        }
+        Test test = (Test) task;
+        tune(test, TestResources.compute(
+                Runtime.getRuntime().availableProcessors(),
+                physicalMemoryBytes(),
+                Runtime.getRuntime().maxMemory(),
+                concurrentTestTasks(test.getProject().getGradle())));
+    }
+
+    static void tune(Test test, TestResources resources) {
+        test.getLogger().info("Auto-tuned {} to run {}", test.getPath(), resources);
+
+        // Gradle's defaults. A task that has to run in a single fork can't be told apart, so it turns autoTune off.
+        if (test.getMaxParallelForks() == 1) {
+            test.setMaxParallelForks(resources.getForks());
+        }
+        if (test.getMaxHeapSize() == null) {
+            test.setMaxHeapSize(resources.getMaxHeapSize());
+        }
+        if (!test.getSystemProperties().containsKey(DYNAMIC_FACTOR)) {
+            test.systemProperty(DYNAMIC_FACTOR, resources.getDynamicFactor());
+        }
+    }
+
+    /** How many {@code Test} tasks may run at the same time in this build. */
+    private static int concurrentTestTasks(Gradle gradle) {
+        long testTasks = gradle.getTaskGraph().getAllTasks().stream().filter(Test.class::isInstance).count();
+        int workers = gradle.getStartParameter().isParallelProjectExecutionEnabled()
+                ? gradle.getStartParameter().getMaxWorkerCount()
+                : 1;
+        return (int) Math.max(1, Math.min(testTasks, workers));
+    }
+
+    private static long physicalMemoryBytes() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+        }
+        // Without a way to find out, assume enough memory for the default heap of a single fork
+        return (long) (TestResources.MIN_HEAP_BYTES * 2 + Runtime.getRuntime().maxMemory());
+    }
+}
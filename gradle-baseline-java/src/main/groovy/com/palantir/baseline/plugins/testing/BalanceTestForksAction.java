@@ -0,0 +1,95 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Runs before a {@link Test} task's tests, and makes Gradle find the test classes in the order given by
+ * {@link TestForkScheduler}, using the durations recorded by previous runs.
+ *
+ * <p>Gradle finds test classes by walking {@link Test#getTestClassesDirs()}, so the test classes with a known duration
+ * are linked into one numbered directory each, in order, followed by a directory with every other class file. The
+ * task's inputs, and so its up-to-date checks and cache key, are unaffected, as they were already fingerprinted.
+ */
+public final class BalanceTestForksAction implements Action<Task> {
+
+    private final Supplier<Boolean> enabled;
+
+    public BalanceTestForksAction(Supplier<Boolean> enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void execute(Task task) {
+        if (!enabled.get()) {
+            return;
+        }
+        Test test = (Test) task;
+        Map<String, Long> durations = TestDurations.update(test);
+        if (test.getMaxParallelForks() <= 1 || test.getForkEvery() > 0 || durations.isEmpty()) {
+            // Gradle only distributes classes round-robin across a fixed set of forks
+            return;
+        }
+
+        Map<String, Path> knownClassFiles = new LinkedHashMap<>();
+        Map<Path, Path> otherClassFiles = new LinkedHashMap<>();
+        for (File classesDir : test.getTestClassesDirs().getFiles()) {
+            Path root = classesDir.toPath();
+            for (Path classFile : TestClassFiles.list(root)) {
+                Path relativePath = root.relativize(classFile);
+                String className = TestClassFiles.className(relativePath);
+                if (durations.containsKey(className) && !knownClassFiles.containsKey(className)) {
+                    knownClassFiles.put(className, classFile);
+                } else {
+                    otherClassFiles.putIfAbsent(relativePath, classFile);
+                }
+            }
+        }
+
+        Map<String, Long> knownDurations = new HashMap<>();
+        knownClassFiles.keySet().forEach(className -> knownDurations.put(className, durations.get(className)));
+        List<String> order = TestForkScheduler.scanOrder(knownDurations, test.getMaxParallelForks());
+
+        Path stagingDir = test.getTemporaryDir().toPath().resolve("balanced-classes");
+        test.getProject().delete(stagingDir.toFile());
+        List<File> classesDirs = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            Path classFile = knownClassFiles.get(order.get(i));
+            Path dir = stagingDir.resolve(String.format("%06d", i));
+            TestClassFiles.link(classFile, dir.resolve(order.get(i).replace('.', File.separatorChar) + ".class"));
+            classesDirs.add(dir.toFile());
+        }
+        Path restDir = stagingDir.resolve("rest");
+        otherClassFiles.forEach((relativePath, classFile) ->
+                TestClassFiles.link(classFile, restDir.resolve(relativePath)));
+        classesDirs.add(restDir.toFile());
+
+        test.setTestClassesDirs(test.getProject().files(classesDirs));
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The pieces of an application class data sharing archive for a test JVM: the classpath it is created from, the key
+ * it is cached under, and the list of classes to put in it, which is read from the {@code -Xlog:class+load} logs of a
+ * previous run.
+ */
+final class ClassDataSharing {
+
+    private static final String SOURCE = " source: ";
+
+    private ClassDataSharing() {}
+
+    /**
+     * The entries at the start of {@code classpath} up to the first one that is neither a jar nor an empty directory.
+     * The JVM only archives classes from jars, and only from jars that no directory with any files in it comes before.
+     */
+    static List<File> archivablePrefix(Iterable<File> classpath) {
+        List<File> prefix = new ArrayList<>();
+        for (File entry : classpath) {
+            if (!isJar(entry) && !isEmptyDirectory(entry)) {
+                break;
+            }
+            prefix.add(entry);
+        }
+        return prefix;
+    }
+
+    private static boolean isJar(File entry) {
+        return entry.isFile() && entry.getName().endsWith(".jar");
+    }
+
+    private static boolean isEmptyDirectory(File entry) {
+        String[] files = entry.list();
+        return files != null && files.length == 0;
+    }
+
+    /**
+     * A key for an archive created by {@code jvm} from {@code archivedClasspath}. The JVM refuses an archive once any
+     * of its jars has been modified, so the size and modification time of every jar are part of the key.
+     */
+    static String key(String jvm, List<File> archivedClasspath) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putString(jvm, StandardCharsets.UTF_8).putChar('\0');
+        for (File entry : archivedClasspath) {
+            hasher.putString(entry.getAbsolutePath(), StandardCharsets.UTF_8).putChar('\0')
+                    .putLong(entry.length())
+                    .putLong(entry.lastModified());
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * The classes loaded from the JDK or a jar according to every {@code -Xlog:class+load} log in {@code logDir},
+     * in the format of {@code -XX:SharedClassListFile}. Classes from directories change too often to be worth
+     * archiving, and classes generated at runtime can't be archived at all.
+     */
+    static SortedSet<String> classList(Path logDir) {
+        SortedSet<String> classes = new TreeSet<>();
+        if (!Files.isDirectory(logDir)) {
+            return classes;
+        }
+        try (Stream<Path> logs = Files.list(logDir)) {
+            for (Path log : logs.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                try (Stream<String> lines = Files.lines(log, StandardCharsets.UTF_8)) {
+                    lines.map(ClassDataSharing::archivableClass).filter(name -> !name.isEmpty())
+                            .forEach(classes::add);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading class loading logs in " + logDir, e);
+        }
+        return classes;
+    }
+
+    /** The class a log line is about, in internal form, or the empty string if it can't be archived. */
+    private static String archivableClass(String line) {
+        // Lines look like '[0.012s][info][class,load] java.lang.Object source: jrt:/java.base', with or without the
+        // decorations in brackets
+        int sourceIndex = line.indexOf(SOURCE);
+        if (sourceIndex < 0) {
+            return "";
+        }
+        String source = line.substring(sourceIndex + SOURCE.length()).trim();
+        String className = line.substring(line.lastIndexOf(']', sourceIndex) + 1, sourceIndex).trim();
+        // Hidden and anonymous classes are named like 'Foo$$Lambda$1/0x0000000800066840'
+        if (className.isEmpty() || className.contains("/")) {
+            return "";
+        }
+        boolean archivable = source.startsWith("jrt:/")
+                || source.startsWith("shared objects file")
+                || (source.startsWith("file:") && source.endsWith(".jar"));
+        return archivable ? className.replace('.', '/') : "";
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.process.ExecResult;
+
+/**
+ * Runs before a {@link Test} task's tests, and makes its test JVMs start from an application class data sharing
+ * archive of the JDK classes and the classes in jars that the tests loaded before. The archive is kept in
+ * {@code build/class-data-sharing} under a key of the test JVM and the jars on the test runtime classpath, and is
+ * created in two steps whenever the key changes: the next run logs the classes every test JVM loads, and the run
+ * after that creates the archive from those logs with {@code -Xshare:dump}.
+ *
+ * <p>The JVM only uses an archive when the classpath it was created from is the start of the classpath it runs with,
+ * and Gradle starts test JVMs with its worker jar in front of the test runtime classpath. So the archive is created
+ * from the worker jar and the jars at the start of the test runtime classpath, up to its first directory with any
+ * files in it. The test runtime classpath itself is never changed, as its order decides which classes and resources
+ * the tests see. When anything doesn't line up, the JVM just starts without the archive.
+ *
+ * <p>Only test JVMs on Java 11 or later are supported.
+ */
+public final class ClassDataSharingAction implements Action<Task> {
+
+    private final Supplier<Boolean> enabled;
+
+    public ClassDataSharingAction(Supplier<Boolean> enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void execute(Task task) {
+        if (!enabled.get()) {
+            return;
+        }
+        Test test = (Test) task;
+        Project project = test.getProject();
+        if (!test.getJavaVersion().isJava11Compatible()) {
+            test.getLogger().info("Not sharing class data for {}: requires Java 11, but tests run on Java {}",
+                    test.getPath(), test.getJavaVersion());
+            return;
+        }
+        File workerJar = workerJar(project);
+        if (!workerJar.isFile()) {
+            // Gradle only writes it the first time it starts a worker
+            test.getLogger().info("Not sharing class data for {}: {} doesn't exist yet", test.getPath(), workerJar);
+            return;
+        }
+        useArchive(test, test.getExecutable() + " " + test.getJavaVersion(), workerJar);
+    }
+
+    /**
+     * Makes {@code test} log the classes its JVMs load, or start them from the archive, which is created from the
+     * logs of an earlier run first when there isn't one yet. {@code jvm} identifies the JVM the tests run on.
+     */
+    static void useArchive(Test test, String jvm, File workerJar) {
+        Project project = test.getProject();
+        List<File> archivedClasspath = new ArrayList<>();
+        archivedClasspath.add(workerJar);
+        archivedClasspath.addAll(ClassDataSharing.archivablePrefix(test.getClasspath()));
+
+        String key = ClassDataSharing.key(jvm, archivedClasspath);
+        Path dir = project.getBuildDir().toPath().resolve("class-data-sharing").resolve(test.getName());
+        Path archive = dir.resolve(key + ".jsa");
+        Path logDir = dir.resolve(key + "-logs");
+        Path failed = dir.resolve(key + ".failed");
+        deleteOtherKeys(project, dir, key);
+
+        if (!Files.isRegularFile(archive) && !Files.exists(failed)) {
+            SortedSet<String> classList = ClassDataSharing.classList(logDir);
+            if (classList.isEmpty()) {
+                mkdirs(logDir);
+                test.getLogger().info("Logging the classes loaded by {} for a class data sharing archive",
+                        test.getPath());
+                test.jvmArgs("-Xlog:class+load=info:file=\"" + logDir.resolve("class-load-%p.log") + "\":none");
+                return;
+            }
+            dump(test, archivedClasspath, classList, dir.resolve(key + ".classlist"), archive, failed);
+            project.delete(logDir.toFile());
+        }
+        if (Files.isRegularFile(archive)) {
+            test.jvmArgs("-XX:SharedArchiveFile=" + archive, "-Xshare:auto");
+        }
+    }
+
+    private static void dump(
+            Test test, List<File> archivedClasspath, SortedSet<String> classList, Path classListFile, Path archive,
+            Path failed) {
+        Path dumpLog = archive.resolveSibling(archive.getFileName() + ".log");
+        try {
+            Files.write(classListFile, classList, StandardCharsets.UTF_8);
+            ExecResult result;
+            try (OutputStream output = Files.newOutputStream(dumpLog)) {
+                result = test.getProject().exec(spec -> {
+                    spec.setExecutable(test.getExecutable());
+                    spec.args("-Xshare:dump",
+                            "-XX:SharedClassListFile=" + classListFile,
+                            "-XX:SharedArchiveFile=" + archive,
+                            "-cp", archivedClasspath.stream()
+                                    .map(File::getAbsolutePath)
+                                    .collect(Collectors.joining(File.pathSeparator)));
+                    spec.setStandardOutput(output);
+                    spec.setErrorOutput(output);
+                    spec.setIgnoreExitValue(true);
+                });
+            }
+            if (result.getExitValue() == 0) {
+                test.getLogger().info("Created class data sharing archive for {} with {} classes",
+                        test.getPath(), classList.size());
+            } else {
+                test.getLogger().warn("Unable to create class data sharing archive for {}, see {}",
+                        test.getPath(), dumpLog);
+                // Not worth trying again until the key changes
+                Files.deleteIfExists(archive);
+                Files.createFile(failed);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating class data sharing archive " + archive, e);
+        }
+    }
+
+    /** Archives and logs for any other key will never be used again. */
+    private static void deleteOtherKeys(Project project, Path dir, String key) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> !file.getFileName().toString().startsWith(key))
+                    .forEach(file -> project.delete(file.toFile()));
+        } catch (IOException e) {
+            throw new RuntimeException("Error listing " + dir, e);
+        }
+    }
+
+    private static void mkdirs(Path dir) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating " + dir, e);
+        }
+    }
+
+    /**
+     * The jar Gradle puts in front of the classpath of every worker JVM, which it writes to the Gradle user home the
+     * first time it starts one.
+     */
+    private static File workerJar(Project project) {
+        return project.getGradle().getGradleUserHomeDir().toPath()
+                .resolve("caches")
+                .resolve(project.getGradle().getGradleVersion())
+                .resolve("workerMain")
+                .resolve("gradle-worker.jar")
+                .toFile();
+    }
+}
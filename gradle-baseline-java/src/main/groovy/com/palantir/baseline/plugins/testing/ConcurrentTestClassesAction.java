@@ -0,0 +1,91 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.api.tasks.testing.junitplatform.JUnitPlatformOptions;
+
+/**
+ * Runs before a {@link Test} task's tests, and makes JUnit 5 run test classes concurrently by default, while the
+ * methods of each class still run one after the other. The test classes that {@link TestResourceLocks} finds shared
+ * state in are given resource locks, so that two classes that use the same state never run at the same time.
+ *
+ * <p>The locks are added to copies of the class files, in a directory put in front of the task's classpath, so the
+ * compiled test classes, and the task's inputs, are unaffected. When no class needs a lock, the classpath is left
+ * as it is.
+ */
+public final class ConcurrentTestClassesAction implements Action<Task> {
+
+    static final String CLASSES_MODE_PROPERTY = "junit.jupiter.execution.parallel.mode.classes.default";
+
+    private final Supplier<Boolean> enabled;
+
+    public ConcurrentTestClassesAction(Supplier<Boolean> enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void execute(Task task) {
+        Test test = (Test) task;
+        if (!enabled.get() || !(test.getOptions() instanceof JUnitPlatformOptions)
+                || test.getSystemProperties().containsKey(CLASSES_MODE_PROPERTY)) {
+            return;
+        }
+        List<Path> classesDirs = test.getTestClassesDirs().getFiles().stream()
+                .map(File::toPath)
+                .collect(Collectors.toList());
+        Map<String, SortedSet<String>> locks = TestResourceLocks.infer(classesDirs);
+
+        Path locksDir = test.getTemporaryDir().toPath().resolve("resource-locks");
+        test.getProject().delete(locksDir.toFile());
+        locks.forEach((className, classLocks) -> {
+            String relativePath = className.replace('.', File.separatorChar) + ".class";
+            classesDirs.stream()
+                    .map(root -> root.resolve(relativePath))
+                    .filter(Files::isRegularFile)
+                    .findFirst()
+                    .ifPresent(classFile -> writeWithLocks(classFile, locksDir.resolve(relativePath), classLocks));
+        });
+
+        test.getLogger().info("{} runs test classes concurrently, with resource locks for {} test classes: {}",
+                test.getPath(), locks.size(), locks);
+        test.systemProperty(CLASSES_MODE_PROPERTY, "concurrent");
+        if (!locks.isEmpty()) {
+            test.setClasspath(test.getProject().files(locksDir.toFile()).plus(test.getClasspath()));
+        }
+    }
+
+    private static void writeWithLocks(Path classFile, Path target, SortedSet<String> locks) {
+        try {
+            Files.createDirectories(target.getParent());
+            Files.write(target, TestResourceLocks.addResourceLocks(Files.readAllBytes(classFile), locks));
+        } catch (IOException e) {
+            throw new RuntimeException("Error adding resource locks to " + classFile, e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Runs before a {@link Test} task's tests, and makes Gradle find the test classes that failed in previous runs first,
+ * then the test classes that were recompiled since the last run, then the rest. Optionally also makes the task stop
+ * at the first failing test, so that a broken build fails as soon as possible.
+ *
+ * <p>Like {@link BalanceTestForksAction}, this links the test classes into numbered directories, one for each
+ * priority and test classes directory, so the order within each priority, such as a balanced order, is kept.
+ */
+public final class PrioritizeTestsAction implements Action<Task> {
+
+    private static final int FAILED = 0;
+    private static final int CHANGED = 1;
+    private static final int OTHER = 2;
+
+    private final Supplier<Boolean> enabled;
+    private final Supplier<Boolean> failFast;
+
+    public PrioritizeTestsAction(Supplier<Boolean> enabled, Supplier<Boolean> failFast) {
+        this.enabled = enabled;
+        this.failFast = failFast;
+    }
+
+    @Override
+    public void execute(Task task) {
+        Test test = (Test) task;
+        if (failFast.get()) {
+            test.setFailFast(true);
+        }
+        if (!enabled.get()) {
+            return;
+        }
+        Optional<FileTime> lastRun =
+                TestSuiteReports.lastWritten(test.getReports().getJunitXml().getDestination().toPath());
+        Set<String> failures = TestFailures.update(test);
+
+        List<Path> roots = new ArrayList<>();
+        Map<String, Integer> priorities = new HashMap<>();
+        for (File classesDir : test.getTestClassesDirs().getFiles()) {
+            Path root = classesDir.toPath();
+            roots.add(root);
+            for (Path classFile : TestClassFiles.list(root)) {
+                String className = TestClassFiles.className(root.relativize(classFile));
+                String topLevelClassName = TestClassFiles.topLevelClassName(className);
+                int priority = OTHER;
+                if (failures.contains(className) || failures.contains(topLevelClassName)) {
+                    priority = FAILED;
+                } else if (lastRun.isPresent() && lastModified(classFile).compareTo(lastRun.get()) > 0) {
+                    priority = CHANGED;
+                }
+                // Nested classes run with the class they belong to
+                priorities.merge(topLevelClassName, priority, Math::min);
+            }
+        }
+        long failed = priorities.values().stream().filter(priority -> priority == FAILED).count();
+        long changed = priorities.values().stream().filter(priority -> priority == CHANGED).count();
+        if (failed == 0 && changed == 0) {
+            return;
+        }
+
+        Path stagingDir = test.getTemporaryDir().toPath().resolve("prioritized-classes");
+        test.getProject().delete(stagingDir.toFile());
+        SortedMap<String, File> classesDirs = new TreeMap<>();
+        for (int i = 0; i < roots.size(); i++) {
+            Path root = roots.get(i);
+            for (Path classFile : TestClassFiles.list(root)) {
+                Path relativePath = root.relativize(classFile);
+                int priority = priorities.get(
+                        TestClassFiles.topLevelClassName(TestClassFiles.className(relativePath)));
+                String name = String.format("%d-%06d", priority, i);
+                Path dir = stagingDir.resolve(name);
+                TestClassFiles.link(classFile, dir.resolve(relativePath));
+                classesDirs.put(name, dir.toFile());
+            }
+        }
+        test.getLogger().lifecycle("{} runs {} test classes that failed before and {} changed test classes first",
+                test.getPath(), failed, changed);
+        test.setTestClassesDirs(test.getProject().files(classesDirs.values()));
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + file, e);
+        }
+    }
+}
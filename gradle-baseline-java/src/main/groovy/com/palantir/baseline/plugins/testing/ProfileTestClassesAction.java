@@ -0,0 +1,66 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import com.palantir.gradle.junit.TestResourceProfiles;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.api.tasks.testing.junitplatform.JUnitPlatformOptions;
+
+/**
+ * Runs before a {@link Test} task's tests, and registers {@code TestResourceProfileListener} with JUnit Platform in
+ * every test JVM, by putting a jar with just the listener and its service registration in front of the classpath. The
+ * JUnit reports plugin that {@code com.palantir.baseline-circleci} applies adds the profiles to the JUnit XML reports.
+ * Each task gets a {@value TestResourceProfiles#TASK_PROPERTY} property, which follows the project's setting unless it
+ * is set for that task, and which that plugin reads too.
+ *
+ * <p>When disabled, nothing is added to the test JVMs at all.
+ */
+public final class ProfileTestClassesAction implements Action<Task> {
+
+    private final Supplier<Boolean> enabled;
+
+    public ProfileTestClassesAction(Supplier<Boolean> enabled) {
+        this.enabled = enabled;
+    }
+
+    public static void configure(Test test, Provider<Boolean> projectEnabled) {
+        Property<Boolean> enabled = TestResourceProfiles.addTaskProperty(test, projectEnabled);
+        test.doFirst(new ProfileTestClassesAction(enabled::get));
+    }
+
+    @Override
+    public void execute(Task task) {
+        Test test = (Test) task;
+        File outputDir = TestResourceProfiles.outputDir(test);
+        // Profiles of a previous run must not end up in the reports of this one
+        test.getProject().delete(outputDir);
+        if (!enabled.get() || !(test.getOptions() instanceof JUnitPlatformOptions)) {
+            return;
+        }
+        Path listenerJar = test.getTemporaryDir().toPath().resolve("resource-profile-listener.jar");
+        TestResourceProfiles.writeListenerJar(listenerJar);
+        test.systemProperty(TestResourceProfiles.OUTPUT_DIR_PROPERTY, outputDir.getAbsolutePath());
+        test.setClasspath(test.getProject().files(listenerJar.toFile()).plus(test.getClasspath()));
+    }
+}
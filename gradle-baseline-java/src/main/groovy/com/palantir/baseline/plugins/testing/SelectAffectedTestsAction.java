@@ -0,0 +1,162 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.testing.Test;
+import org.gradle.api.tasks.testing.TestDescriptor;
+import org.gradle.api.tasks.testing.TestListener;
+import org.gradle.api.tasks.testing.TestResult;
+
+/**
+ * Makes a {@link Test} task only run the test classes affected by the classes that changed since its last successful
+ * run, as found by {@link TestImpactSnapshot}. Every test runs when there is no successful run to compare with, or
+ * when anything other than classes changed.
+ *
+ * <p>The snapshot is only recorded once the tests pass, so tests affected by a change keep running until they pass.
+ * Whether they passed comes from the result of the root test suite, as with {@code ignoreFailures} the task succeeds
+ * either way.
+ */
+public final class SelectAffectedTestsAction implements Action<Task> {
+
+    private final Supplier<Boolean> enabled;
+    private TestImpactSnapshot pendingSnapshot;
+    private volatile TestResult.ResultType result;
+
+    private SelectAffectedTestsAction(Supplier<Boolean> enabled) {
+        this.enabled = enabled;
+    }
+
+    public static void configure(Test test, Supplier<Boolean> enabled) {
+        SelectAffectedTestsAction action = new SelectAffectedTestsAction(enabled);
+        test.doFirst(action);
+        test.addTestListener(new RootSuiteListener(action));
+        test.doLast(new RecordSuccessfulRun(action));
+        // Which tests ran depends on the state of this workspace, which isn't part of the task's inputs
+        test.getOutputs().doNotCacheIf("Only the tests affected by changes ran", unused -> enabled.get());
+    }
+
+    @Override
+    public void execute(Task task) {
+        pendingSnapshot = null;
+        result = null;
+        if (!enabled.get()) {
+            return;
+        }
+        Test test = (Test) task;
+        Path snapshotFile = snapshotFile(test);
+        Optional<TestImpactSnapshot> previous = TestImpactSnapshot.read(snapshotFile);
+        TestImpactSnapshot current = TestImpactSnapshot.capture(
+                test.getClasspath().getFiles(),
+                ImmutableList.of(test.getSystemProperties().toString(), String.valueOf(test.getJvmArgs())),
+                previous);
+        pendingSnapshot = current;
+
+        if (!previous.isPresent()) {
+            test.getLogger().lifecycle("{} runs all tests, as there is no successful run to compare with",
+                    test.getPath());
+            return;
+        }
+        if (current.otherInputsChanged(previous.get())) {
+            test.getLogger().lifecycle("{} runs all tests, as resources, jars or settings changed since its last "
+                    + "successful run", test.getPath());
+            return;
+        }
+        Set<String> changed = current.changedClasses(previous.get());
+        if (changed.isEmpty()) {
+            // Gradle found a change that isn't visible here, so nothing can be ruled out
+            return;
+        }
+
+        Set<String> testClasses = new TreeSet<>();
+        for (File classesDir : test.getTestClassesDirs().getFiles()) {
+            Path root = classesDir.toPath();
+            TestClassFiles.list(root).stream()
+                    .map(classFile -> TestClassFiles.className(root.relativize(classFile)))
+                    .filter(className -> !className.contains("$"))
+                    .forEach(testClasses::add);
+        }
+        Set<String> affected = current.affectedTestClasses(testClasses, changed);
+        test.getLogger().lifecycle("{} runs the {} of {} test classes affected by {} classes changed since its last "
+                + "successful run", test.getPath(), affected.size(), testClasses.size(), changed.size());
+        test.exclude(element -> !element.isDirectory()
+                && element.getName().endsWith(".class")
+                && !affected.contains(TestClassFiles.topLevelClassName(element.getRelativePath().getPathString())));
+    }
+
+    private static Path snapshotFile(Test test) {
+        return test.getProject().getBuildDir().toPath().resolve("test-impact").resolve(test.getName() + ".txt");
+    }
+
+    /** Records the result of the whole run, once all tests have finished. */
+    private static final class RootSuiteListener implements TestListener {
+        private final SelectAffectedTestsAction action;
+
+        RootSuiteListener(SelectAffectedTestsAction action) {
+            this.action = action;
+        }
+
+        @Override
+        public void beforeSuite(TestDescriptor suite) {}
+
+        @Override
+        public void afterSuite(TestDescriptor suite, TestResult result) {
+            if (suite.getParent() == null) {
+                action.result = result.getResultType();
+            }
+        }
+
+        @Override
+        public void beforeTest(TestDescriptor testDescriptor) {}
+
+        @Override
+        public void afterTest(TestDescriptor testDescriptor, TestResult result) {}
+    }
+
+    /** Runs after the tests, which is only once they've passed unless failures are ignored. */
+    private static final class RecordSuccessfulRun implements Action<Task> {
+        private final SelectAffectedTestsAction action;
+
+        RecordSuccessfulRun(SelectAffectedTestsAction action) {
+            this.action = action;
+        }
+
+        @Override
+        public void execute(Task task) {
+            Test test = (Test) task;
+            if (action.pendingSnapshot != null && action.result == TestResult.ResultType.SUCCESS && !isFiltered(test)) {
+                action.pendingSnapshot.write(snapshotFile(test));
+            }
+            action.pendingSnapshot = null;
+        }
+
+        /** A run of only some of the tests says nothing about the others, so doesn't count as a successful run. */
+        private static boolean isFiltered(Test test) {
+            return !test.getFilter().getIncludePatterns().isEmpty()
+                    || test.getProject().getGradle().getStartParameter().getTaskRequests().stream()
+                            .anyMatch(request -> request.getArgs().contains("--tests"));
+        }
+    }
+}
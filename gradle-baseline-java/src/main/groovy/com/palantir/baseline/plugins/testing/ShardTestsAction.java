@@ -0,0 +1,118 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Runs before a {@link Test} task's tests, and excludes the test classes that other shards of the CI build run, as
+ * given by {@link TestShards}. The shard is registered as an input of the task by {@link #configure}, so that shards
+ * never share task outputs through the build cache.
+ *
+ * <p>Every shard must split the classes the same way, so the split only uses durations from a directory that all
+ * shards restore, such as a CI cache or workspace. After its tests ran, each shard writes the durations of its own
+ * classes to that directory, and the next build merges the files of all shards. Without the directory, classes are
+ * split by a hash of their name.
+ */
+public final class ShardTestsAction implements Action<Task> {
+
+    private final int index;
+    private final int total;
+    private final Provider<SortedMap<String, Long>> durations;
+
+    private ShardTestsAction(int index, int total, Provider<SortedMap<String, Long>> durations) {
+        this.index = index;
+        this.total = total;
+        this.durations = durations;
+    }
+
+    /**
+     * Makes {@code test} only run the test classes of shard {@code index} of {@code total}, split by the durations
+     * shared in {@code sharedDurationsDir}, if any.
+     */
+    public static void configure(Test test, int index, int total, Optional<Path> sharedDurationsDir) {
+        Optional<Path> durationsDir = sharedDurationsDir.map(dir -> durationsDir(dir, test));
+        Provider<SortedMap<String, Long>> durations = test.getProject().provider(() ->
+                durationsDir.map(TestDurations::readAll).orElseGet(TreeMap::new));
+        test.getInputs().property("testShardIndex", index);
+        test.getInputs().property("testShardTotal", total);
+        // The durations decide which classes run, so a different split must not reuse outputs
+        test.getInputs().property("testShardDurations", durations);
+        test.doFirst(new ShardTestsAction(index, total, durations));
+        durationsDir.ifPresent(dir -> test.doLast(new RecordDurations(dir.resolve("shard-" + index + ".properties"))));
+    }
+
+    /** Where the durations of {@code test} are shared, such as {@code <dir>/foo/bar/test} for {@code :foo:bar:test}. */
+    static Path durationsDir(Path sharedDurationsDir, Test test) {
+        Path dir = sharedDurationsDir;
+        for (String segment : test.getPath().substring(1).split(":")) {
+            dir = dir.resolve(segment);
+        }
+        return dir;
+    }
+
+    @Override
+    public void execute(Task task) {
+        Test test = (Test) task;
+        Set<String> classNames = new TreeSet<>();
+        for (File classesDir : test.getTestClassesDirs().getFiles()) {
+            Path root = classesDir.toPath();
+            TestClassFiles.list(root).stream()
+                    .map(classFile -> TestClassFiles.className(root.relativize(classFile)))
+                    .filter(className -> !className.contains("$"))
+                    .forEach(classNames::add);
+        }
+
+        Map<String, Long> knownDurations = durations.get();
+        Set<String> shard = TestShards.shard(classNames, knownDurations, index, total);
+        test.getLogger().lifecycle("{} runs shard {} of {}: {} of {} test classes",
+                test.getPath(), index + 1, total, shard.size(), classNames.size());
+        test.exclude(element -> !element.isDirectory()
+                && element.getName().endsWith(".class")
+                && !shard.contains(TestClassFiles.topLevelClassName(element.getRelativePath().getPathString())));
+    }
+
+    /** Runs after the tests, and shares the durations of the classes that this shard ran. */
+    private static final class RecordDurations implements Action<Task> {
+        private final Path shardFile;
+
+        RecordDurations(Path shardFile) {
+            this.shardFile = shardFile;
+        }
+
+        @Override
+        public void execute(Task task) {
+            Test test = (Test) task;
+            SortedMap<String, Long> durations =
+                    TestDurations.fromJunitXml(test.getReports().getJunitXml().getDestination().toPath());
+            if (!durations.isEmpty()) {
+                TestDurations.write(durations, shardFile);
+            }
+        }
+    }
+}
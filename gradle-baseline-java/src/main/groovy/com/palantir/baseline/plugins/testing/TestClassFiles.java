@@ -0,0 +1,77 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** Finds the class files in a {@code Test} task's test classes directories. */
+final class TestClassFiles {
+
+    private TestClassFiles() {}
+
+    /** Every class file under {@code root}, which may not exist, in a stable order. */
+    static List<Path> list(Path root) {
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".class"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Error listing test classes in " + root, e);
+        }
+    }
+
+    /** The binary name of the class in a class file, given its path relative to a classes directory. */
+    static String className(Path relativePath) {
+        return relativePath.toString().replaceAll("\\.class$", "").replace(File.separatorChar, '.');
+    }
+
+    /** The name of the top level class that the class file at {@code relativePath} belongs to. */
+    static String topLevelClassName(String relativePath) {
+        String className = relativePath.replaceAll("\\.class$", "").replace('/', '.');
+        int nested = className.indexOf('$');
+        return nested < 0 ? className : className.substring(0, nested);
+    }
+
+    /**
+     * Makes {@code existing} also appear at {@code link}. Hard links are as cheap as it gets, but on file systems
+     * without them the file is copied, keeping its modification time.
+     */
+    static void link(Path existing, Path link) {
+        try {
+            Files.createDirectories(link.getParent());
+            try {
+                Files.createLink(link, existing);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(existing, link, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error staging test class " + existing, e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * How long each test class took to run, in milliseconds, as recorded in the JUnit XML reports of previous runs. The
+ * history is kept in a properties file of class name to milliseconds, so that it survives runs that only ran some of
+ * the tests.
+ */
+public final class TestDurations {
+
+    private TestDurations() {}
+
+    /** Reads the history in {@code historyFile}, which may not exist yet. */
+    public static SortedMap<String, Long> read(Path historyFile) {
+        SortedMap<String, Long> durations = new TreeMap<>();
+        if (!Files.isRegularFile(historyFile)) {
+            return durations;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(historyFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + historyFile + " file", e);
+        }
+        properties.stringPropertyNames().forEach(className -> {
+            try {
+                durations.put(className, Long.parseLong(properties.getProperty(className).trim()));
+            } catch (NumberFormatException e) {
+                // Ignore entries that were edited by hand
+            }
+        });
+        return durations;
+    }
+
+    /**
+     * Reads and merges the histories in {@code dir}, which may not exist, in the order of their names, so that the
+     * result only depends on which files there are.
+     */
+    public static SortedMap<String, Long> readAll(Path dir) {
+        SortedMap<String, Long> durations = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return durations;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".properties"))
+                    .sorted()
+                    .forEach(file -> durations.putAll(read(file)));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + dir + " directory", e);
+        }
+        return durations;
+    }
+
+    public static void write(Map<String, Long> durations, Path historyFile) {
+        try {
+            Files.createDirectories(historyFile.toAbsolutePath().getParent());
+            try (Writer writer = Files.newBufferedWriter(historyFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Long> entry : new TreeMap<>(durations).entrySet()) {
+                    writer.write(entry.getKey() + "=" + entry.getValue() + "\n");
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing " + historyFile + " file", e);
+        }
+    }
+
+    /**
+     * Reads the duration of each test class from the {@code TEST-*.xml} reports Gradle writes into {@code junitXmlDir},
+     * which may not exist.
+     */
+    public static SortedMap<String, Long> fromJunitXml(Path junitXmlDir) {
+        SortedMap<String, Long> durations = new TreeMap<>();
+        TestSuiteReports.read(junitXmlDir).forEach(suite ->
+                durations.merge(suite.getClassName(), suite.getTimeMillis(), Long::sum));
+        return durations;
+    }
+
+    /**
+     * Adds the durations in {@code junitXmlDir} to the history in {@code historyFile}, and returns the updated
+     * history.
+     */
+    public static SortedMap<String, Long> update(Path historyFile, Path junitXmlDir) {
+        SortedMap<String, Long> durations = read(historyFile);
+        SortedMap<String, Long> latest = fromJunitXml(junitXmlDir);
+        if (!latest.isEmpty()) {
+            durations.putAll(latest);
+            write(durations, historyFile);
+        }
+        return durations;
+    }
+
+    /** Where the durations of the test classes run by {@code test} are kept between builds. */
+    public static Path historyFile(Test test) {
+        return test.getProject().getBuildDir().toPath()
+                .resolve("test-durations")
+                .resolve(test.getName() + ".properties");
+    }
+
+    /** Adds the durations in the JUnit XML reports of {@code test}'s last run to its history, and returns it. */
+    public static SortedMap<String, Long> update(Test test) {
+        return update(historyFile(test), test.getReports().getJunitXml().getDestination().toPath());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * The test classes that failed the last time they ran, as recorded in the JUnit XML reports of previous runs. The
+ * history is kept in a file with one class name per line, so that a class that failed stays there until a run that
+ * includes it passes, even if the runs in between didn't include it.
+ */
+final class TestFailures {
+
+    private TestFailures() {}
+
+    /** Reads the history in {@code historyFile}, which may not exist yet. */
+    static SortedSet<String> read(Path historyFile) {
+        SortedSet<String> failures = new TreeSet<>();
+        if (!Files.isRegularFile(historyFile)) {
+            return failures;
+        }
+        try {
+            Files.readAllLines(historyFile, StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .forEach(failures::add);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + historyFile + " file", e);
+        }
+        return failures;
+    }
+
+    static void write(SortedSet<String> failures, Path historyFile) {
+        try {
+            Files.createDirectories(historyFile.toAbsolutePath().getParent());
+            Files.write(historyFile, failures, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing " + historyFile + " file", e);
+        }
+    }
+
+    /**
+     * Updates the history in {@code historyFile} with the outcome of every test class reported in
+     * {@code junitXmlDir}, and returns the updated history.
+     */
+    static SortedSet<String> update(Path historyFile, Path junitXmlDir) {
+        SortedSet<String> failures = read(historyFile);
+        SortedSet<String> previous = new TreeSet<>(failures);
+        for (TestSuiteReports.TestSuiteReport suite : TestSuiteReports.read(junitXmlDir)) {
+            if (suite.isFailed()) {
+                failures.add(suite.getClassName());
+            } else {
+                failures.remove(suite.getClassName());
+            }
+        }
+        if (!failures.equals(previous)) {
+            write(failures, historyFile);
+        }
+        return failures;
+    }
+
+    /** Where the failed test classes of {@code test} are kept between builds. */
+    static Path historyFile(Test test) {
+        return test.getProject().getBuildDir().toPath()
+                .resolve("test-failures")
+                .resolve(test.getName() + ".txt");
+    }
+
+    /** Updates the history of {@code test} with the JUnit XML reports of its last run, and returns it. */
+    static SortedSet<String> update(Test test) {
+        return update(historyFile(test), test.getReports().getJunitXml().getDestination().toPath());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Orders test classes so that Gradle's round-robin distribution of test classes across {@code maxParallelForks}
+ * balances the forks by duration.
+ *
+ * <p>Gradle hands the n-th test class it finds to fork {@code n % forks}, so each consecutive run of {@code forks}
+ * classes gives every fork exactly one class. Classes are taken from longest to shortest, and within each such round
+ * the longest class goes to the fork with the least work so far, which is longest-processing-time-first scheduling
+ * within the constraint that every fork gets one class per round.
+ */
+public final class TestForkScheduler {
+
+    private TestForkScheduler() {}
+
+    /** Returns the order in which Gradle should find the test classes in {@code durations}. */
+    public static List<String> scanOrder(Map<String, Long> durations, int forks) {
+        List<String> longestFirst = durations.keySet().stream()
+                .sorted(Comparator.comparing((String className) -> durations.get(className))
+                        .reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .collect(Collectors.toList());
+        if (forks <= 1) {
+            return longestFirst;
+        }
+
+        long[] loads = new long[forks];
+        List<String> order = new ArrayList<>(longestFirst.size());
+        for (int roundStart = 0; roundStart < longestFirst.size(); roundStart += forks) {
+            List<String> round = longestFirst.subList(roundStart, Math.min(roundStart + forks, longestFirst.size()));
+            // A partial last round only reaches the first forks
+            List<Integer> leastLoadedFirst = IntStream.range(0, round.size()).boxed()
+                    .sorted(Comparator.comparingLong((Integer fork) -> loads[fork]).thenComparing(fork -> fork))
+                    .collect(Collectors.toList());
+            String[] classByFork = new String[round.size()];
+            for (int i = 0; i < round.size(); i++) {
+                int fork = leastLoadedFirst.get(i);
+                classByFork[fork] = round.get(i);
+                loads[fork] += durations.get(round.get(i));
+            }
+            Collections.addAll(order, classByFork);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.maven.shared.dependency.analyzer.asm.DependencyClassFileVisitor;
+
+/**
+ * The state of the classes a {@code Test} task ran against: a content hash and the referenced classes of every class
+ * in a directory on the test runtime classpath, and a single hash of everything else, such as resources and jars.
+ *
+ * <p>Comparing the snapshot of a successful run with the current one gives the classes that changed since, and the
+ * references give the test classes that can reach a changed class. Classes that are only reached through reflection,
+ * such as service implementations, are not seen, which is why any change to resources also counts as a change to
+ * everything.
+ */
+final class TestImpactSnapshot {
+
+    private static final Splitter SPACE = Splitter.on(' ');
+    private static final Splitter COMMA = Splitter.on(',').omitEmptyStrings();
+
+    private final String otherInputsHash;
+    private final Map<String, String> classHashes;
+    private final Map<String, Set<String>> references;
+
+    TestImpactSnapshot(String otherInputsHash, Map<String, String> classHashes, Map<String, Set<String>> references) {
+        this.otherInputsHash = otherInputsHash;
+        this.classHashes = classHashes;
+        this.references = references;
+    }
+
+    /**
+     * Snapshots {@code classpath}, only analysing the references of classes that changed since {@code previous}.
+     * {@code settings} are any other values that affect the outcome of the tests, such as system properties.
+     */
+    static TestImpactSnapshot capture(
+            Collection<File> classpath, Collection<String> settings, Optional<TestImpactSnapshot> previous) {
+        Hasher otherInputs = Hashing.murmur3_128().newHasher();
+        settings.forEach(setting -> otherInputs.putString(setting, StandardCharsets.UTF_8).putChar('\0'));
+        Map<String, String> classHashes = new HashMap<>();
+        Map<String, Set<String>> references = new HashMap<>();
+        try {
+            for (File entry : classpath) {
+                otherInputs.putString(entry.getAbsolutePath(), StandardCharsets.UTF_8).putChar('\0');
+                if (entry.isDirectory()) {
+                    for (Path file : listFiles(entry.toPath())) {
+                        String relativePath = entry.toPath().relativize(file).toString();
+                        String hash = com.google.common.io.Files.asByteSource(file.toFile())
+                                .hash(Hashing.murmur3_128())
+                                .toString();
+                        if (!relativePath.endsWith(".class")) {
+                            otherInputs.putString(relativePath + "=" + hash, StandardCharsets.UTF_8).putChar('\0');
+                            continue;
+                        }
+                        String className = TestClassFiles.className(entry.toPath().relativize(file));
+                        if (classHashes.putIfAbsent(className, hash) == null) {
+                            references.put(className, previous
+                                    .filter(snapshot -> hash.equals(snapshot.classHashes.get(className)))
+                                    .map(snapshot -> (Set<String>) new HashSet<>(snapshot.references.get(className)))
+                                    .orElseGet(() -> referencedClasses(className, file)));
+                        }
+                    }
+                } else if (entry.isFile()) {
+                    // Jars are far too large to hash on every run, and are rarely changed in place
+                    otherInputs.putLong(entry.length()).putLong(entry.lastModified());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading the test runtime classpath", e);
+        }
+        // Only references between these classes matter
+        references.values().forEach(referenced -> referenced.retainAll(classHashes.keySet()));
+        return new TestImpactSnapshot(otherInputs.hash().toString(), classHashes, references);
+    }
+
+    /** Whether anything other than the classes changed, in which case every test may be affected. */
+    boolean otherInputsChanged(TestImpactSnapshot previous) {
+        return !otherInputsHash.equals(previous.otherInputsHash);
+    }
+
+    /** Classes that were added, removed or changed since {@code previous}. */
+    Set<String> changedClasses(TestImpactSnapshot previous) {
+        Set<String> changed = new HashSet<>();
+        classHashes.forEach((className, hash) -> {
+            if (!hash.equals(previous.classHashes.get(className))) {
+                changed.add(className);
+            }
+        });
+        previous.classHashes.keySet().stream().filter(className -> !classHashes.containsKey(className))
+                .forEach(changed::add);
+        return changed;
+    }
+
+    /**
+     * The classes among {@code testClasses}, which are top level classes, that can reach one of {@code changed}
+     * through their own references or those of their nested classes.
+     */
+    Set<String> affectedTestClasses(Collection<String> testClasses, Set<String> changed) {
+        Map<String, List<String>> nestedClasses = classHashes.keySet().stream()
+                .filter(className -> className.contains("$"))
+                .collect(Collectors.groupingBy(className -> className.substring(0, className.indexOf('$'))));
+
+        Set<String> affected = new TreeSet<>();
+        for (String testClass : testClasses) {
+            Set<String> reached = new HashSet<>();
+            Deque<String> toVisit = new ArrayDeque<>();
+            toVisit.add(testClass);
+            toVisit.addAll(nestedClasses.getOrDefault(testClass, Collections.emptyList()));
+            while (!toVisit.isEmpty()) {
+                String className = toVisit.pop();
+                if (!reached.add(className)) {
+                    continue;
+                }
+                if (changed.contains(className)) {
+                    affected.add(testClass);
+                    break;
+                }
+                toVisit.addAll(references.getOrDefault(className, Collections.emptySet()));
+            }
+        }
+        return affected;
+    }
+
+    static Optional<TestImpactSnapshot> read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            String[] otherInputsHash = {""};
+            Map<String, String> classHashes = new HashMap<>();
+            Map<String, Set<String>> references = new HashMap<>();
+            lines.forEach(line -> {
+                List<String> parts = SPACE.splitToList(line);
+                if (parts.get(0).equals("other") && parts.size() == 2) {
+                    otherInputsHash[0] = parts.get(1);
+                } else if (parts.get(0).equals("class") && parts.size() == 4) {
+                    classHashes.put(parts.get(1), parts.get(2));
+                    references.put(parts.get(1), new HashSet<>(COMMA.splitToList(parts.get(3))));
+                }
+            });
+            return Optional.of(new TestImpactSnapshot(otherInputsHash[0], classHashes, references));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + file + " file", e);
+        }
+    }
+
+    void write(Path file) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("other " + otherInputsHash + "\n");
+                for (Map.Entry<String, String> entry : new TreeMap<>(classHashes).entrySet()) {
+                    writer.write("class " + entry.getKey() + " " + entry.getValue() + " "
+                            + Joiner.on(',').join(new TreeSet<>(references.get(entry.getKey()))) + "\n");
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing " + file + " file", e);
+        }
+    }
+
+    /** Same analysis as {@code BaselineExactDependencies}, but for a single class file rather than a directory. */
+    private static Set<String> referencedClasses(String className, Path classFile) {
+        DependencyClassFileVisitor visitor = new DependencyClassFileVisitor();
+        try (InputStream in = Files.newInputStream(classFile)) {
+            visitor.visitClass(className, in);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to analyze " + classFile, e);
+        }
+        return new HashSet<>(visitor.getDependencies());
+    }
+
+    private static List<Path> listFiles(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Finds the test classes that can't safely run at the same time as other test classes, by looking for shared state in
+ * their bytecode and the bytecode of the classes they call in the same test classes directories. Each kind of shared
+ * state becomes a JUnit 5 resource lock, so that test classes that use the same state never run at the same time:
+ *
+ * <ul>
+ *   <li>assigning a static field outside a static initializer locks the class that declares the field
+ *   <li>changing system properties, {@code System.out}, {@code System.err}, the default {@code Locale} or the default
+ *       {@code TimeZone} lock the same resources as JUnit's {@code Resources} constants
+ *   <li>writing to the file system, unless the class also creates temporary files, locks the file system
+ *   <li>opening a server or datagram socket locks network ports
+ * </ul>
+ *
+ * <p>Only what the bytecode says directly is seen: mutating the contents of a static collection, or shared state
+ * reached through reflection or another jar, is not.
+ */
+final class TestResourceLocks {
+
+    static final String SYSTEM_PROPERTIES = "java.lang.System.properties";
+    static final String SYSTEM_OUT = "java.lang.System.out";
+    static final String SYSTEM_ERR = "java.lang.System.err";
+    static final String LOCALE = "java.util.Locale";
+    static final String TIME_ZONE = "java.util.TimeZone";
+    static final String FILES = "com.palantir.baseline.files";
+    static final String PORTS = "com.palantir.baseline.ports";
+
+    private static final String EXECUTION = "Lorg/junit/jupiter/api/parallel/Execution;";
+    private static final String RESOURCE_LOCK = "Lorg/junit/jupiter/api/parallel/ResourceLock;";
+    private static final String RESOURCE_LOCKS = "Lorg/junit/jupiter/api/parallel/ResourceLocks;";
+    private static final String TEMP_DIR = "Lorg/junit/jupiter/api/io/TempDir;";
+    private static final String TEMPORARY_FOLDER = "org/junit/rules/TemporaryFolder";
+
+    private static final Set<String> FILE_WRITING_CONSTRUCTORS = ImmutableSet.of(
+            "java/io/FileOutputStream", "java/io/FileWriter", "java/io/RandomAccessFile");
+    private static final Set<String> FILE_WRITING_METHODS = ImmutableSet.of(
+            "java/nio/file/Files.write", "java/nio/file/Files.writeString", "java/nio/file/Files.newOutputStream",
+            "java/nio/file/Files.newBufferedWriter", "java/nio/file/Files.createFile",
+            "java/nio/file/Files.createDirectory", "java/nio/file/Files.createDirectories",
+            "java/nio/file/Files.delete", "java/nio/file/Files.deleteIfExists", "java/nio/file/Files.move",
+            "java/nio/file/Files.copy", "java/io/File.createNewFile", "java/io/File.delete", "java/io/File.mkdir",
+            "java/io/File.mkdirs", "java/io/File.renameTo");
+    private static final Set<String> TEMP_FILE_METHODS = ImmutableSet.of(
+            "java/nio/file/Files.createTempFile", "java/nio/file/Files.createTempDirectory",
+            "java/io/File.createTempFile");
+    private static final Set<String> SOCKET_CONSTRUCTORS = ImmutableSet.of(
+            "java/net/ServerSocket", "java/net/DatagramSocket", "java/net/MulticastSocket");
+    private static final Set<String> SOCKET_BINDING_METHODS = ImmutableSet.of(
+            "java/net/ServerSocket.bind", "java/nio/channels/ServerSocketChannel.bind",
+            "java/nio/channels/DatagramChannel.bind", "java/nio/channels/AsynchronousServerSocketChannel.bind");
+
+    private TestResourceLocks() {}
+
+    /**
+     * The resource locks of every top level class in {@code classesDirs} that needs any, leaving out classes that
+     * already declare their own {@code @Execution} or {@code @ResourceLock}.
+     */
+    static SortedMap<String, SortedSet<String>> infer(Collection<Path> classesDirs) {
+        Map<String, ClassUsage> classes = new HashMap<>();
+        for (Path root : classesDirs) {
+            for (Path classFile : TestClassFiles.list(root)) {
+                ClassUsage usage = analyze(classFile);
+                classes.putIfAbsent(usage.name, usage);
+            }
+        }
+
+        Map<String, Set<String>> nestedClasses = new HashMap<>();
+        classes.values().forEach(usage -> nestedClasses
+                .computeIfAbsent(topLevelName(usage.name), unused -> new HashSet<>())
+                .add(usage.name));
+
+        SortedMap<String, SortedSet<String>> locks = new TreeMap<>();
+        nestedClasses.forEach((topLevelName, names) -> {
+            ClassUsage topLevel = classes.get(topLevelName);
+            if (topLevel == null || topLevel.declaresLocks) {
+                return;
+            }
+            ClassUsage reachable = new ClassUsage(topLevelName);
+            Set<String> visited = new HashSet<>(names);
+            Deque<String> queue = new ArrayDeque<>(names);
+            while (!queue.isEmpty()) {
+                ClassUsage usage = classes.get(queue.removeFirst());
+                reachable.locks.addAll(usage.locks);
+                reachable.writesFiles |= usage.writesFiles;
+                reachable.createsTempFiles |= usage.createsTempFiles;
+                usage.calledClasses.stream()
+                        .filter(classes::containsKey)
+                        .filter(visited::add)
+                        .forEach(queue::addLast);
+            }
+            if (reachable.writesFiles && !reachable.createsTempFiles) {
+                reachable.locks.add(FILES);
+            }
+            if (!reachable.locks.isEmpty()) {
+                locks.put(topLevelName.replace('/', '.'), reachable.locks);
+            }
+        });
+        return locks;
+    }
+
+    /** Adds a {@code @ResourceLocks} annotation with a {@code @ResourceLock} for each of {@code locks}. */
+    static byte[] addResourceLocks(byte[] classFile, Set<String> locks) {
+        ClassReader reader = new ClassReader(classFile);
+        ClassWriter writer = new ClassWriter(reader, 0);
+        reader.accept(new ClassVisitor(Opcodes.ASM7, writer) {
+            @Override
+            public void visitEnd() {
+                AnnotationVisitor resourceLocks = super.visitAnnotation(RESOURCE_LOCKS, true);
+                AnnotationVisitor value = resourceLocks.visitArray("value");
+                for (String lock : locks) {
+                    AnnotationVisitor resourceLock = value.visitAnnotation(null, RESOURCE_LOCK);
+                    resourceLock.visit("value", lock);
+                    resourceLock.visitEnd();
+                }
+                value.visitEnd();
+                resourceLocks.visitEnd();
+                super.visitEnd();
+            }
+        }, 0);
+        return writer.toByteArray();
+    }
+
+    private static ClassUsage analyze(Path classFile) {
+        try (InputStream in = Files.newInputStream(classFile)) {
+            ClassUsageVisitor visitor = new ClassUsageVisitor();
+            new ClassReader(in).accept(visitor, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return visitor.usage;
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Unable to analyze " + classFile, e);
+        }
+    }
+
+    private static String topLevelName(String internalName) {
+        int nested = internalName.indexOf('$');
+        return nested < 0 ? internalName : internalName.substring(0, nested);
+    }
+
+    private static final class ClassUsage {
+        private final String name;
+        private final SortedSet<String> locks = new TreeSet<>();
+        private final Set<String> calledClasses = new HashSet<>();
+        private boolean declaresLocks;
+        private boolean writesFiles;
+        private boolean createsTempFiles;
+
+        ClassUsage(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class ClassUsageVisitor extends ClassVisitor {
+        private ClassUsage usage;
+
+        ClassUsageVisitor() {
+            super(Opcodes.ASM7);
+        }
+
+        @Override
+        public void visit(
+                int version, int access, String name, String signature, String superName, String[] interfaces) {
+            usage = new ClassUsage(name);
+            if (superName != null) {
+                usage.calledClasses.add(superName);
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            if (descriptor.equals(EXECUTION) || descriptor.equals(RESOURCE_LOCK) || descriptor.equals(RESOURCE_LOCKS)) {
+                usage.declaresLocks = true;
+            }
+            return null;
+        }
+
+        @Override
+        public FieldVisitor visitField(
+                int access, String name, String descriptor, String signature, Object value) {
+            if (descriptor.equals("L" + TEMPORARY_FOLDER + ";")) {
+                usage.createsTempFiles = true;
+            }
+            return new FieldVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+                    usage.createsTempFiles |= annotation.equals(TEMP_DIR);
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(
+                int access, String name, String descriptor, String signature, String[] exceptions) {
+            boolean staticInitializer = name.equals("<clinit>");
+            return new MethodVisitor(Opcodes.ASM7) {
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String annotation, boolean visible) {
+                    usage.createsTempFiles |= annotation.equals(TEMP_DIR);
+                    return null;
+                }
+
+                @Override
+                public void visitFieldInsn(int opcode, String owner, String field, String fieldDescriptor) {
+                    // Fields starting with a dollar sign are added by compilers and coverage tools
+                    if (opcode == Opcodes.PUTSTATIC && !staticInitializer && !field.startsWith("$")) {
+                        usage.locks.add(owner.replace('/', '.'));
+                    }
+                }
+
+                @Override
+                public void visitMethodInsn(
+                        int opcode, String owner, String method, String methodDescriptor, boolean isInterface) {
+                    usage.calledClasses.add(owner);
+                    recordMethodCall(owner, method);
+                }
+            };
+        }
+
+        private void recordMethodCall(String owner, String method) {
+            String qualifiedName = owner + "." + method;
+            if (owner.equals("java/lang/System")) {
+                if (method.equals("setProperty") || method.equals("clearProperty")
+                        || method.equals("setProperties") || method.equals("getProperties")) {
+                    usage.locks.add(SYSTEM_PROPERTIES);
+                } else if (method.equals("setOut")) {
+                    usage.locks.add(SYSTEM_OUT);
+                } else if (method.equals("setErr")) {
+                    usage.locks.add(SYSTEM_ERR);
+                }
+            } else if (qualifiedName.equals("java/util/Locale.setDefault")) {
+                usage.locks.add(LOCALE);
+            } else if (qualifiedName.equals("java/util/TimeZone.setDefault")) {
+                usage.locks.add(TIME_ZONE);
+            } else if (owner.equals(TEMPORARY_FOLDER) || TEMP_FILE_METHODS.contains(qualifiedName)) {
+                usage.createsTempFiles = true;
+            } else if (FILE_WRITING_METHODS.contains(qualifiedName)
+                    || (method.equals("<init>") && FILE_WRITING_CONSTRUCTORS.contains(owner))) {
+                usage.writesFiles = true;
+            } else if (SOCKET_BINDING_METHODS.contains(qualifiedName)
+                    || (method.equals("<init>") && SOCKET_CONSTRUCTORS.contains(owner))) {
+                usage.locks.add(PORTS);
+            }
+        }
+    }
+}
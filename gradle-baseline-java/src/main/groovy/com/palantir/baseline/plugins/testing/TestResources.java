@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Works out how many forks, how much heap per fork and how many JUnit 5 threads per fork the tests of a {@code Test}
+ * task should use, given the machine and how many {@code Test} tasks may run at once under {@code --parallel}.
+ *
+ * <p>Cores are shared out evenly between the concurrent tasks' forks. Memory is shared out after setting aside some for
+ * the operating system and the Gradle daemon, and a fork is only added while each fork still gets at least
+ * {@link #MIN_HEAP_BYTES} of heap.
+ */
+public final class TestResources {
+
+    static final long MIN_HEAP_BYTES = 512L * 1024 * 1024;
+    static final long MAX_HEAP_BYTES = 4L * 1024 * 1024 * 1024;
+    /** Allowance for each fork's metaspace, thread stacks and other memory outside the heap. */
+    private static final double NON_HEAP_OVERHEAD = 1.25;
+    /** Fraction of physical memory left for the operating system and everything else. */
+    private static final double RESERVED_MEMORY = 0.2;
+
+    private final int forks;
+    private final long heapBytes;
+    private final int threadsPerFork;
+    private final int cores;
+
+    private TestResources(int forks, long heapBytes, int threadsPerFork, int cores) {
+        this.forks = forks;
+        this.heapBytes = heapBytes;
+        this.threadsPerFork = threadsPerFork;
+        this.cores = cores;
+    }
+
+    public static TestResources compute(
+            int cores, long physicalMemoryBytes, long daemonHeapBytes, int concurrentTestTasks) {
+        int tasks = Math.max(1, concurrentTestTasks);
+        long usableBytes = Math.max(0, (long) (physicalMemoryBytes * (1 - RESERVED_MEMORY)) - daemonHeapBytes);
+        long forksByMemory = (long) (usableBytes / (tasks * MIN_HEAP_BYTES * NON_HEAP_OVERHEAD));
+        int forks = (int) Math.max(1, Math.min(cores / tasks, forksByMemory));
+
+        long heapBytes = (long) (usableBytes / ((double) tasks * forks * NON_HEAP_OVERHEAD));
+        heapBytes = Math.max(MIN_HEAP_BYTES, Math.min(MAX_HEAP_BYTES, heapBytes));
+
+        int threadsPerFork = Math.max(1, cores / (tasks * forks));
+        return new TestResources(forks, heapBytes, threadsPerFork, cores);
+    }
+
+    public int getForks() {
+        return forks;
+    }
+
+    public long getHeapBytes() {
+        return heapBytes;
+    }
+
+    /** In the form accepted by {@code maxHeapSize}. */
+    public String getMaxHeapSize() {
+        return (heapBytes / (1024 * 1024)) + "m";
+    }
+
+    public int getThreadsPerFork() {
+        return threadsPerFork;
+    }
+
+    /**
+     * The value of {@code junit.jupiter.execution.parallel.config.dynamic.factor} that gives each fork
+     * {@link #getThreadsPerFork()} threads. JUnit multiplies it by the number of cores and rounds down, so it is
+     * rounded up here.
+     */
+    public String getDynamicFactor() {
+        return BigDecimal.valueOf(threadsPerFork)
+                .divide(BigDecimal.valueOf(cores), 4, RoundingMode.CEILING)
+                .toPlainString();
+    }
+
+    @Override
+    public String toString() {
+        return forks + " forks with " + getMaxHeapSize() + " of heap and " + threadsPerFork + " threads each";
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Splits test classes across the shards of a CI build, such as the parallel containers of a CircleCI job, so that
+ * every shard takes about as long.
+ *
+ * <p>Each shard computes the split independently, so it must only depend on inputs that are the same on every shard.
+ * Classes with a known duration are assigned longest first to the shard with the least work so far. Classes without
+ * one, such as new test classes or classes that aren't tests at all, are assigned by a hash of their name, so that
+ * they are still run exactly once when shards disagree about which classes exist.
+ */
+public final class TestShards {
+
+    private TestShards() {}
+
+    /** The classes among {@code classNames} that shard {@code index} of {@code total} should run. */
+    public static Set<String> shard(Collection<String> classNames, Map<String, Long> durations, int index, int total) {
+        List<String> known = classNames.stream()
+                .filter(durations::containsKey)
+                .distinct()
+                .sorted(Comparator.comparing((String className) -> durations.get(className))
+                        .reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .collect(Collectors.toList());
+
+        Set<String> shard = new HashSet<>();
+        long[] loads = new long[total];
+        for (String className : known) {
+            int leastLoaded = 0;
+            for (int i = 1; i < total; i++) {
+                if (loads[i] < loads[leastLoaded]) {
+                    leastLoaded = i;
+                }
+            }
+            loads[leastLoaded] += durations.get(className);
+            if (leastLoaded == index) {
+                shard.add(className);
+            }
+        }
+        classNames.stream()
+                .filter(className -> !durations.containsKey(className))
+                .filter(className -> Math.floorMod(className.hashCode(), total) == index)
+                .forEach(shard::add);
+        return shard;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/** Reads the summary of each test class from the {@code TEST-*.xml} reports Gradle writes for a {@code Test} task. */
+final class TestSuiteReports {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private TestSuiteReports() {}
+
+    /** The root {@code testsuite} element of every report in {@code junitXmlDir}, which may not exist. */
+    static List<TestSuiteReport> read(Path junitXmlDir) {
+        List<TestSuiteReport> suites = new ArrayList<>();
+        if (!Files.isDirectory(junitXmlDir)) {
+            return suites;
+        }
+        for (Path report : listReports(junitXmlDir)) {
+            try (InputStream input = Files.newInputStream(report)) {
+                XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(input);
+                try {
+                    // Only the attributes of the root testsuite element are needed
+                    while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) { }
+                    if (reader.isStartElement() && reader.getLocalName().equals("testsuite")) {
+                        String className = reader.getAttributeValue(null, "name");
+                        String time = reader.getAttributeValue(null, "time");
+                        if (className != null && time != null) {
+                            suites.add(new TestSuiteReport(
+                                    className,
+                                    Math.round(Double.parseDouble(time) * 1000),
+                                    count(reader, "failures") + count(reader, "errors") > 0));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException | XMLStreamException | NumberFormatException e) {
+                throw new RuntimeException("Error reading test report " + report, e);
+            }
+        }
+        return suites;
+    }
+
+    /** When the newest report in {@code junitXmlDir} was written, which is about when the last run finished. */
+    static Optional<FileTime> lastWritten(Path junitXmlDir) {
+        if (!Files.isDirectory(junitXmlDir)) {
+            return Optional.empty();
+        }
+        Optional<FileTime> lastWritten = Optional.empty();
+        for (Path report : listReports(junitXmlDir)) {
+            try {
+                FileTime modified = Files.getLastModifiedTime(report);
+                if (!lastWritten.isPresent() || modified.compareTo(lastWritten.get()) > 0) {
+                    lastWritten = Optional.of(modified);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading test report " + report, e);
+            }
+        }
+        return lastWritten;
+    }
+
+    private static int count(XMLStreamReader reader, String attribute) {
+        String value = reader.getAttributeValue(null, attribute);
+        return value == null ? 0 : Integer.parseInt(value.trim());
+    }
+
+    private static List<Path> listReports(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("TEST-"))
+                    .filter(file -> file.getFileName().toString().endsWith(".xml"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Error listing " + dir, e);
+        }
+    }
+
+    static final class TestSuiteReport {
+        private final String className;
+        private final long timeMillis;
+        private final boolean failed;
+
+        TestSuiteReport(String className, long timeMillis, boolean failed) {
+            this.className = className;
+            this.timeMillis = timeMillis;
+            this.failed = failed;
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /** Whether any test in the class failed, or the class itself failed to run. */
+        boolean isFailed() {
+            return failed;
+        }
+    }
+}
@@ -17,26 +17,45 @@
 package com.palantir.baseline.plugins.versions;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.palantir.baseline.util.VersionsProps;
+import com.palantir.baseline.util.VersionsProps.VersionForce;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import netflix.nebula.dependency.recommender.DependencyRecommendationsPlugin;
 import netflix.nebula.dependency.recommender.RecommendationStrategies;
 import netflix.nebula.dependency.recommender.provider.FuzzyVersionResolver;
 import netflix.nebula.dependency.recommender.provider.RecommendationProviderContainer;
+import org.gradle.api.Action;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.Task;
 import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleVersionSelector;
 import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
 import org.gradle.api.artifacts.result.ResolutionResult;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.plugins.BasePlugin;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskProvider;
+import org.gradle.util.VersionNumber;
 
 /**
  * Transitively applies nebula.dependency recommender to replace the following common gradle snippet.
@@ -72,6 +91,25 @@ public final class BaselineVersions implements Plugin<Project> {
      */
     public static final boolean IS_CORE_BOM_ENABLED = Boolean.getBoolean("nebula.features.coreBomSupport");
     public static final String DISABLE_PROPERTY = "com.palantir.baseline-versions.disable";
+    /**
+     * Project property which, when set, decides whether the {@code versions.props} checks are up to date using
+     * {@link VersionsPropsFingerprint} instead of the fully resolved dependency graphs of all projects, and allows
+     * their result to be stored in the build cache.
+     */
+    public static final String FINGERPRINT_PROPERTY = "com.palantir.baseline-versions.fingerprint";
+    /**
+     * Project property which, when set and a {@code versions.lock} file exists, makes dependencies resolve to the
+     * versions in {@code versions.lock} rather than those in {@code versions.props}, except in builds that run
+     * {@code writeVersionsLock}.
+     */
+    public static final String LOCK_PROPERTY = "com.palantir.baseline-versions.lock";
+    static final String LOCK_FILE = "versions.lock";
+    /**
+     * Project property which, when set, applies {@code versions.props} as forced modules instead of registering it
+     * with {@code nebula.dependency-recommender}. Nebula is still applied for BOMs.
+     */
+    public static final String NATIVE_PROPERTY = "com.palantir.baseline-versions.native";
+    private static final String WRITE_LOCK_TASK = "writeVersionsLock";
 
     @Override
     public void apply(Project project) {
@@ -92,34 +130,210 @@ public final class BaselineVersions implements Plugin<Project> {
                 .getExtensions()
                 .getByType(RecommendationProviderContainer.class);
 
-        extension.setStrategy(RecommendationStrategies.OverrideTransitives); // default is 'ConflictResolved'
-
         File rootVersionsPropsFile = rootVersionsPropsFile(project);
-        extension.propertiesFile(ImmutableMap.of("file", rootVersionsPropsFile));
+        File lockFile = project.getRootProject().file(LOCK_FILE);
+
+        if (project.hasProperty(NATIVE_PROPERTY)) {
+            resolveNatively(project, rootVersionsPropsFile);
+        } else {
+            extension.setStrategy(RecommendationStrategies.OverrideTransitives); // default is 'ConflictResolved'
+            extension.propertiesFile(ImmutableMap.of("file", rootVersionsPropsFile));
 
-        if (project != project.getRootProject()) {
             // allow nested projects to specify their own nested versions.props file
-            if (project.file("versions.props").exists()) {
+            if (project != project.getRootProject() && project.file("versions.props").exists()) {
                 extension.propertiesFile(ImmutableMap.of("file", project.file("versions.props")));
             }
-        } else {
+        }
+
+        if (project.hasProperty(LOCK_PROPERTY) && lockFile.exists()) {
+            resolveFromLock(project, lockFile);
+        }
+
+        if (project == project.getRootProject()) {
+            VersionsPropsAnalyzer analyzer = new VersionsPropsAnalyzer(
+                    rootVersionsPropsFile,
+                    () -> getAllProjectsResolvedModuleIdentifiers(project),
+                    () -> getMavenBomRecommendations(project),
+                    () -> getBomDependencies(project));
+
             TaskProvider<CheckBomConflictTask> checkBomConflict = project.getTasks().register(
-                    "checkBomConflict", CheckBomConflictTask.class, task -> task.setPropsFile(rootVersionsPropsFile));
+                    "checkBomConflict", CheckBomConflictTask.class, task -> {
+                        task.setPropsFile(rootVersionsPropsFile);
+                        task.setAnalyzer(analyzer);
+                    });
             TaskProvider<CheckNoUnusedPinTask> checkNoUnusedPin = project.getTasks().register(
-                    "checkNoUnusedPin", CheckNoUnusedPinTask.class, task -> task.setPropsFile(rootVersionsPropsFile));
+                    "checkNoUnusedPin", CheckNoUnusedPinTask.class, task -> {
+                        task.setPropsFile(rootVersionsPropsFile);
+                        task.setAnalyzer(analyzer);
+                    });
 
-            project.getTasks().register("checkVersionsProps", CheckVersionsPropsTask.class, task -> {
-                task.dependsOn(checkBomConflict, checkNoUnusedPin);
-                // If we just run checkVersionsProps --fix, we want to propagate its option to its dependent tasks
-                checkBomConflict.get().setShouldFix(task.getShouldFix());
-                checkNoUnusedPin.get().setShouldFix(task.getShouldFix());
-            });
-            // If we run with --parallel --fix, both checkNoUnusedPin and checkBomConflict will try to overwrite the
-            // versions file at the same time. Therefore, make sure checkBomConflict runs first.
-            checkNoUnusedPin.configure(task -> task.mustRunAfter(checkBomConflict));
+            TaskProvider<CheckVersionsPropsTask> checkVersionsProps = project.getTasks().register(
+                    "checkVersionsProps", CheckVersionsPropsTask.class, task -> {
+                        task.dependsOn(checkBomConflict, checkNoUnusedPin);
+                        task.setAnalyzer(analyzer);
+                    });
+            // If we run checkVersionsProps --fix, it applies the fixes of both checks at once, so skip them
+            checkBomConflict.configure(task ->
+                    task.onlyIf(t -> !checkVersionsProps.get().getShouldFix().get()));
+            checkNoUnusedPin.configure(task ->
+                    task.onlyIf(t -> !checkVersionsProps.get().getShouldFix().get()));
+
+            if (project.hasProperty(FINGERPRINT_PROPERTY)) {
+                checkBomConflict.configure(task -> useFingerprintInputs(task, task.getShouldFix()));
+                checkNoUnusedPin.configure(task -> useFingerprintInputs(task, task.getShouldFix()));
+            } else {
+                checkBomConflict.configure(task -> {
+                    task.getInputs().property("mavenBomRecommendations",
+                            (Callable<Map<String, String>>) task::getMavenBomRecommendations);
+                    task.getInputs().property("resolvedArtifacts",
+                            (Callable<Set<String>>) task::getResolvedArtifacts);
+                });
+                checkNoUnusedPin.configure(task -> task.getInputs().property("resolvedArtifacts",
+                        (Callable<Set<String>>) task::getResolvedArtifacts));
+            }
+
+            project.getTasks().register(
+                    WRITE_LOCK_TASK, WriteVersionsLockTask.class, task -> task.setLockFile(lockFile));
+            TaskProvider<CheckVersionsLockTask> checkVersionsLock = project.getTasks().register(
+                    "checkVersionsLock", CheckVersionsLockTask.class, task -> task.setLockFile(lockFile));
 
             project.getPluginManager().apply(BasePlugin.class);
-            project.getTasks().named("check").configure(task -> task.dependsOn("checkVersionsProps"));
+            project.getTasks().named("check").configure(task -> {
+                task.dependsOn("checkVersionsProps");
+                if (lockFile.exists()) {
+                    task.dependsOn(checkVersionsLock);
+                }
+            });
+        }
+    }
+
+    /**
+     * Applies {@code versions.props} with the same semantics as nebula's {@code OverrideTransitives} strategy: the most
+     * specific force overrides the version of any matching dependency, direct or transitive, and the root
+     * {@code versions.props} takes precedence over a nested one.
+     *
+     * <p>Modules with an exact entry are added to the forced modules of every configuration. Only if there are
+     * wildcard entries does a rule run for each requested module, to override the version of those that only a
+     * wildcard entry matches. Which entry matches a module is only worked out once per project.
+     *
+     * <p>Nebula is left on its default {@code ConflictResolved} strategy, so that it only fills in BOM versions for
+     * direct dependencies declared without a version. Those that {@code versions.props} pins are given the pinned
+     * version first, so that {@code versions.props} still takes precedence over BOMs.
+     */
+    private static void resolveNatively(Project project, File rootVersionsPropsFile) {
+        List<VersionsPropsIndex> indexes = new ArrayList<>();
+        Set<String> exactModules = new LinkedHashSet<>();
+        boolean hasWildcards = false;
+        List<File> versionsPropsFiles = new ArrayList<>();
+        versionsPropsFiles.add(rootVersionsPropsFile);
+        File nestedVersionsPropsFile = project.file("versions.props");
+        if (project != project.getRootProject() && nestedVersionsPropsFile.exists()) {
+            versionsPropsFiles.add(nestedVersionsPropsFile);
+        }
+        for (File versionsPropsFile : versionsPropsFiles) {
+            List<VersionForce> forces = VersionsProps.readVersionsProps(versionsPropsFile).forces();
+            indexes.add(VersionsPropsIndex.of(forces));
+            for (VersionForce force : forces) {
+                if (force.name().contains("*")) {
+                    hasWildcards = true;
+                } else {
+                    exactModules.add(force.name());
+                }
+            }
+        }
+        Object[] forcedModules = exactModules.stream()
+                .map(module -> module + ":" + mostSpecific(indexes, module).get().version())
+                .toArray();
+        boolean matchWildcards = hasWildcards;
+
+        project.getConfigurations().configureEach(configuration -> {
+            configuration.getResolutionStrategy().force(forcedModules);
+            if (matchWildcards) {
+                configuration.getResolutionStrategy().eachDependency(details -> {
+                    ModuleVersionSelector requested = details.getRequested();
+                    String module = requested.getGroup() + ":" + requested.getName();
+                    if (!exactModules.contains(module)) {
+                        mostSpecific(indexes, module).ifPresent(force -> {
+                            details.useVersion(force.version());
+                            details.because("forced by " + force.name() + " in versions.props");
+                        });
+                    }
+                });
+            }
+
+            configuration.withDependencies(dependencies ->
+                    dependencies.withType(ExternalModuleDependency.class).forEach(dependency -> {
+                        if (Strings.isNullOrEmpty(dependency.getVersion())) {
+                            mostSpecific(indexes, dependency.getGroup() + ":" + dependency.getName()).ifPresent(
+                                    force -> dependency.version(version -> version.require(force.version())));
+                        }
+                    }));
+        });
+    }
+
+    private static Optional<VersionForce> mostSpecific(List<VersionsPropsIndex> indexes, String module) {
+        return indexes.stream()
+                .map(index -> index.mostSpecific(module))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .findFirst();
+    }
+
+    /**
+     * Overrides the versions that {@code versions.props} picks with the ones in {@code versions.lock}, unless
+     * {@code writeVersionsLock} is going to run in this build. That is only known once the task graph is ready, which
+     * is before anything is resolved for the tasks in it.
+     */
+    private static void resolveFromLock(Project project, File lockFile) {
+        Map<String, String> lockedVersions = VersionsLock.read(lockFile).versions();
+        AtomicBoolean writingLock = new AtomicBoolean();
+        project.getGradle().getTaskGraph().whenReady(graph -> writingLock.set(
+                graph.hasTask(project.getRootProject().absoluteProjectPath(WRITE_LOCK_TASK))));
+        project.getConfigurations().configureEach(configuration -> configuration.getResolutionStrategy()
+                .eachDependency(details -> {
+                    if (writingLock.get()) {
+                        return;
+                    }
+                    ModuleVersionSelector requested = details.getRequested();
+                    String lockedVersion = lockedVersions.get(requested.getGroup() + ":" + requested.getName());
+                    if (lockedVersion != null) {
+                        details.useVersion(lockedVersion);
+                        details.because("locked in " + LOCK_FILE);
+                    }
+                }));
+    }
+
+    /**
+     * Replaces the resolved dependency graphs as the inputs of {@code task} with {@link VersionsPropsFingerprint},
+     * which can be computed without resolving anything, and gives the task an output so that it can be up to date
+     * and cached.
+     */
+    private static void useFingerprintInputs(Task task, Provider<Boolean> shouldFix) {
+        File resultFile = new File(task.getProject().getBuildDir(), "versions-props/" + task.getName());
+        task.getInputs().property("versionsPropsFingerprint",
+                (Callable<String>) () -> VersionsPropsFingerprint.compute(task.getProject()));
+        task.getOutputs().file(resultFile).withPropertyName("resultFile");
+        // Running with --fix rewrites versions.props, so it must always run and must not populate the cache
+        task.getOutputs().upToDateWhen(t -> !shouldFix.get());
+        task.getOutputs().cacheIf(t -> !shouldFix.get());
+        task.doLast(new WriteResultFile(resultFile));
+    }
+
+    private static final class WriteResultFile implements Action<Task> {
+        private final File resultFile;
+
+        WriteResultFile(File resultFile) {
+            this.resultFile = resultFile;
+        }
+
+        @Override
+        public void execute(Task task) {
+            try {
+                Files.createDirectories(resultFile.toPath().getParent());
+                Files.write(resultFile.toPath(), "true".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to write result file", e);
+            }
         }
     }
 
@@ -136,6 +350,22 @@ public final class BaselineVersions implements Plugin<Project> {
         return file;
     }
 
+    private static Map<String, String> getMavenBomRecommendations(Project project) {
+        return project.getExtensions()
+                .getByType(RecommendationProviderContainer.class)
+                .getMavenBomProvider()
+                .getRecommendations();
+    }
+
+    private static Set<String> getBomDependencies(Project project) {
+        return project.getConfigurations()
+                .getByName(DependencyRecommendationsPlugin.NEBULA_RECOMMENDER_BOM)
+                .getAllDependencies()
+                .stream()
+                .map(dep -> dep.getGroup() + ":" + dep.getName())
+                .collect(Collectors.toSet());
+    }
+
     static Set<String> getAllProjectsResolvedModuleIdentifiers(Project project) {
         return project.getRootProject().getAllprojects()
                 .stream()
@@ -144,6 +374,27 @@ public final class BaselineVersions implements Plugin<Project> {
     }
 
     static Set<String> getResolvedModuleIdentifiers(Project project) {
+        return getResolvedModuleComponents(project)
+                .map(ModuleComponentIdentifier::getModuleIdentifier)
+                .map(mid -> mid.getGroup() + ":" + mid.getName())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Map of {@code group:name} to version for every module resolved in any project. Where configurations resolve
+     * different versions of the same module, the highest one wins.
+     */
+    static Map<String, String> getAllProjectsResolvedModuleVersions(Project project) {
+        return project.getRootProject().getAllprojects()
+                .stream()
+                .flatMap(BaselineVersions::getResolvedModuleComponents)
+                .collect(Collectors.toMap(
+                        mcid -> mcid.getGroup() + ":" + mcid.getModule(),
+                        ModuleComponentIdentifier::getVersion,
+                        BinaryOperator.maxBy(Comparator.comparing(VersionNumber::parse))));
+    }
+
+    private static Stream<ModuleComponentIdentifier> getResolvedModuleComponents(Project project) {
         return project.getConfigurations().stream()
                 .filter(Configuration::isCanBeResolved)
                 .flatMap(configuration -> {
@@ -155,14 +406,12 @@ public final class BaselineVersions implements Plugin<Project> {
                                 .map(result -> result.getId())
                                 .filter(cid -> !cid.equals(resolutionResult.getRoot().getId())) // remove the project
                                 .filter(cid -> cid instanceof ModuleComponentIdentifier)
-                                .map(mcid -> ((ModuleComponentIdentifier) mcid).getModuleIdentifier())
-                                .map(mid -> mid.getGroup() + ":" + mid.getName());
+                                .map(cid -> (ModuleComponentIdentifier) cid);
                     } catch (Exception e) {
                         throw new RuntimeException(String.format("Error during resolution of the dependency graph of "
                                 + "configuration %s", configuration), e);
                     }
-                })
-                .collect(Collectors.toSet());
+                });
     }
 
     /**
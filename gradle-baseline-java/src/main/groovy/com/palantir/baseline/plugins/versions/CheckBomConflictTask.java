@@ -16,26 +16,20 @@
 
 package com.palantir.baseline.plugins.versions;
 
-import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
-import com.palantir.baseline.util.VersionsProps;
-import com.palantir.baseline.util.VersionsProps.ParsedVersionsProps;
+import com.palantir.baseline.plugins.versions.VersionsPropsAnalysis.Conflict;
 import java.io.File;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.BinaryOperator;
 import java.util.stream.Collectors;
-import netflix.nebula.dependency.recommender.DependencyRecommendationsPlugin;
-import netflix.nebula.dependency.recommender.provider.RecommendationProviderContainer;
-import org.apache.commons.lang3.tuple.Pair;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
-import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
 
@@ -44,6 +38,7 @@ public class CheckBomConflictTask extends DefaultTask {
 
     private final Property<Boolean> shouldFix = getProject().getObjects().property(Boolean.class);
     private final RegularFileProperty propsFileProperty = newInputFile();
+    private VersionsPropsAnalyzer analyzer;
 
     public CheckBomConflictTask() {
         shouldFix.set(false);
@@ -56,17 +51,24 @@ public class CheckBomConflictTask extends DefaultTask {
         this.propsFileProperty.set(propsFile);
     }
 
-    @Input
+    final void setAnalyzer(VersionsPropsAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Registered as a task input by {@link BaselineVersions}, unless the fingerprint mode is enabled.
+     */
+    @Internal
     public final Map<String, String> getMavenBomRecommendations() {
-        return getProject().getExtensions()
-                .getByType(RecommendationProviderContainer.class)
-                .getMavenBomProvider()
-                .getRecommendations();
+        return analyzer.getRecommendations();
     }
 
-    @Input
+    /**
+     * Registered as a task input by {@link BaselineVersions}, unless the fingerprint mode is enabled.
+     */
+    @Internal
     public final Set<String> getResolvedArtifacts() {
-        return BaselineVersions.getAllProjectsResolvedModuleIdentifiers(getProject());
+        return analyzer.getResolvedArtifacts();
     }
 
     @InputFile
@@ -83,59 +85,16 @@ public class CheckBomConflictTask extends DefaultTask {
         this.shouldFix.set(shouldFix);
     }
 
+    final Provider<Boolean> getShouldFix() {
+        return shouldFix;
+    }
+
     @TaskAction
     public final void checkBomConflict() {
-        List<Conflict> conflicts = Lists.newArrayList();
-        Set<String> artifacts = getResolvedArtifacts();
-        Map<String, String> recommendations = getMavenBomRecommendations();
-        Set<String> bomDeps = getProject().getConfigurations()
-                .getByName(DependencyRecommendationsPlugin.NEBULA_RECOMMENDER_BOM)
-                .getAllDependencies()
-                .stream()
-                .map(dep -> dep.getGroup() + ":" + dep.getName())
-                .collect(Collectors.toSet());
-
-        ParsedVersionsProps parsedVersionsProps = VersionsProps.readVersionsProps(getPropsFile().get().getAsFile());
-        // Map of (artifact name not defined from BOM) -> (version props line it 'vindicates', i.e. confirms is used)
-        Map<String, String> resolvedConflicts = parsedVersionsProps
-                .forces()
-                .stream()
-                .flatMap(force -> {
-                    String propName = force.name();
-                    String regex = propName.replaceAll("\\*", ".*");
-
-                    Set<String> recommendationConflicts = recommendations
-                            .entrySet()
-                            .stream()
-                            // Don't report conflicts for artifacts that are used to configure bom recommendations
-                            .filter(entry -> !bomDeps.contains(entry.getKey()))
-                            .filter(entry -> entry.getKey().matches(regex))
-                            .map(entry -> {
-                                conflicts.add(
-                                        new Conflict(propName, force.version(), entry.getKey(), entry.getValue()));
-                                return entry.getKey();
-                            })
-                            .collect(Collectors.toSet());
-
-                    return artifacts.stream()
-                            .filter(artifactName -> artifactName.matches(regex))
-                            .filter(artifactName -> !recommendationConflicts.contains(artifactName))
-                            .map(artifactName -> Pair.of(artifactName, propName));
-                })
-                // Resolve conflicts by choosing the more specific entry
-                .collect(Collectors.toMap(
-                        Pair::getLeft,
-                        Pair::getRight,
-                        BinaryOperator.maxBy(BaselineVersions.VERSIONS_PROPS_ENTRY_SPECIFIC_COMPARATOR)));
-
-        Set<String> versionPropsVindicatedLines = ImmutableSet.copyOf(resolvedConflicts.values());
-
-        //Critical conflicts are versions.props line that only override bom recommendations with same version
-        //so it should avoid considering the case where a wildcard also pin an artifact not present in the bom
-        List<Conflict> critical = conflicts.stream()
-                .filter(c -> c.getBomVersion().equals(c.getPropVersion()))
-                .filter(c -> !versionPropsVindicatedLines.contains(c.getPropName()))
-                .collect(Collectors.toList());
+        VersionsPropsAnalysis analysis = analyzer.analyze();
+        List<Conflict> conflicts = analysis.getConflicts();
+        Map<String, String> resolvedConflicts = analysis.getResolvedConflicts();
+        List<Conflict> critical = analysis.getCriticalConflicts();
 
         if (conflicts.isEmpty()) {
             return;
@@ -148,12 +107,13 @@ public class CheckBomConflictTask extends DefaultTask {
         }
 
         if (shouldFix.get()) {
-            List<String> toRemove = critical.stream().map(Conflict::getPropName).collect(Collectors.toList());
+            Set<String> removed = analyzer.fix(currentAnalysis -> currentAnalysis.getCriticalConflicts().stream()
+                    .map(Conflict::getPropName)
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
             getProject().getLogger().lifecycle("Removing critical conflicts from versions.props:\n"
-                    + toRemove.stream()
+                    + removed.stream()
                     .map(name -> String.format(" - '%s'", name))
                     .collect(Collectors.joining("\n")));
-            VersionsProps.writeVersionsProps(parsedVersionsProps, toRemove.stream(), getPropsFile().get().getAsFile());
             return;
         }
 
@@ -189,38 +149,4 @@ public class CheckBomConflictTask extends DefaultTask {
         return String.format("%s  versions.props: %s -> %s\n%s",
                 sameVersionExplanation, propName, conflicts.get(0).getPropVersion(), bomDetails);
     }
-
-    private static class Conflict {
-        private String propName;
-        private String propVersion;
-        private String bomName;
-        private String bomVersion;
-
-        Conflict(String propName, String propVersion, String bomName, String bomVersion) {
-            this.propName = propName;
-            this.propVersion = propVersion;
-            this.bomName = bomName;
-            this.bomVersion = bomVersion;
-        }
-
-        public String getPropName() {
-            return propName;
-        }
-
-        public String getPropVersion() {
-            return propVersion;
-        }
-
-        public String getBomName() {
-            return bomName;
-        }
-
-        public String getBomVersion() {
-            return bomVersion;
-        }
-
-        public String bomDetail() {
-            return bomName + " -> " + bomVersion;
-        }
-    }
 }
@@ -16,26 +16,16 @@
 
 package com.palantir.baseline.plugins.versions;
 
-import com.palantir.baseline.util.VersionsProps;
-import com.palantir.baseline.util.VersionsProps.ParsedVersionsProps;
-import com.palantir.baseline.util.VersionsProps.VersionForce;
 import java.io.File;
-import java.util.LinkedHashSet;
-import java.util.List;
-import java.util.Map.Entry;
-import java.util.Optional;
 import java.util.Set;
-import java.util.function.Predicate;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import org.apache.commons.lang3.tuple.Pair;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
-import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
 
@@ -43,6 +33,7 @@ public class CheckNoUnusedPinTask extends DefaultTask {
 
     private final Property<Boolean> shouldFix = getProject().getObjects().property(Boolean.class);
     private final RegularFileProperty propsFileProperty = newInputFile();
+    private VersionsPropsAnalyzer analyzer;
 
     public CheckNoUnusedPinTask() {
         shouldFix.set(false);
@@ -54,9 +45,16 @@ public class CheckNoUnusedPinTask extends DefaultTask {
         this.propsFileProperty.set(propsFile);
     }
 
-    @Input
+    final void setAnalyzer(VersionsPropsAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Registered as a task input by {@link BaselineVersions}, unless the fingerprint mode is enabled.
+     */
+    @Internal
     public final Set<String> getResolvedArtifacts() {
-        return BaselineVersions.getAllProjectsResolvedModuleIdentifiers(getProject());
+        return analyzer.getResolvedArtifacts();
     }
 
     @InputFile
@@ -73,47 +71,24 @@ public class CheckNoUnusedPinTask extends DefaultTask {
         this.shouldFix.set(shouldFix);
     }
 
+    final Provider<Boolean> getShouldFix() {
+        return shouldFix;
+    }
+
     @TaskAction
     public final void checkNoUnusedPin() {
-        Set<String> artifacts = getResolvedArtifacts();
-        ParsedVersionsProps parsedVersionsProps = VersionsProps.readVersionsProps(getPropsFile().get().getAsFile());
-
-        List<Pair<String, Predicate<String>>> versionsPropToPredicate = parsedVersionsProps
-                .forces()
-                .stream()
-                .map(VersionForce::name)
-                .map(propName -> {
-                    Pattern pattern = Pattern.compile(propName.replaceAll("\\*", ".*"));
-                    return Pair.of(propName, (Predicate<String>) s -> pattern.matcher(s).matches());
-                })
-                .collect(Collectors.toList());
-
-        Set<String> unusedForces = versionsPropToPredicate
-                .stream()
-                .map(Pair::getLeft)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
-
-        // Remove the force that each artifact uses. This will be the most specific force.
-        artifacts.forEach(artifact -> {
-            Optional<String> matching = versionsPropToPredicate
-                    .stream()
-                    .filter(pair -> pair.getRight().test(artifact))
-                    .map(Entry::getKey)
-                    .max(BaselineVersions.VERSIONS_PROPS_ENTRY_SPECIFIC_COMPARATOR);
-            matching.ifPresent(unusedForces::remove);
-        });
+        Set<String> unusedForces = analyzer.analyze().getUnusedForces();
 
         if (unusedForces.isEmpty()) {
             return;
         }
 
         if (shouldFix.get()) {
+            Set<String> removed = analyzer.fix(VersionsPropsAnalysis::getUnusedForces);
             getProject().getLogger().lifecycle("Removing unused pins from versions.props:\n"
-                    + unusedForces.stream()
+                    + removed.stream()
                     .map(name -> String.format(" - '%s'", name))
                     .collect(Collectors.joining("\n")));
-            VersionsProps.writeVersionsProps(
-                    parsedVersionsProps, unusedForces.stream(), getPropsFile().get().getAsFile());
             return;
         }
 
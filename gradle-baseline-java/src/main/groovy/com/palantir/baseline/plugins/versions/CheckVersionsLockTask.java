@@ -0,0 +1,79 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.TaskAction;
+
+public class CheckVersionsLockTask extends DefaultTask {
+
+    private final RegularFileProperty lockFileProperty = newInputFile();
+
+    public CheckVersionsLockTask() {
+        setGroup(BaselineVersions.GROUP);
+        setDescription("Ensures versions.lock matches versions.props and the dependencies declared in the build");
+    }
+
+    final void setLockFile(File lockFile) {
+        this.lockFileProperty.set(lockFile);
+    }
+
+    @InputFile
+    public final Provider<RegularFile> getLockFile() {
+        return lockFileProperty;
+    }
+
+    @TaskAction
+    public final void checkVersionsLock() {
+        VersionsLock lock = VersionsLock.read(getLockFile().get().getAsFile());
+        Map<String, String> resolved =
+                new TreeMap<>(BaselineVersions.getAllProjectsResolvedModuleVersions(getProject()));
+        List<String> drift = new ArrayList<>();
+
+        if (!lock.fingerprint().equals(VersionsPropsFingerprint.compute(getProject()))) {
+            drift.add("versions.props or the declared dependencies have changed since versions.lock was written");
+        }
+        resolved.forEach((module, version) -> {
+            String lockedVersion = lock.versions().get(module);
+            if (lockedVersion == null) {
+                drift.add(String.format("%s:%s is not locked", module, version));
+            } else if (!lockedVersion.equals(version)) {
+                drift.add(String.format("%s is locked to %s but resolves to %s", module, lockedVersion, version));
+            }
+        });
+        new TreeMap<>(lock.versions()).forEach((module, version) -> {
+            if (!resolved.containsKey(module)) {
+                drift.add(String.format("%s:%s is locked but no longer used", module, version));
+            }
+        });
+
+        if (!drift.isEmpty()) {
+            throw new RuntimeException("versions.lock is out of date:\n"
+                    + String.join("\n", drift)
+                    + "\n\nRun ./gradlew writeVersionsLock to update it.");
+        }
+    }
+}
@@ -16,13 +16,17 @@
 
 package com.palantir.baseline.plugins.versions;
 
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
 
 public class CheckVersionsPropsTask extends DefaultTask {
     private final Property<Boolean> shouldFix = getProject().getObjects().property(Boolean.class);
+    private VersionsPropsAnalyzer analyzer;
 
     public CheckVersionsPropsTask() {
         setGroup(BaselineVersions.GROUP);
@@ -38,4 +42,26 @@ public class CheckVersionsPropsTask extends DefaultTask {
     final Provider<Boolean> getShouldFix() {
         return shouldFix;
     }
+
+    final void setAnalyzer(VersionsPropsAnalyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * With {@code --fix}, the individual checks are skipped and all of their fixes are applied here, in a single
+     * write to {@code versions.props}.
+     */
+    @TaskAction
+    public final void fixVersionsProps() {
+        if (!shouldFix.get()) {
+            return;
+        }
+        Set<String> removed = analyzer.fix(VersionsPropsAnalysis::getForcesToRemove);
+        if (!removed.isEmpty()) {
+            getProject().getLogger().lifecycle("Removing critical conflicts and unused pins from versions.props:\n"
+                    + removed.stream()
+                    .map(name -> String.format(" - '%s'", name))
+                    .collect(Collectors.joining("\n")));
+        }
+    }
 }
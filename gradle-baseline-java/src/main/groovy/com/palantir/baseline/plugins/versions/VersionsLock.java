@@ -0,0 +1,90 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions;
+
+import com.google.common.base.Preconditions;
+import com.palantir.baseline.util.AtomicFiles;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.inferred.freebuilder.FreeBuilder;
+
+/**
+ * The contents of a {@code versions.lock} file, which pins every module resolved anywhere in the build to a single
+ * version. The file looks like:
+ *
+ * <pre>
+ * # Run ./gradlew writeVersionsLock to regenerate this file
+ * # fingerprint: 0123456789abcdef...
+ * com.google.guava:guava:27.0.1-jre
+ * </pre>
+ */
+@FreeBuilder
+interface VersionsLock {
+    String HEADER = "# Run ./gradlew writeVersionsLock to regenerate this file";
+    String FINGERPRINT_PREFIX = "# fingerprint: ";
+
+    /** The {@link VersionsPropsFingerprint} of the build that the lock was generated from. */
+    String fingerprint();
+
+    /** Map of {@code group:name} to the locked version. */
+    Map<String, String> versions();
+
+    class Builder extends VersionsLock_Builder { }
+
+    static VersionsLock read(File lockFile) {
+        Preconditions.checkArgument(lockFile.exists(), "No " + lockFile.toPath() + " file found");
+        try {
+            return read(Files.readAllLines(lockFile.toPath()));
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + lockFile.toPath() + " file", e);
+        }
+    }
+
+    static VersionsLock read(List<String> lines) {
+        Builder builder = new Builder().fingerprint("");
+        for (String line0 : lines) {
+            String line = line0.trim();
+            if (line.startsWith(FINGERPRINT_PREFIX)) {
+                builder.fingerprint(line.substring(FINGERPRINT_PREFIX.length()).trim());
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                int versionIndex = line.lastIndexOf(':');
+                Preconditions.checkArgument(versionIndex > 0 && line.indexOf(':') < versionIndex,
+                        "Expected 'group:name:version' in versions.lock but found: " + line);
+                builder.putVersions(line.substring(0, versionIndex), line.substring(versionIndex + 1));
+            }
+        }
+        return builder.build();
+    }
+
+    /** Writes the lock to a temporary file first and moves it into place, so a lock is never half-written. */
+    default void write(File lockFile) {
+        AtomicFiles.write(lockFile.toPath(), writer -> {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write(FINGERPRINT_PREFIX + fingerprint());
+            writer.newLine();
+            for (Map.Entry<String, String> entry : new TreeMap<>(versions()).entrySet()) {
+                writer.write(entry.getKey() + ":" + entry.getValue());
+                writer.newLine();
+            }
+        });
+    }
+}
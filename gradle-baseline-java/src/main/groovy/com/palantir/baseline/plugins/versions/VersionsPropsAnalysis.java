@@ -0,0 +1,209 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions;
+
+import com.palantir.baseline.util.VersionsProps.ParsedVersionsProps;
+import com.palantir.baseline.util.VersionsProps.VersionForce;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates both the unused pin rule and the BOM conflict rule for a {@code versions.props} file, using a single
+ * {@link VersionsPropsIndex} lookup per resolved artifact and per BOM recommendation.
+ */
+final class VersionsPropsAnalysis {
+
+    private final ParsedVersionsProps parsedVersionsProps;
+    private final List<Conflict> conflicts;
+    private final Map<String, String> resolvedConflicts;
+    private final List<Conflict> criticalConflicts;
+    private final Set<String> unusedForces;
+    private final Set<String> unusedForcesAfterRemovingCriticalConflicts;
+
+    private VersionsPropsAnalysis(
+            ParsedVersionsProps parsedVersionsProps,
+            List<Conflict> conflicts,
+            Map<String, String> resolvedConflicts,
+            List<Conflict> criticalConflicts,
+            Set<String> unusedForces,
+            Set<String> unusedForcesAfterRemovingCriticalConflicts) {
+        this.parsedVersionsProps = parsedVersionsProps;
+        this.conflicts = conflicts;
+        this.resolvedConflicts = resolvedConflicts;
+        this.criticalConflicts = criticalConflicts;
+        this.unusedForces = unusedForces;
+        this.unusedForcesAfterRemovingCriticalConflicts = unusedForcesAfterRemovingCriticalConflicts;
+    }
+
+    /**
+     * Analyses {@code parsedVersionsProps} against the modules resolved in the build and the BOM recommendations.
+     *
+     * @param artifacts {@code group:name} of every resolved module
+     * @param recommendations map of {@code group:name} to the version recommended by a BOM
+     * @param bomDeps {@code group:name} of the BOMs themselves, which never conflict
+     */
+    static VersionsPropsAnalysis analyze(
+            ParsedVersionsProps parsedVersionsProps,
+            Set<String> artifacts,
+            Map<String, String> recommendations,
+            Set<String> bomDeps) {
+        VersionsPropsIndex index = VersionsPropsIndex.of(parsedVersionsProps.forces());
+        Map<String, Integer> locations = parsedVersionsProps.namesToLocationMap();
+
+        List<Conflict> conflicts = new ArrayList<>();
+        recommendations.forEach((module, bomVersion) -> {
+            // Don't report conflicts for artifacts that are used to configure bom recommendations
+            if (!bomDeps.contains(module)) {
+                index.matching(module).forEach(force ->
+                        conflicts.add(new Conflict(force.name(), force.version(), module, bomVersion)));
+            }
+        });
+        conflicts.sort(Comparator.comparing((Conflict conflict) -> locations.get(conflict.getPropName()))
+                .thenComparing(Conflict::getBomName));
+
+        // Map of (artifact name not defined from BOM) -> (version props line it 'vindicates', i.e. confirms is used)
+        Map<String, String> resolvedConflicts = new HashMap<>();
+        Set<String> usedForces = new HashSet<>();
+        for (String artifact : artifacts) {
+            index.mostSpecific(artifact).ifPresent(force -> {
+                usedForces.add(force.name());
+                boolean recommendedByBom = recommendations.containsKey(artifact) && !bomDeps.contains(artifact);
+                if (!recommendedByBom) {
+                    resolvedConflicts.put(artifact, force.name());
+                }
+            });
+        }
+
+        // Critical conflicts are versions.props line that only override bom recommendations with same version
+        // so it should avoid considering the case where a wildcard also pin an artifact not present in the bom
+        Set<String> vindicatedForces = new HashSet<>(resolvedConflicts.values());
+        List<Conflict> criticalConflicts = conflicts.stream()
+                .filter(conflict -> conflict.getBomVersion().equals(conflict.getPropVersion()))
+                .filter(conflict -> !vindicatedForces.contains(conflict.getPropName()))
+                .collect(Collectors.toList());
+        Set<String> criticalForces = criticalConflicts.stream()
+                .map(Conflict::getPropName)
+                .collect(Collectors.toSet());
+
+        // Once the critical conflicts are gone, artifacts fall back to the next most specific force
+        Set<String> usedForcesAfterRemovingCriticalConflicts = new HashSet<>();
+        for (String artifact : artifacts) {
+            index.matching(artifact).stream()
+                    .map(VersionForce::name)
+                    .filter(name -> !criticalForces.contains(name))
+                    .findFirst()
+                    .ifPresent(usedForcesAfterRemovingCriticalConflicts::add);
+        }
+
+        Set<String> unusedForces = new LinkedHashSet<>();
+        Set<String> unusedForcesAfterRemovingCriticalConflicts = new LinkedHashSet<>();
+        for (VersionForce force : parsedVersionsProps.forces()) {
+            if (!usedForces.contains(force.name())) {
+                unusedForces.add(force.name());
+            }
+            if (!criticalForces.contains(force.name())
+                    && !usedForcesAfterRemovingCriticalConflicts.contains(force.name())) {
+                unusedForcesAfterRemovingCriticalConflicts.add(force.name());
+            }
+        }
+
+        return new VersionsPropsAnalysis(
+                parsedVersionsProps,
+                Collections.unmodifiableList(conflicts),
+                Collections.unmodifiableMap(resolvedConflicts),
+                Collections.unmodifiableList(criticalConflicts),
+                Collections.unmodifiableSet(unusedForces),
+                Collections.unmodifiableSet(unusedForcesAfterRemovingCriticalConflicts));
+    }
+
+    ParsedVersionsProps getParsedVersionsProps() {
+        return parsedVersionsProps;
+    }
+
+    /** Every pair of a {@code versions.props} force and a BOM recommendation that it matches. */
+    List<Conflict> getConflicts() {
+        return conflicts;
+    }
+
+    /** Map of artifacts not recommended by a BOM to the force that applies to them. */
+    Map<String, String> getResolvedConflicts() {
+        return resolvedConflicts;
+    }
+
+    /** Conflicts where a force only ever pins BOM recommendations to the version the BOM already recommends. */
+    List<Conflict> getCriticalConflicts() {
+        return criticalConflicts;
+    }
+
+    /** Forces that aren't the most specific force for any resolved artifact, in file order. */
+    Set<String> getUnusedForces() {
+        return unusedForces;
+    }
+
+    /**
+     * Every force that {@code --fix} should remove: the forces with critical conflicts, and the forces that would
+     * still be unused once those are removed.
+     */
+    Set<String> getForcesToRemove() {
+        Set<String> forcesToRemove = new LinkedHashSet<>();
+        criticalConflicts.forEach(conflict -> forcesToRemove.add(conflict.getPropName()));
+        forcesToRemove.addAll(unusedForcesAfterRemovingCriticalConflicts);
+        return forcesToRemove;
+    }
+
+    static final class Conflict {
+        private final String propName;
+        private final String propVersion;
+        private final String bomName;
+        private final String bomVersion;
+
+        Conflict(String propName, String propVersion, String bomName, String bomVersion) {
+            this.propName = propName;
+            this.propVersion = propVersion;
+            this.bomName = bomName;
+            this.bomVersion = bomVersion;
+        }
+
+        public String getPropName() {
+            return propName;
+        }
+
+        public String getPropVersion() {
+            return propVersion;
+        }
+
+        public String getBomName() {
+            return bomName;
+        }
+
+        public String getBomVersion() {
+            return bomVersion;
+        }
+
+        public String bomDetail() {
+            return bomName + " -> " + bomVersion;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions;
+
+import com.google.common.base.Suppliers;
+import com.palantir.baseline.util.VersionsProps;
+import com.palantir.baseline.util.VersionsProps.ParsedVersionsProps;
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Shared by all the {@code versions.props} check tasks of a build, so that the dependency graphs are only walked once
+ * and {@code versions.props} is only analysed again when it has changed. All fixes go through {@link #fix}, which
+ * serialises them, so the tasks can safely run with {@code --parallel --fix}.
+ */
+final class VersionsPropsAnalyzer {
+
+    private final File propsFile;
+    private final Supplier<Set<String>> resolvedArtifacts;
+    private final Supplier<Map<String, String>> recommendations;
+    private final Supplier<Set<String>> bomDeps;
+
+    private ParsedVersionsProps lastParsedVersionsProps;
+    private VersionsPropsAnalysis lastAnalysis;
+
+    VersionsPropsAnalyzer(
+            File propsFile,
+            Supplier<Set<String>> resolvedArtifacts,
+            Supplier<Map<String, String>> recommendations,
+            Supplier<Set<String>> bomDeps) {
+        this.propsFile = propsFile;
+        this.resolvedArtifacts = Suppliers.memoize(resolvedArtifacts::get);
+        this.recommendations = Suppliers.memoize(recommendations::get);
+        this.bomDeps = Suppliers.memoize(bomDeps::get);
+    }
+
+    Set<String> getResolvedArtifacts() {
+        return resolvedArtifacts.get();
+    }
+
+    Map<String, String> getRecommendations() {
+        return recommendations.get();
+    }
+
+    synchronized VersionsPropsAnalysis analyze() {
+        ParsedVersionsProps parsedVersionsProps = VersionsProps.readVersionsProps(propsFile);
+        if (!parsedVersionsProps.equals(lastParsedVersionsProps)) {
+            lastAnalysis = VersionsPropsAnalysis.analyze(
+                    parsedVersionsProps, resolvedArtifacts.get(), recommendations.get(), bomDeps.get());
+            lastParsedVersionsProps = parsedVersionsProps;
+        }
+        return lastAnalysis;
+    }
+
+    /**
+     * Removes the forces selected by {@code forcesToRemove} from the current contents of {@code versions.props} in a
+     * single atomic write, and returns them.
+     */
+    synchronized Set<String> fix(Function<VersionsPropsAnalysis, Set<String>> forcesToRemove) {
+        VersionsPropsAnalysis analysis = analyze();
+        Set<String> toRemove = forcesToRemove.apply(analysis);
+        if (!toRemove.isEmpty()) {
+            VersionsProps.writeVersionsProps(analysis.getParsedVersionsProps(), toRemove.stream(), propsFile);
+        }
+        return toRemove;
+    }
+}
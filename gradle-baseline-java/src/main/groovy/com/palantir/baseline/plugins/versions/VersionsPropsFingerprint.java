@@ -0,0 +1,156 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.gradle.api.Project;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyConstraint;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.ProjectDependency;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.repositories.IvyArtifactRepository;
+import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
+
+/**
+ * Computes a cheap fingerprint of everything that determines the outcome of the {@code versions.props} checks,
+ * without resolving any configuration: the contents of every {@code versions.props} file, the declared dependencies
+ * (including BOMs declared through {@code dependencyRecommendations}), dependency constraints, forced modules and
+ * repositories of every project. Nothing in it depends on where the build is checked out.
+ *
+ * <p>The fingerprint does not capture changes to the contents of a module that is republished under the same
+ * coordinates, nor what dynamic versions resolve to.
+ */
+final class VersionsPropsFingerprint {
+
+    private VersionsPropsFingerprint() {}
+
+    static String compute(Project project) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        project.getRootProject().getAllprojects().stream()
+                .sorted(Comparator.comparing(Project::getPath))
+                .forEach(proj -> {
+                    putString(hasher, proj.getPath());
+                    putFile(hasher, proj.file("versions.props"));
+                    putRepositories(hasher, proj);
+                    proj.getConfigurations().stream()
+                            .sorted(Comparator.comparing(Configuration::getName))
+                            .forEach(configuration -> putConfiguration(hasher, configuration));
+                });
+        return hasher.hash().toString();
+    }
+
+    private static void putFile(Hasher hasher, File file) {
+        if (!file.isFile()) {
+            hasher.putInt(-1);
+            return;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            hasher.putInt(bytes.length).putBytes(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading " + file.toPath() + " file", e);
+        }
+    }
+
+    private static void putRepositories(Hasher hasher, Project project) {
+        for (ArtifactRepository repository : project.getRepositories()) {
+            putString(hasher, repository.getName());
+            if (repository instanceof MavenArtifactRepository) {
+                putString(hasher, relocatable(project, ((MavenArtifactRepository) repository).getUrl()));
+            } else if (repository instanceof IvyArtifactRepository) {
+                putString(hasher, relocatable(project, ((IvyArtifactRepository) repository).getUrl()));
+            }
+        }
+    }
+
+    /**
+     * The {@code url} of a repository without the parts that differ between machines and checkouts, so that the
+     * fingerprint is the same everywhere: credentials and fragments of remote URLs, and the location of the root
+     * project, the Gradle user home or the user's home directory for local repositories.
+     */
+    private static String relocatable(Project project, URI url) {
+        if (url == null) {
+            return "none";
+        }
+        if ("file".equals(url.getScheme())) {
+            Path path = Paths.get(url).toAbsolutePath().normalize();
+            Map<String, File> bases = ImmutableMap.of(
+                    "root", project.getRootDir(),
+                    "gradle-user-home", project.getGradle().getGradleUserHomeDir(),
+                    "home", new File(System.getProperty("user.home")));
+            for (Map.Entry<String, File> base : bases.entrySet()) {
+                Path basePath = base.getValue().toPath().toAbsolutePath().normalize();
+                if (path.startsWith(basePath)) {
+                    return base.getKey() + ":" + basePath.relativize(path).toString().replace(File.separatorChar, '/');
+                }
+            }
+            return path.toString().replace(File.separatorChar, '/');
+        }
+        try {
+            return new URI(url.getScheme(), null, url.getHost(), url.getPort(), url.getPath(), url.getQuery(), null)
+                    .toString();
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Invalid repository URL " + url, e);
+        }
+    }
+
+    private static void putConfiguration(Hasher hasher, Configuration configuration) {
+        // Sorted so that the fingerprint doesn't depend on the order in which plugins added dependencies
+        SortedSet<String> entries = new TreeSet<>();
+        for (Dependency dependency : configuration.getDependencies()) {
+            if (dependency instanceof ProjectDependency) {
+                entries.add("project " + ((ProjectDependency) dependency).getDependencyProject().getPath());
+            } else {
+                entries.add("dependency " + dependency.getGroup() + ":" + dependency.getName() + ":"
+                        + dependency.getVersion());
+            }
+        }
+        for (DependencyConstraint constraint : configuration.getDependencyConstraints()) {
+            entries.add("constraint " + constraint.getGroup() + ":" + constraint.getName() + ":"
+                    + constraint.getVersion());
+        }
+        for (ModuleVersionSelector forced : configuration.getResolutionStrategy().getForcedModules()) {
+            entries.add("force " + forced.getGroup() + ":" + forced.getName() + ":" + forced.getVersion());
+        }
+        configuration.getExtendsFrom().forEach(parent -> entries.add("extends " + parent.getName()));
+
+        putString(hasher, configuration.getName());
+        hasher.putInt(entries.size());
+        entries.forEach(entry -> putString(hasher, entry));
+    }
+
+    /** Length-prefixed, so that adjacent strings can't run into each other. */
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length()).putString(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions;
+
+import com.palantir.baseline.util.VersionsProps.VersionForce;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the most specific {@code versions.props} force for a {@code group:name} module. Exact entries are looked up
+ * directly; wildcard entries are only matched the first time a module is looked up, and the result is remembered.
+ */
+final class VersionsPropsIndex {
+
+    private final Map<String, VersionForce> exactForces;
+    /** Sorted from most to least specific, in file order for equally specific entries. */
+    private final List<WildcardForce> wildcardForces;
+    private final Map<String, List<VersionForce>> matches = new ConcurrentHashMap<>();
+
+    private VersionsPropsIndex(Map<String, VersionForce> exactForces, List<WildcardForce> wildcardForces) {
+        this.exactForces = exactForces;
+        this.wildcardForces = wildcardForces;
+    }
+
+    static VersionsPropsIndex of(List<VersionForce> forces) {
+        Map<String, VersionForce> exactForces = new HashMap<>();
+        List<WildcardForce> wildcardForces = new ArrayList<>();
+        for (VersionForce force : forces) {
+            if (force.name().contains("*")) {
+                wildcardForces.add(new WildcardForce(force));
+            } else {
+                exactForces.putIfAbsent(force.name(), force);
+            }
+        }
+        wildcardForces.sort(Collections.reverseOrder((first, second) ->
+                BaselineVersions.VERSIONS_PROPS_ENTRY_SPECIFIC_COMPARATOR.compare(
+                        first.force.name(), second.force.name())));
+        return new VersionsPropsIndex(exactForces, wildcardForces);
+    }
+
+    /** The force that applies to {@code module}, which is of the form {@code group:name}. */
+    Optional<VersionForce> mostSpecific(String module) {
+        VersionForce exact = exactForces.get(module);
+        if (exact != null) {
+            return Optional.of(exact);
+        }
+        List<VersionForce> matching = matching(module);
+        return matching.isEmpty() ? Optional.empty() : Optional.of(matching.get(0));
+    }
+
+    /** All forces that match {@code module}, from most to least specific. */
+    List<VersionForce> matching(String module) {
+        return matches.computeIfAbsent(module, key -> {
+            List<VersionForce> result = new ArrayList<>();
+            VersionForce exact = exactForces.get(key);
+            if (exact != null) {
+                result.add(exact);
+            }
+            for (WildcardForce wildcard : wildcardForces) {
+                if (wildcard.pattern.matcher(key).matches()) {
+                    result.add(wildcard.force);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        });
+    }
+
+    private static final class WildcardForce {
+        private final VersionForce force;
+        private final Pattern pattern;
+
+        WildcardForce(VersionForce force) {
+            this.force = force;
+            this.pattern = Pattern.compile(force.name().replaceAll("\\*", ".*"));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+public class WriteVersionsLockTask extends DefaultTask {
+
+    private final RegularFileProperty lockFileProperty = newOutputFile();
+    private final Provider<String> fingerprint =
+            getProject().provider(() -> VersionsPropsFingerprint.compute(getProject()));
+    private final Provider<Map<String, String>> resolvedVersions = getProject().provider(() ->
+            new TreeMap<>(BaselineVersions.getAllProjectsResolvedModuleVersions(getProject())));
+
+    public WriteVersionsLockTask() {
+        setGroup(BaselineVersions.GROUP);
+        setDescription("Writes the version of every module resolved in the build to versions.lock");
+    }
+
+    final void setLockFile(File lockFile) {
+        this.lockFileProperty.set(lockFile);
+    }
+
+    @OutputFile
+    public final Provider<RegularFile> getLockFile() {
+        return lockFileProperty;
+    }
+
+    /** The {@link VersionsPropsFingerprint} of the build, recorded in the lock. */
+    @Input
+    public final Provider<String> getFingerprint() {
+        return fingerprint;
+    }
+
+    /** Map of {@code group:name} to the version of every module resolved anywhere in the build. */
+    @Input
+    public final Provider<Map<String, String>> getResolvedVersions() {
+        return resolvedVersions;
+    }
+
+    @TaskAction
+    public final void writeVersionsLock() {
+        VersionsLock lock = new VersionsLock.Builder()
+                .fingerprint(fingerprint.get())
+                .putAllVersions(resolvedVersions.get())
+                .build();
+        lock.write(getLockFile().get().getAsFile());
+        getLogger().lifecycle("Locked {} modules in {}", lock.versions().size(), getLockFile().get().getAsFile());
+    }
+}
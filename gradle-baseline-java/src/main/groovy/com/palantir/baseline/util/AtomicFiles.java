@@ -0,0 +1,74 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Replaces files in a single atomic move, so that concurrent readers never see a partially written file. The new file
+ * keeps the permissions of the file it replaces, and is readable by everyone if there was no file before.
+ */
+public final class AtomicFiles {
+
+    private static final Set<PosixFilePermission> DEFAULT_PERMISSIONS = PosixFilePermissions.fromString("rw-r--r--");
+
+    private AtomicFiles() {}
+
+    public interface Contents {
+        void writeTo(BufferedWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes {@code contents} to a temporary file next to {@code target}, which then replaces {@code target}. The
+     * temporary file is deleted if anything goes wrong.
+     */
+    public static void write(Path target, Contents contents) {
+        Path absoluteTarget = target.toAbsolutePath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(
+                    absoluteTarget.getParent(), absoluteTarget.getFileName().toString(), ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp)) {
+                contents.writeTo(writer);
+            }
+            if (absoluteTarget.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(temp, Files.exists(absoluteTarget)
+                        ? Files.getPosixFilePermissions(absoluteTarget)
+                        : DEFAULT_PERMISSIONS);
+            }
+            Files.move(temp, absoluteTarget, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing " + absoluteTarget + " file", e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // The original failure is more interesting
+                }
+            }
+        }
+    }
+}
@@ -17,12 +17,9 @@
 package com.palantir.baseline.util;
 
 import com.google.common.base.Preconditions;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -110,7 +107,8 @@ public final class VersionsProps {
 
     /**
      * Writes back a {@link ParsedVersionsProps} to the {@code propsFile}, removing the given {@code forcesToRemove}
-     * from the file.
+     * from the file. The new contents atomically replace {@code propsFile} through {@link AtomicFiles}, so concurrent
+     * readers never see a partially written file.
      *
      * @throws NullPointerException if any of the {@code forcesToRemove} weren't found in
      * {@link ParsedVersionsProps#namesToLocationMap}.
@@ -122,17 +120,13 @@ public final class VersionsProps {
                 .map(parsedVersionsProps.namesToLocationMap()::get)
                 .map(Preconditions::checkNotNull)
                 .collect(Collectors.toSet());
-        try (BufferedWriter writer0 = Files.newBufferedWriter(propsFile.toPath(), StandardOpenOption.TRUNCATE_EXISTING);
-                PrintWriter writer = new PrintWriter(writer0)) {
+        AtomicFiles.write(propsFile.toPath(), writer -> {
             for (int index = 0; index < lines.size(); index++) {
                 if (!indicesToSkip.contains(index)) {
-                    writer.println(lines.get(index));
+                    writer.write(lines.get(index));
+                    writer.newLine();
                 }
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        });
     }
-
-
 }
@@ -305,4 +305,148 @@ class BaselineVersionsIntegrationTest extends AbstractPluginTest {
         buildSucceed()
     }
 
+    def 'Fingerprint mode makes the checks up to date until an input changes'() {
+        when:
+        setupVersionsProps("org.scala-lang:scala-library = 2.12.6")
+        buildFile << standardBuildFile(projectDir)
+        file('gradle.properties') << "com.palantir.baseline-versions.fingerprint = true\n"
+
+        then:
+        BuildResult first = with('checkVersionsProps').build()
+        first.task(':checkBomConflict').outcome == TaskOutcome.SUCCESS
+        first.task(':checkNoUnusedPin').outcome == TaskOutcome.SUCCESS
+
+        BuildResult second = with('checkVersionsProps').build()
+        second.task(':checkBomConflict').outcome == TaskOutcome.UP_TO_DATE
+        second.task(':checkNoUnusedPin').outcome == TaskOutcome.UP_TO_DATE
+
+        when:
+        setupVersionsProps("org.scala-lang:scala-library = 2.12.6\nnotused:atall = 42.42")
+
+        then:
+        buildAndFailWith("There are unused pins in your versions.props")
+        buildWithFixWorks()
+    }
+
+    def 'versions.lock pins resolution and detects drift'() {
+        when:
+        ['1.0.0', '1.1.0'].each { version ->
+            file("maven/com/palantir/product/foo/${version}/foo-${version}.pom") <<
+                    pomWithJarPackaging("com.palantir.product", "foo", version)
+        }
+        setupVersionsProps("com.palantir.product:foo = 1.0.0")
+        buildFile << """
+            plugins {
+                id 'java'
+                id 'com.palantir.baseline-versions'
+            }
+
+            repositories {
+                maven { url "${projectDir.toURI()}/maven" }
+            }
+
+            dependencies {
+                compile 'com.palantir.product:foo'
+            }
+        """.stripIndent()
+
+        then:
+        with('writeVersionsLock').build()
+        file('versions.lock').readLines().contains('com.palantir.product:foo:1.0.0')
+        with('writeVersionsLock').build().task(':writeVersionsLock').outcome == TaskOutcome.UP_TO_DATE
+        with('checkVersionsLock').build().task(':checkVersionsLock').outcome == TaskOutcome.SUCCESS
+
+        when:
+        setupVersionsProps("com.palantir.product:foo = 1.1.0")
+
+        then:
+        // resolving from the lock ignores versions.props, but the drift is still reported
+        with('dependencies', '--configuration', 'compileClasspath', '-Pcom.palantir.baseline-versions.lock')
+                .build().output.contains('com.palantir.product:foo -> 1.0.0')
+        with('checkVersionsLock', '-Pcom.palantir.baseline-versions.lock').buildAndFail().output
+                .contains('versions.props or the declared dependencies have changed since versions.lock was written')
+        with('checkVersionsLock').buildAndFail().output
+                .contains('com.palantir.product:foo is locked to 1.0.0 but resolves to 1.1.0')
+
+        // an abbreviated task name still writes the lock from versions.props
+        with(':writeVL', '-Pcom.palantir.baseline-versions.lock').build()
+                .task(':writeVersionsLock').outcome == TaskOutcome.SUCCESS
+        file('versions.lock').readLines().contains('com.palantir.product:foo:1.1.0')
+        with('check', '-Pcom.palantir.baseline-versions.lock').build()
+    }
+
+    def 'Native mode applies the most specific versions.props entry'() {
+        when:
+        ['foo:1.0.0', 'foo:1.1.0', 'bar:1.0.0', 'bar:1.1.0'].each {
+            def (name, version) = it.split(':')
+            file("maven/com/palantir/product/${name}/${version}/${name}-${version}.pom") <<
+                    pomWithJarPackaging("com.palantir.product", name, version)
+        }
+        setupVersionsProps("""
+            com.palantir.product:* = 1.0.0
+            com.palantir.product:foo = 1.1.0
+        """.stripIndent())
+        buildFile << """
+            plugins {
+                id 'java'
+                id 'com.palantir.baseline-versions'
+            }
+
+            repositories {
+                maven { url "${projectDir.toURI()}/maven" }
+            }
+
+            dependencies {
+                compile 'com.palantir.product:foo'
+                compile 'com.palantir.product:bar:1.1.0'
+            }
+        """.stripIndent()
+        file('gradle.properties') << "com.palantir.baseline-versions.native = true\n"
+
+        then:
+        def output = with('dependencies', '--configuration', 'compileClasspath').build().output
+        output.contains('com.palantir.product:foo -> 1.1.0')
+        output.contains('com.palantir.product:bar:1.1.0 -> 1.0.0')
+        buildSucceed()
+    }
+
+    def 'Native mode applies wildcard entries to transitive dependencies'() {
+        when:
+        file("maven/com/palantir/product/foo/1.0.0/foo-1.0.0.pom") <<
+                pomWithJarPackaging("com.palantir.product", "foo", "1.0.0").replace('<dependencies/>', """
+                    <dependencies>
+                      <dependency>
+                        <groupId>com.palantir.other</groupId>
+                        <artifactId>baz</artifactId>
+                        <version>1.1.0</version>
+                      </dependency>
+                    </dependencies>""")
+        ['1.0.0', '1.1.0'].each { version ->
+            file("maven/com/palantir/other/baz/${version}/baz-${version}.pom") <<
+                    pomWithJarPackaging("com.palantir.other", "baz", version)
+        }
+        setupVersionsProps("""
+            com.palantir.product:foo = 1.0.0
+            com.palantir.other:* = 1.0.0
+        """.stripIndent())
+        buildFile << """
+            plugins {
+                id 'java'
+                id 'com.palantir.baseline-versions'
+            }
+
+            repositories {
+                maven { url "${projectDir.toURI()}/maven" }
+            }
+
+            dependencies {
+                compile 'com.palantir.product:foo'
+            }
+        """.stripIndent()
+        file('gradle.properties') << "com.palantir.baseline-versions.native = true\n"
+
+        then:
+        with('dependencies', '--configuration', 'compileClasspath').build().output
+                .contains('com.palantir.other:baz:1.1.0 -> 1.0.0')
+    }
 }
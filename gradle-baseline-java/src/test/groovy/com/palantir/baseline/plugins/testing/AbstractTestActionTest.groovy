@@ -0,0 +1,68 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import org.gradle.api.Project
+import org.gradle.api.tasks.testing.Test
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+/** Common fixture for the actions that change a {@link Test} task before it runs. */
+class AbstractTestActionTest extends Specification {
+
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    Project project
+    Test test
+
+    def setup() {
+        project = ProjectBuilder.builder().withProjectDir(folder.root).build()
+        test = project.tasks.create('test', Test)
+    }
+
+    /** Writes a class file for each of {@code simpleNames} in package {@code com.foo}, and tests all of them. */
+    File testClasses(String... simpleNames) {
+        File classesDir = folder.newFolder('classes')
+        simpleNames.each {
+            new File(classesDir, "com/foo/${it}.class").with { parentFile.mkdirs(); text = it.name }
+        }
+        test.testClassesDirs = project.files(classesDir)
+        return classesDir
+    }
+
+    /** Writes a JUnit XML report for each class in package {@code com.foo}, as the results of the previous run. */
+    File junitXml(Map<String, String> suiteAttributesByClass) {
+        File junitXmlDir = folder.newFolder('junit')
+        suiteAttributesByClass.each { name, attributes ->
+            new File(junitXmlDir, "TEST-com.foo.${name}.xml").text =
+                    "<testsuite name=\"com.foo.${name}\" ${attributes}/>"
+        }
+        test.reports.junitXml.destination = junitXmlDir
+        return junitXmlDir
+    }
+
+    List<File> stagedDirs() {
+        return test.testClassesDirs.files as List
+    }
+
+    boolean isStaged(File stagedDir, String simpleName) {
+        return new File(stagedDir, "com/foo/${simpleName}.class").exists()
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import org.gradle.api.tasks.testing.Test
+
+class AutoTuneTestsActionTest extends AbstractTestActionTest {
+    static final long GB = 1024L * 1024 * 1024
+
+    def setup() {
+        AutoTuneTestsAction.configure(test, project.provider { true })
+    }
+
+    def 'tunes the forks, heap and JUnit 5 threads'() {
+        when:
+        AutoTuneTestsAction.tune(test, TestResources.compute(16, 32 * GB, 2 * GB, 2))
+
+        then:
+        test.maxParallelForks == 8
+        test.maxHeapSize == '1208m'
+        test.systemProperties[AutoTuneTestsAction.DYNAMIC_FACTOR] == '0.0625'
+    }
+
+    def 'leaves explicit settings alone'() {
+        given:
+        test.maxParallelForks = 3
+        test.maxHeapSize = '1g'
+        test.systemProperty(AutoTuneTestsAction.DYNAMIC_FACTOR, '0.5')
+
+        when:
+        AutoTuneTestsAction.tune(test, TestResources.compute(16, 32 * GB, 2 * GB, 2))
+
+        then:
+        test.maxParallelForks == 3
+        test.maxHeapSize == '1g'
+        test.systemProperties[AutoTuneTestsAction.DYNAMIC_FACTOR] == '0.5'
+    }
+
+    def 'a task can turn auto-tuning off for itself'() {
+        given:
+        test.autoTune.set(false)
+
+        when:
+        test.actions[0].execute(test)
+
+        then:
+        test.maxParallelForks == 1
+        test.maxHeapSize == null
+        !test.systemProperties.containsKey(AutoTuneTestsAction.DYNAMIC_FACTOR)
+    }
+
+    def 'follows the project setting'() {
+        given:
+        def other = project.tasks.create('otherTest', Test)
+        AutoTuneTestsAction.configure(other, project.provider { false })
+
+        expect:
+        !other.autoTune.get()
+        test.autoTune.get()
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+class BalanceTestForksActionTest extends AbstractTestActionTest {
+
+    def 'stages test classes in balanced order'() {
+        given:
+        testClasses('ATest', 'BTest', 'CTest', 'ATest$Inner', 'Helper')
+        junitXml(['ATest': 'time="1.0"', 'BTest': 'time="3.0"', 'CTest': 'time="2.0"'])
+        test.maxParallelForks = 2
+
+        when:
+        new BalanceTestForksAction({ true }).execute(test)
+
+        then:
+        def staged = stagedDirs()
+        staged*.name == ['000000', '000001', '000002', 'rest']
+        isStaged(staged[0], 'BTest')
+        isStaged(staged[1], 'CTest')
+        isStaged(staged[2], 'ATest')
+        isStaged(staged[3], 'ATest$Inner')
+        isStaged(staged[3], 'Helper')
+        TestDurations.read(TestDurations.historyFile(test)).size() == 3
+    }
+
+    def 'does nothing unless enabled'() {
+        given:
+        testClasses()
+        def classesDirs = test.testClassesDirs
+
+        when:
+        new BalanceTestForksAction({ false }).execute(test)
+
+        then:
+        test.testClassesDirs.is(classesDirs)
+    }
+}
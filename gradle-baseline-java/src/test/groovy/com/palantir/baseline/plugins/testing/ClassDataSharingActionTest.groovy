@@ -0,0 +1,136 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import org.gradle.api.file.FileCollection
+
+class ClassDataSharingActionTest extends AbstractTestActionTest {
+
+    File workerJar
+    File lib
+    File otherLib
+    FileCollection classpath
+    File dumps
+
+    def setup() {
+        workerJar = folder.newFile('gradle-worker.jar')
+        lib = folder.newFile('lib.jar')
+        otherLib = folder.newFile('other.jar')
+        classpath = project.files(lib, testClasses('FooTest'), otherLib)
+        test.classpath = classpath
+
+        // Records each dump, and creates the archive unless there is a 'fail' file
+        dumps = new File(folder.root, 'dumps.txt')
+        def java = new File(folder.root, 'java')
+        java.text = """\
+            #!/bin/sh
+            echo "\$@" >> '${dumps}'
+            for arg in "\$@"; do
+                case "\$arg" in -XX:SharedArchiveFile=*) archive="\${arg#-XX:SharedArchiveFile=}" ;; esac
+            done
+            [ -f '${folder.root}/fail' ] && exit 1
+            touch "\$archive"
+            """.stripIndent()
+        java.executable = true
+        test.executable = java.absolutePath
+    }
+
+    def 'logs the classes the tests load when there is no archive'() {
+        when:
+        run()
+
+        then:
+        test.jvmArgs.size() == 1
+        test.jvmArgs[0].startsWith('-Xlog:class+load=info:file=')
+        logDirs().size() == 1
+        !dumps.exists()
+        test.classpath.is(classpath)
+    }
+
+    def 'creates the archive from the logged classes'() {
+        given:
+        run()
+        new File(logDirs()[0], 'class-load-1.log').text =
+                'java.lang.Object source: jrt:/java.base\ncom.google.Foo source: file:/lib.jar\n'
+
+        when:
+        run()
+
+        then:
+        def archive = archiveDir().listFiles().find { it.name.endsWith('.jsa') }
+        test.jvmArgs == ["-XX:SharedArchiveFile=${archive}".toString(), '-Xshare:auto']
+        dumps.readLines().size() == 1
+        dumps.text.contains("-cp ${workerJar}${File.pathSeparator}${lib}\n")
+        archiveDir().listFiles().find { it.name.endsWith('.classlist') }.readLines() ==
+                ['com/google/Foo', 'java/lang/Object']
+        logDirs().isEmpty()
+        test.classpath.is(classpath)
+
+        when:
+        run()
+
+        then:
+        test.jvmArgs == ["-XX:SharedArchiveFile=${archive}".toString(), '-Xshare:auto']
+        dumps.readLines().size() == 1
+    }
+
+    def 'does not try again after the archive could not be created'() {
+        given:
+        folder.newFile('fail')
+        run()
+        new File(logDirs()[0], 'class-load-1.log').text = 'java.lang.Object source: jrt:/java.base\n'
+
+        when:
+        run()
+        run()
+
+        then:
+        test.jvmArgs.isEmpty()
+        dumps.readLines().size() == 1
+        archiveDir().listFiles().findAll { it.name.endsWith('.failed') }.size() == 1
+        test.classpath.is(classpath)
+    }
+
+    def 'deletes the files of other keys'() {
+        given:
+        run()
+        def oldLogDir = logDirs()[0]
+        new File(archiveDir(), 'stale.jsa').text = 'stale'
+
+        when:
+        lib.text = 'changed'
+        run()
+
+        then:
+        !oldLogDir.exists()
+        !new File(archiveDir(), 'stale.jsa').exists()
+        logDirs().size() == 1
+    }
+
+    private void run() {
+        test.jvmArgs = []
+        ClassDataSharingAction.useArchive(test, 'java 11', workerJar)
+    }
+
+    private File archiveDir() {
+        return new File(project.buildDir, 'class-data-sharing/test')
+    }
+
+    private List<File> logDirs() {
+        return archiveDir().listFiles().findAll { it.name.endsWith('-logs') }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class ClassDataSharingTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    def 'archives the jars before the first directory with files'() {
+        given:
+        def first = folder.newFile('first.jar')
+        def empty = folder.newFolder('empty')
+        def second = folder.newFile('second.jar')
+        def classes = folder.newFolder('classes')
+        new File(classes, 'Foo.class').text = 'Foo'
+        def third = folder.newFile('third.jar')
+
+        expect:
+        ClassDataSharing.archivablePrefix([first, empty, second, classes, third]) == [first, empty, second]
+        ClassDataSharing.archivablePrefix([classes, first]) == []
+        ClassDataSharing.archivablePrefix([first, new File(folder.root, 'missing.jar'), second]) == [first]
+    }
+
+    def 'key changes when a jar changes'() {
+        given:
+        def jar = folder.newFile('lib.jar')
+        jar.text = 'one'
+        def key = ClassDataSharing.key('java 11', [jar])
+
+        expect:
+        ClassDataSharing.key('java 11', [jar]) == key
+        ClassDataSharing.key('java 12', [jar]) != key
+
+        when:
+        jar.text = 'three'
+
+        then:
+        ClassDataSharing.key('java 11', [jar]) != key
+    }
+
+    def 'reads the classes loaded from the JDK and jars'() {
+        given:
+        def logs = folder.newFolder('logs')
+        new File(logs, 'class-load-1.log').text = '''\
+java.lang.Object source: shared objects file
+java.lang.Runnable source: jrt:/java.base
+com.google.common.base.Strings source: file:/home/.gradle/caches/guava-27.0.1-jre.jar
+com.palantir.FooTest source: file:/project/build/classes/java/test/
+com.palantir.FooTest$$Lambda$42/0x0000000800066840 source: com.palantir.FooTest
+'''.stripIndent()
+        new File(logs, 'class-load-2.log').text = '''\
+[0.010s][info][class,load] java.lang.Object source: shared objects file (top)
+[0.020s][info][class,load] org.junit.Assert source: file:/home/.gradle/caches/junit-4.12.jar
+'''.stripIndent()
+
+        expect:
+        ClassDataSharing.classList(logs.toPath()) as List == [
+                'com/google/common/base/Strings',
+                'java/lang/Object',
+                'java/lang/Runnable',
+                'org/junit/Assert',
+        ]
+        ClassDataSharing.classList(new File(folder.root, 'missing').toPath()).isEmpty()
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import javax.tools.ToolProvider
+import org.objectweb.asm.AnnotationVisitor
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.Opcodes
+
+class ConcurrentTestClassesActionTest extends AbstractTestActionTest {
+
+    def setup() {
+        test.useJUnitPlatform()
+    }
+
+    def 'runs classes concurrently with locks on copies of the classes'() {
+        given:
+        def classesDir = compile(
+                'PropsTest': 'class PropsTest { void t() { System.setProperty("a", "b"); } }',
+                'PlainTest': 'class PlainTest { void t() {} }')
+        def original = new File(classesDir, 'PropsTest.class').bytes
+        test.classpath = project.files(classesDir, 'app.jar')
+        def classpath = test.classpath
+
+        when:
+        new ConcurrentTestClassesAction({ true }).execute(test)
+
+        then:
+        test.systemProperties[ConcurrentTestClassesAction.CLASSES_MODE_PROPERTY] == 'concurrent'
+        def locksDir = new File(test.temporaryDir, 'resource-locks')
+        test.classpath.files as List == [locksDir] + (classpath.files as List)
+        locksDir.list() as List == ['PropsTest.class']
+        resourceLocks(new File(locksDir, 'PropsTest.class').bytes) == [TestResourceLocks.SYSTEM_PROPERTIES]
+
+        and:
+        test.testClassesDirs.files == [classesDir] as Set
+        new File(classesDir, 'PropsTest.class').bytes == original
+        resourceLocks(original).isEmpty()
+    }
+
+    def 'leaves the classpath alone when no class needs a lock'() {
+        given:
+        def classesDir = compile('PlainTest': 'class PlainTest { void t() {} }')
+        test.classpath = project.files(classesDir, 'app.jar')
+        def classpath = test.classpath
+
+        when:
+        new ConcurrentTestClassesAction({ true }).execute(test)
+
+        then:
+        test.systemProperties[ConcurrentTestClassesAction.CLASSES_MODE_PROPERTY] == 'concurrent'
+        test.classpath.is(classpath)
+    }
+
+    def 'keeps a concurrency mode set on the task'() {
+        given:
+        def classesDir = compile('PropsTest': 'class PropsTest { void t() { System.setProperty("a", "b"); } }')
+        test.classpath = project.files(classesDir)
+        test.systemProperty(ConcurrentTestClassesAction.CLASSES_MODE_PROPERTY, 'same_thread')
+        def classpath = test.classpath
+
+        when:
+        new ConcurrentTestClassesAction({ true }).execute(test)
+
+        then:
+        test.systemProperties[ConcurrentTestClassesAction.CLASSES_MODE_PROPERTY] == 'same_thread'
+        test.classpath.is(classpath)
+    }
+
+    def 'does nothing unless enabled'() {
+        given:
+        def classesDir = compile('PropsTest': 'class PropsTest { void t() { System.setProperty("a", "b"); } }')
+        test.classpath = project.files(classesDir)
+        def classpath = test.classpath
+
+        when:
+        new ConcurrentTestClassesAction({ false }).execute(test)
+
+        then:
+        !test.systemProperties.containsKey(ConcurrentTestClassesAction.CLASSES_MODE_PROPERTY)
+        test.classpath.is(classpath)
+    }
+
+    /** Compiles {@code sources} into the default package, and tests the resulting classes. */
+    private File compile(Map<String, String> sources) {
+        def sourceDir = folder.newFolder('src')
+        def classesDir = folder.newFolder('classes')
+        def files = sources.collect { name, source -> new File(sourceDir, "${name}.java").with { text = source; it } }
+        def compiler = ToolProvider.systemJavaCompiler
+        assert compiler.run(null, null, null, ['-d', classesDir.path] + files*.path as String[]) == 0
+        test.testClassesDirs = project.files(classesDir)
+        return classesDir
+    }
+
+    private List<Object> resourceLocks(byte[] classFile) {
+        def locks = []
+        new ClassReader(classFile).accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                if (descriptor != 'Lorg/junit/jupiter/api/parallel/ResourceLocks;') {
+                    return null
+                }
+                return new AnnotationVisitor(Opcodes.ASM7) {
+                    @Override
+                    AnnotationVisitor visitArray(String name) {
+                        return this
+                    }
+
+                    @Override
+                    AnnotationVisitor visitAnnotation(String name, String lockDescriptor) {
+                        return this
+                    }
+
+                    @Override
+                    void visit(String name, Object value) {
+                        locks << value
+                    }
+                }
+            }
+        }, 0)
+        return locks
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import groovy.io.FileType
+
+class PrioritizeTestsActionTest extends AbstractTestActionTest {
+
+    def 'stages failed then changed test classes first'() {
+        given:
+        def classesDir = testClasses('ATest', 'BTest', 'CTest', 'CTest$Inner', 'DTest')
+        classesDir.eachFileRecurse(FileType.FILES) { it.lastModified = 1_000_000L }
+        new File(classesDir, 'com/foo/BTest.class').lastModified = 3_000_000L
+        junitXml([
+                'ATest': 'time="1.0" failures="0" errors="0"',
+                'CTest': 'time="1.0" failures="1" errors="0"',
+                'DTest': 'time="1.0" failures="0" errors="0"',
+        ]).eachFile { it.lastModified = 2_000_000L }
+
+        when:
+        new PrioritizeTestsAction({ true }, { false }).execute(test)
+
+        then:
+        def staged = stagedDirs()
+        staged*.name == ['0-000000', '1-000000', '2-000000']
+        isStaged(staged[0], 'CTest')
+        isStaged(staged[0], 'CTest$Inner')
+        isStaged(staged[1], 'BTest')
+        isStaged(staged[2], 'ATest')
+        isStaged(staged[2], 'DTest')
+        TestFailures.read(TestFailures.historyFile(test)) == ['com.foo.CTest'] as SortedSet
+        !test.failFast
+    }
+
+    def 'keeps failures until the class passes again'() {
+        given:
+        def historyFile = folder.root.toPath().resolve('history/test.txt')
+        historyFile.parent.toFile().mkdirs()
+        historyFile.toFile().text = 'com.foo.ATest\ncom.foo.BTest\n'
+        def junitXmlDir = folder.newFolder('junit').toPath()
+        junitXmlDir.resolve('TEST-com.foo.BTest.xml').toFile().text =
+                '<testsuite name="com.foo.BTest" time="1.0" failures="0" errors="0"/>'
+        junitXmlDir.resolve('TEST-com.foo.CTest.xml').toFile().text =
+                '<testsuite name="com.foo.CTest" time="1.0" failures="0" errors="1"/>'
+
+        expect:
+        TestFailures.update(historyFile, junitXmlDir) == ['com.foo.ATest', 'com.foo.CTest'] as SortedSet
+        TestFailures.read(historyFile) == ['com.foo.ATest', 'com.foo.CTest'] as SortedSet
+    }
+
+    def 'only sets fail fast when not enabled'() {
+        given:
+        testClasses()
+        def classesDirs = test.testClassesDirs
+
+        when:
+        new PrioritizeTestsAction({ false }, { true }).execute(test)
+
+        then:
+        test.testClassesDirs.is(classesDirs)
+        test.failFast
+    }
+}
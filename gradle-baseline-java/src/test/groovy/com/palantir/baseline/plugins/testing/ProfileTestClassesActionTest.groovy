@@ -0,0 +1,92 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import com.palantir.gradle.junit.TestResourceProfiles
+import java.util.jar.JarFile
+
+class ProfileTestClassesActionTest extends AbstractTestActionTest {
+
+    def setup() {
+        test.useJUnitPlatform()
+        test.classpath = project.files('app.jar')
+    }
+
+    def 'registers the listener in test JVMs'() {
+        given:
+        def staleProfiles = TestResourceProfiles.outputDir(test)
+        staleProfiles.mkdirs()
+
+        when:
+        new ProfileTestClassesAction({ true }).execute(test)
+
+        then:
+        !staleProfiles.exists()
+        test.systemProperties[TestResourceProfiles.OUTPUT_DIR_PROPERTY] == staleProfiles.absolutePath
+        def classpath = test.classpath.files as List
+        classpath*.name == ['resource-profile-listener.jar', 'app.jar']
+        def jar = new JarFile(classpath[0])
+        jar.entries().toList()*.name.toSorted() == [
+                'META-INF/services/org.junit.platform.launcher.TestExecutionListener',
+                'com/palantir/gradle/junit/HeapPeakTracker.class',
+                'com/palantir/gradle/junit/TestResourceProfileListener$Snapshot.class',
+                'com/palantir/gradle/junit/TestResourceProfileListener.class',
+        ]
+        jar.close()
+    }
+
+    def 'leaves an unchanged listener jar alone'() {
+        given:
+        def jar = new File(folder.root, 'listener.jar')
+        TestResourceProfiles.writeListenerJar(jar.toPath())
+        def bytes = jar.bytes
+        jar.lastModified = 0
+
+        when:
+        TestResourceProfiles.writeListenerJar(jar.toPath())
+
+        then:
+        jar.bytes == bytes
+        jar.lastModified() == 0
+    }
+
+    def 'adds nothing unless enabled'() {
+        given:
+        def classpath = test.classpath
+
+        when:
+        new ProfileTestClassesAction({ false }).execute(test)
+
+        then:
+        test.classpath.is(classpath)
+        !test.systemProperties.containsKey(TestResourceProfiles.OUTPUT_DIR_PROPERTY)
+    }
+
+    def 'can be turned off for a single task'() {
+        given:
+        ProfileTestClassesAction.configure(test, project.provider { true })
+        def classpath = test.classpath
+
+        when:
+        test.profileTestClasses.set(false)
+        test.actions[0].execute(test)
+
+        then:
+        test.classpath.is(classpath)
+        !test.systemProperties.containsKey(TestResourceProfiles.OUTPUT_DIR_PROPERTY)
+    }
+}
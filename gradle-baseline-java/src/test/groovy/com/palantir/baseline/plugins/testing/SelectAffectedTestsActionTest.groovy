@@ -0,0 +1,66 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import org.gradle.api.tasks.testing.AbstractTestTask
+import org.gradle.api.tasks.testing.TestDescriptor
+import org.gradle.api.tasks.testing.TestListener
+import org.gradle.api.tasks.testing.TestResult
+import org.gradle.internal.event.ListenerBroadcast
+
+class SelectAffectedTestsActionTest extends AbstractTestActionTest {
+
+    def setup() {
+        test.classpath = project.files(testClasses())
+        SelectAffectedTestsAction.configure(test, { true })
+    }
+
+    def 'records the run only once the tests passed'() {
+        when:
+        test.actions.first().execute(test)
+        rootSuiteFinished(resultType)
+        test.actions.last().execute(test)
+
+        then:
+        new File(project.buildDir, 'test-impact/test.txt').exists() == recorded
+
+        where:
+        resultType                     | recorded
+        TestResult.ResultType.SUCCESS  | true
+        TestResult.ResultType.FAILURE  | false
+        TestResult.ResultType.SKIPPED  | false
+    }
+
+    def 'does not record a run whose tests never finished'() {
+        when:
+        test.actions.first().execute(test)
+        test.actions.last().execute(test)
+
+        then:
+        !new File(project.buildDir, 'test-impact/test.txt').exists()
+    }
+
+    private void rootSuiteFinished(TestResult.ResultType resultType) {
+        // Gradle only notifies the listeners it has been given internally
+        def field = AbstractTestTask.getDeclaredField('testListenerBroadcaster')
+        field.accessible = true
+        def listeners = (ListenerBroadcast<TestListener>) field.get(test)
+        // The root suite is the one without a parent
+        def root = Stub(TestDescriptor) { getParent() >> null }
+        listeners.source.afterSuite(root, Stub(TestResult) { getResultType() >> resultType })
+    }
+}
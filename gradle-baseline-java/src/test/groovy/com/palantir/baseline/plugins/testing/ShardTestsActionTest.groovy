@@ -0,0 +1,80 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import java.nio.file.Path
+import org.gradle.api.tasks.testing.Test
+
+class ShardTestsActionTest extends AbstractTestActionTest {
+
+    Path sharedDir
+
+    def setup() {
+        sharedDir = folder.root.toPath().resolve('shared')
+        testClasses('ATest', 'BTest', 'CTest', 'ATest$Inner')
+    }
+
+    def 'splits by the durations all shards share'() {
+        given:
+        def durationsDir = ShardTestsAction.durationsDir(sharedDir, test)
+        TestDurations.write(['com.foo.ATest': 10L, 'com.foo.BTest': 6L], durationsDir.resolve('shard-0.properties'))
+        TestDurations.write(['com.foo.CTest': 5L], durationsDir.resolve('shard-1.properties'))
+        // This shard's own results of a previous run must not change the split
+        junitXml(['ATest': 'time="0.001"', 'BTest': 'time="100"'])
+
+        when:
+        ShardTestsAction.configure(test, index, 2, Optional.of(sharedDir))
+        test.actions.first().execute(test)
+
+        then:
+        test.inputs.properties.testShardDurations ==
+                ['com.foo.ATest': 10L, 'com.foo.BTest': 6L, 'com.foo.CTest': 5L]
+        test.candidateClassFiles.files*.name.toSorted() == classes
+
+        where:
+        index | classes
+        0     | ['ATest$Inner.class', 'ATest.class']
+        1     | ['BTest.class', 'CTest.class']
+    }
+
+    def 'splits by class name without shared durations'() {
+        when:
+        def shards = (0..<2).collect { index ->
+            def shardTest = project.tasks.create("test${index}", Test)
+            shardTest.testClassesDirs = test.testClassesDirs
+            ShardTestsAction.configure(shardTest, index, 2, Optional.empty())
+            shardTest.actions.first().execute(shardTest)
+            shardTest.candidateClassFiles.files*.name
+        }
+
+        then:
+        shards.sum { it.size() } == 4
+        shards.flatten() as Set == ['ATest.class', 'ATest$Inner.class', 'BTest.class', 'CTest.class'] as Set
+    }
+
+    def 'shares the durations of its classes after the tests ran'() {
+        given:
+        ShardTestsAction.configure(test, 1, 2, Optional.of(sharedDir))
+        junitXml(['BTest': 'time="1.5"'])
+
+        when:
+        test.actions.last().execute(test)
+
+        then:
+        TestDurations.readAll(ShardTestsAction.durationsDir(sharedDir, test)) == ['com.foo.BTest': 1500L]
+    }
+}
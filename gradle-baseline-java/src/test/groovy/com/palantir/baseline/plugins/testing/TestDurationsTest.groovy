@@ -0,0 +1,62 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class TestDurationsTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    def 'keeps durations of classes that did not run again'() {
+        given:
+        def historyFile = folder.root.toPath().resolve('history/test.properties')
+        historyFile.parent.toFile().mkdirs()
+        historyFile.toFile().text = 'com.foo.ATest=100\ncom.foo.BTest=200\n'
+        def junitXmlDir = folder.newFolder('junit').toPath()
+        junitXmlDir.resolve('TEST-com.foo.BTest.xml').toFile().text =
+                '<?xml version="1.0" encoding="UTF-8"?>\n<testsuite name="com.foo.BTest" tests="1" time="1.5">' +
+                        '<testcase name="b" classname="com.foo.BTest" time="1.5"/></testsuite>'
+        junitXmlDir.resolve('output.bin').toFile().text = 'not a report'
+
+        when:
+        def durations = TestDurations.update(historyFile, junitXmlDir)
+
+        then:
+        durations == ['com.foo.ATest': 100L, 'com.foo.BTest': 1500L]
+        TestDurations.read(historyFile) == durations
+    }
+
+    def 'has no durations without history'() {
+        expect:
+        TestDurations.update(folder.root.toPath().resolve('missing.properties'), folder.root.toPath()).isEmpty()
+    }
+
+    def 'merges histories in name order'() {
+        given:
+        def dir = folder.root.toPath().resolve('shared')
+        TestDurations.write(['com.foo.ATest': 100L, 'com.foo.BTest': 200L], dir.resolve('shard-0.properties'))
+        TestDurations.write(['com.foo.BTest': 300L], dir.resolve('shard-1.properties'))
+        dir.resolve('README').toFile().text = 'not a history'
+
+        expect:
+        TestDurations.readAll(dir) == ['com.foo.ATest': 100L, 'com.foo.BTest': 300L]
+        TestDurations.readAll(folder.root.toPath().resolve('missing')).isEmpty()
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import spock.lang.Specification
+
+class TestForkSchedulerTest extends Specification {
+
+    def 'gives the longest class of each round to the least loaded fork'() {
+        when:
+        def order = TestForkScheduler.scanOrder(['A': 10L, 'B': 9L, 'C': 3L, 'D': 2L, 'E': 1L], 2)
+
+        then:
+        // Round-robin then gives fork 0 A, D and E, and fork 1 B and C
+        order == ['A', 'B', 'D', 'C', 'E']
+    }
+
+    def 'orders longest first for a single fork'() {
+        expect:
+        TestForkScheduler.scanOrder(['A': 1L, 'B': 3L, 'C': 3L], 1) == ['B', 'C', 'A']
+    }
+}
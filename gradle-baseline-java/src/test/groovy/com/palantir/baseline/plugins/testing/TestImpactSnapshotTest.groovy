@@ -0,0 +1,70 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class TestImpactSnapshotTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    static final TestImpactSnapshot PREVIOUS = new TestImpactSnapshot('other',
+            ['FooTest': '1', 'FooTest$Inner': '1', 'BarTest': '1', 'Foo': '1', 'Bar': '1', 'Util': '1', 'Gone': '1'],
+            ['FooTest': [] as Set, 'FooTest$Inner': ['Foo'] as Set, 'BarTest': ['Bar'] as Set,
+             'Foo': ['Util'] as Set, 'Bar': [] as Set, 'Util': [] as Set, 'Gone': [] as Set])
+
+    def 'finds test classes that reach a changed class'() {
+        given:
+        def current = new TestImpactSnapshot('other',
+                ['FooTest': '1', 'FooTest$Inner': '1', 'BarTest': '1', 'Foo': '1', 'Bar': '1', 'Util': '2'],
+                PREVIOUS.@references)
+
+        when:
+        def changed = current.changedClasses(PREVIOUS)
+
+        then:
+        changed == ['Util', 'Gone'] as Set
+        !current.otherInputsChanged(PREVIOUS)
+        current.affectedTestClasses(['FooTest', 'BarTest'], changed) == ['FooTest'] as Set
+    }
+
+    def 'notices changes to anything else'() {
+        expect:
+        new TestImpactSnapshot('changed', [:], [:]).otherInputsChanged(PREVIOUS)
+    }
+
+    def 'round trips through a file'() {
+        given:
+        def file = folder.root.toPath().resolve('test-impact/test.txt')
+
+        when:
+        PREVIOUS.write(file)
+        def read = TestImpactSnapshot.read(file).get()
+
+        then:
+        read.changedClasses(PREVIOUS).isEmpty()
+        !read.otherInputsChanged(PREVIOUS)
+        read.@references == PREVIOUS.@references
+    }
+
+    def 'has no snapshot before the first successful run'() {
+        expect:
+        !TestImpactSnapshot.read(folder.root.toPath().resolve('missing.txt')).isPresent()
+    }
+}
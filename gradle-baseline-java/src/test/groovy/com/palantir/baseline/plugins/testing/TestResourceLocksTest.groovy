@@ -0,0 +1,103 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import java.nio.file.Path
+import javax.tools.ToolProvider
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import org.objectweb.asm.AnnotationVisitor
+import org.objectweb.asm.ClassReader
+import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.Opcodes
+import spock.lang.Specification
+
+class TestResourceLocksTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    def 'infers locks from shared state'() {
+        given:
+        def classesDir = compile(
+                'PropsTest': 'class PropsTest { void t() { System.setProperty("a", "b"); } }',
+                'Helper': 'class Helper { static void use() { java.util.Locale.setDefault(java.util.Locale.US); } }',
+                'HelperTest': 'class HelperTest { void t() { Helper.use(); } }',
+                'CounterTest': 'class CounterTest { static int count; void t() { count++; } }',
+                'NestedTest': 'class NestedTest { class Inner { void t() { CounterTest.count = 0; } } }',
+                'FileTest': 'class FileTest { void t() throws Exception { '
+                        + 'java.nio.file.Files.write(java.nio.file.Paths.get("x"), new byte[0]); } }',
+                'TempFileTest': 'class TempFileTest { void t() throws Exception { '
+                        + 'java.nio.file.Files.write(java.nio.file.Files.createTempFile("a", "b"), new byte[0]); } }',
+                'PortTest': 'class PortTest { void t() throws Exception { new java.net.ServerSocket(0).close(); } }',
+                'ConstantTest': 'class ConstantTest { static final Object VALUE = new Object(); void t() {} }')
+
+        expect:
+        TestResourceLocks.infer([classesDir]) == [
+                'CounterTest': ['CounterTest'] as SortedSet,
+                'FileTest': [TestResourceLocks.FILES] as SortedSet,
+                'Helper': [TestResourceLocks.LOCALE] as SortedSet,
+                'HelperTest': [TestResourceLocks.LOCALE] as SortedSet,
+                'NestedTest': ['CounterTest'] as SortedSet,
+                'PortTest': [TestResourceLocks.PORTS] as SortedSet,
+                'PropsTest': [TestResourceLocks.SYSTEM_PROPERTIES] as SortedSet,
+        ]
+    }
+
+    def 'adds resource locks annotation'() {
+        given:
+        def classesDir = compile('PropsTest': 'class PropsTest { void t() { System.setProperty("a", "b"); } }')
+        def classFile = new File(classesDir.toFile(), 'PropsTest.class').bytes
+
+        when:
+        def rewritten = TestResourceLocks.addResourceLocks(classFile, ['a', 'b'] as SortedSet)
+
+        then:
+        def locks = []
+        new ClassReader(rewritten).accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                assert descriptor == 'Lorg/junit/jupiter/api/parallel/ResourceLocks;'
+                return new AnnotationVisitor(Opcodes.ASM7) {
+                    @Override
+                    AnnotationVisitor visitArray(String name) {
+                        return this
+                    }
+
+                    @Override
+                    AnnotationVisitor visitAnnotation(String name, String lockDescriptor) {
+                        return this
+                    }
+
+                    @Override
+                    void visit(String name, Object value) {
+                        locks << value
+                    }
+                }
+            }
+        }, 0)
+        locks == ['a', 'b']
+    }
+
+    private Path compile(Map<String, String> sources) {
+        def sourceDir = folder.newFolder('src')
+        def classesDir = folder.newFolder('classes')
+        def files = sources.collect { name, source -> new File(sourceDir, "${name}.java").with { text = source; it } }
+        def compiler = ToolProvider.systemJavaCompiler
+        assert compiler.run(null, null, null, ['-d', classesDir.path] + files*.path as String[]) == 0
+        return classesDir.toPath()
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import spock.lang.Specification
+
+class TestResourcesTest extends Specification {
+    static final long GB = 1024L * 1024 * 1024
+
+    def 'shares cores between concurrent test tasks'() {
+        when:
+        def resources = TestResources.compute(16, 32 * GB, 2 * GB, 2)
+
+        then:
+        resources.forks == 8
+        resources.maxHeapSize == '1208m'
+        resources.threadsPerFork == 1
+        resources.dynamicFactor == '0.0625'
+    }
+
+    def 'uses fewer forks when memory is short'() {
+        when:
+        def resources = TestResources.compute(16, 4 * GB, 1 * GB, 1)
+
+        then:
+        resources.forks == 3
+        resources.maxHeapSize == '600m'
+        resources.threadsPerFork == 5
+    }
+
+    def 'rounds the dynamic factor up, as JUnit rounds the number of threads down'() {
+        when:
+        def resources = TestResources.compute(12, (long) (3.75 * GB), 1 * GB, 1)
+
+        then:
+        resources.forks == 3
+        resources.threadsPerFork == 4
+        resources.dynamicFactor == '0.3334'
+        (new BigDecimal(resources.dynamicFactor) * 12).intValue() == 4
+    }
+
+    def 'always runs at least one fork with the minimum heap'() {
+        when:
+        def resources = TestResources.compute(2, 1 * GB, 1 * GB, 4)
+
+        then:
+        resources.forks == 1
+        resources.heapBytes == TestResources.MIN_HEAP_BYTES
+        resources.threadsPerFork == 1
+    }
+}
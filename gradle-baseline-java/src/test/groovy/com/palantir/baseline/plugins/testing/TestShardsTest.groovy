@@ -0,0 +1,39 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.testing
+
+import spock.lang.Specification
+
+class TestShardsTest extends Specification {
+    static final List<String> CLASSES = ['A', 'B', 'C', 'D', 'New1', 'New2', 'New3']
+    static final Map<String, Long> DURATIONS = ['A': 10L, 'B': 6L, 'C': 5L, 'D': 1L, 'Deleted': 100L]
+
+    def 'assigns known classes longest first to the least loaded shard'() {
+        expect:
+        TestShards.shard(CLASSES, DURATIONS, 0, 2).findAll { DURATIONS.containsKey(it) } == ['A', 'D'] as Set
+        TestShards.shard(CLASSES, DURATIONS, 1, 2).findAll { DURATIONS.containsKey(it) } == ['B', 'C'] as Set
+    }
+
+    def 'runs every class exactly once'() {
+        when:
+        def shards = (0..<3).collect { TestShards.shard(CLASSES, DURATIONS, it, 3) }
+
+        then:
+        shards.sum { it.size() } == CLASSES.size()
+        shards.flatten() as Set == CLASSES as Set
+    }
+}
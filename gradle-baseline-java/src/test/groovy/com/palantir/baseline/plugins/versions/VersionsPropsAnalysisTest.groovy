@@ -0,0 +1,84 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions
+
+import com.palantir.baseline.util.VersionsProps
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class VersionsPropsAnalysisTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    VersionsPropsAnalysis analyze(
+            List<String> lines, Set<String> artifacts, Map<String, String> recommendations = [:],
+            Set<String> bomDeps = []) {
+        File propsFile = folder.newFile('versions.props')
+        propsFile.text = lines.join('\n')
+        return VersionsPropsAnalysis.analyze(
+                VersionsProps.readVersionsProps(propsFile), artifacts, recommendations, bomDeps)
+    }
+
+    def 'most specific force is used'() {
+        when:
+        def analysis = analyze(['org.slf4j:slf4j-api = 1.7.25', 'org.slf4j:* = 1.7.20', 'notused:atall = 1'],
+                ['org.slf4j:slf4j-api'] as Set)
+
+        then:
+        analysis.unusedForces == ['org.slf4j:*', 'notused:atall'] as Set
+        analysis.criticalConflicts.isEmpty()
+        analysis.forcesToRemove == ['org.slf4j:*', 'notused:atall'] as Set
+    }
+
+    def 'same version as the bom is a critical conflict unless vindicated'() {
+        when:
+        def analysis = analyze(['org.scala-lang:scala-* = 2.12.5'],
+                ['org.scala-lang:scala-library', 'org.scala-lang:scala-reflect'] as Set,
+                ['org.scala-lang:scala-library': '2.12.5'])
+
+        then:
+        analysis.conflicts*.bomName == ['org.scala-lang:scala-library']
+        analysis.resolvedConflicts == ['org.scala-lang:scala-reflect': 'org.scala-lang:scala-*']
+        analysis.criticalConflicts.isEmpty()
+        analysis.forcesToRemove.isEmpty()
+    }
+
+    def 'fixing removes critical conflicts and pins only made unused by them in one go'() {
+        when:
+        def analysis = analyze(['org.scala-lang:scala-library = 2.12.5', 'org.scala-lang:* = 2.12.5'],
+                ['org.scala-lang:scala-library'] as Set,
+                ['org.scala-lang:scala-library': '2.12.5', 'org.scala-lang:scala-compiler': '2.12.5'])
+
+        then:
+        (analysis.criticalConflicts*.propName as Set) == (['org.scala-lang:scala-library', 'org.scala-lang:*'] as Set)
+        analysis.unusedForces == ['org.scala-lang:*'] as Set
+        analysis.forcesToRemove == ['org.scala-lang:scala-library', 'org.scala-lang:*'] as Set
+    }
+
+    def 'bom dependencies never conflict'() {
+        when:
+        def analysis = analyze(['com.palantir.product:your-bom = 42.42.42'],
+                ['com.palantir.product:your-bom'] as Set,
+                ['com.palantir.product:your-bom': '42.42.42'],
+                ['com.palantir.product:your-bom'] as Set)
+
+        then:
+        analysis.conflicts.isEmpty()
+        analysis.unusedForces.isEmpty()
+    }
+}
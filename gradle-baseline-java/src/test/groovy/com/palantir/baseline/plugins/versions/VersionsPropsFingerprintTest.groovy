@@ -0,0 +1,68 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.plugins.versions
+
+import org.gradle.api.Project
+import org.gradle.testfixtures.ProjectBuilder
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class VersionsPropsFingerprintTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    def 'is the same in every checkout'() {
+        expect:
+        VersionsPropsFingerprint.compute(checkout('first', 'user:password@')) ==
+                VersionsPropsFingerprint.compute(checkout('second', ''))
+    }
+
+    def 'changes with versions.props'() {
+        given:
+        def project = checkout('first', '')
+        def fingerprint = VersionsPropsFingerprint.compute(project)
+
+        when:
+        project.file('versions.props').text = 'com.google.guava:guava = 27.0.1-jre\n'
+
+        then:
+        VersionsPropsFingerprint.compute(project) != fingerprint
+    }
+
+    def 'changes with repositories'() {
+        given:
+        def project = checkout('first', '')
+        def fingerprint = VersionsPropsFingerprint.compute(project)
+
+        when:
+        project.repositories.maven { url = project.file('other-repo') }
+
+        then:
+        VersionsPropsFingerprint.compute(project) != fingerprint
+    }
+
+    private Project checkout(String name, String credentials) {
+        def project = ProjectBuilder.builder().withProjectDir(folder.newFolder(name)).build()
+        project.file('versions.props').text = 'com.google.guava:guava = 27.0-jre\n'
+        project.repositories.maven { url = project.file('local-repo') }
+        project.repositories.maven { url = "https://${credentials}repo.example.com/maven#fragment" }
+        project.configurations.create('compile')
+        project.dependencies.add('compile', 'com.google.guava:guava')
+        return project
+    }
+}
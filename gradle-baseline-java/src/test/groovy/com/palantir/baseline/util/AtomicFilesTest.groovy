@@ -0,0 +1,67 @@
+/*
+ * (c) Copyright 2018 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.baseline.util
+
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermissions
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class AtomicFilesTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
+    def 'new files are readable by everyone'() {
+        given:
+        def target = new File(folder.root, 'versions.lock').toPath()
+
+        when:
+        AtomicFiles.write(target, { writer -> writer.write('contents') })
+
+        then:
+        target.toFile().text == 'contents'
+        PosixFilePermissions.toString(Files.getPosixFilePermissions(target)) == 'rw-r--r--'
+    }
+
+    def 'replaced files keep their permissions'() {
+        given:
+        def target = folder.newFile('versions.props').toPath()
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString('rw-rw----'))
+
+        when:
+        AtomicFiles.write(target, { writer -> writer.write('contents') })
+
+        then:
+        target.toFile().text == 'contents'
+        PosixFilePermissions.toString(Files.getPosixFilePermissions(target)) == 'rw-rw----'
+    }
+
+    def 'leaves no temporary file behind on failure'() {
+        given:
+        def target = folder.newFile('versions.props')
+        target.text = 'original'
+
+        when:
+        AtomicFiles.write(target.toPath(), { writer -> throw new IOException('failed') })
+
+        then:
+        thrown(RuntimeException)
+        target.text == 'original'
+        folder.root.list() as List == ['versions.props']
+    }
+}
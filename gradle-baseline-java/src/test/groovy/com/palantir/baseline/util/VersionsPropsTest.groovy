@@ -16,9 +16,17 @@
 
 package com.palantir.baseline.util
 
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermissions
+import java.util.stream.Stream
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
 import spock.lang.Specification
 
 class VersionsPropsTest extends Specification {
+    @Rule
+    TemporaryFolder folder = new TemporaryFolder()
+
     def readVersionsProps() {
         def lines = [
                 "  a:b  = c",
@@ -39,4 +47,19 @@ class VersionsPropsTest extends Specification {
 
         parsedVersionsProps.lines() == lines.collect { it.trim() }
     }
+
+    def writeVersionsProps() {
+        given:
+        def propsFile = folder.newFile('versions.props')
+        propsFile.text = 'a:b = 1\nc:d = 2\n'
+        Files.setPosixFilePermissions(propsFile.toPath(), PosixFilePermissions.fromString('rw-r--r--'))
+
+        when:
+        VersionsProps.writeVersionsProps(VersionsProps.readVersionsProps(propsFile), Stream.of('a:b'), propsFile)
+
+        then:
+        propsFile.readLines() == ['c:d = 2']
+        PosixFilePermissions.toString(Files.getPosixFilePermissions(propsFile.toPath())) == 'rw-r--r--'
+        folder.root.list() as List == ['versions.props']
+    }
 }
@@ -15,25 +15,47 @@
  */
 package com.palantir.gradle.junit;
 
+import com.google.common.collect.Maps;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
 import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.plugins.quality.Checkstyle;
+import org.gradle.api.plugins.quality.FindBugs;
 import org.gradle.api.tasks.TaskExecutionException;
 import org.gradle.api.tasks.TaskState;
+import org.gradle.api.tasks.compile.JavaCompile;
 import org.gradle.api.tasks.testing.Test;
 
 public final class BuildFailureListener implements TaskExecutionListener {
 
-    private final List<Report.TestCase> testCases = new ArrayList<>();
+    private final Queue<Map.Entry<String, Report.TestCase>> testCases = new ConcurrentLinkedQueue<>();
+    private final BuildJournal journal;
+
+    public BuildFailureListener() {
+        this(new BuildJournal());
+    }
+
+    /**
+     * Also appends each test case to {@code journal}, once it has been opened. Tasks finishing at the same time don't
+     * wait for each other, nor for the journal to be written.
+     */
+    BuildFailureListener(BuildJournal journal) {
+        this.journal = journal;
+    }
 
     @Override
     public void beforeExecute(Task task) { }
 
     @Override
-    public synchronized void afterExecute(Task task, TaskState state) {
+    public void afterExecute(Task task, TaskState state) {
         if (isUntracked(task)) {
             Report.TestCase.Builder testCase = new Report.TestCase.Builder()
                     .name(":" + task.getProject().getName() + ":" + task.getName());
@@ -51,12 +73,23 @@ public final class BuildFailureListener implements TaskExecutionListener {
                         .details(stackTrace.toString())
                         .build());
             }
-            testCases.add(testCase.build());
+            Report.TestCase builtTestCase = testCase.build();
+            testCases.add(Maps.immutableEntry(task.getPath(), builtTestCase));
+            try {
+                journal.append(builtTestCase);
+            } catch (IOException e) {
+                task.getLogger().warn("Failed to journal the result of {}", task.getPath(), e);
+            }
         }
     }
 
     public List<Report.TestCase> getTestCases() {
-        return testCases;
+        return testCases.stream().map(Map.Entry::getValue).collect(Collectors.toList());
+    }
+
+    /** Every test case, paired with the path of the task it was created for. */
+    public List<Map.Entry<String, Report.TestCase>> getTestCasesWithTaskPaths() {
+        return new ArrayList<>(testCases);
     }
 
     private static String getMessage(Throwable throwable) {
@@ -68,6 +101,10 @@ public final class BuildFailureListener implements TaskExecutionListener {
     }
 
     private static boolean isUntracked(Task task) {
-        return !(task instanceof Test) && !StyleTaskTimer.isStyleTask(task);
+        return !(task instanceof Test) && !isStyleTask(task);
+    }
+
+    private static boolean isStyleTask(Task task) {
+        return task instanceof Checkstyle || task instanceof FindBugs || task instanceof JavaCompile;
     }
 }
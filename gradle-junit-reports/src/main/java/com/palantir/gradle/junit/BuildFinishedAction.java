@@ -16,50 +16,73 @@
 package com.palantir.gradle.junit;
 
 import java.io.IOException;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import javax.xml.transform.TransformerException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import org.gradle.BuildResult;
 import org.gradle.api.Action;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.provider.Provider;
-import org.w3c.dom.Document;
 
 public final class BuildFinishedAction implements Action<BuildResult> {
 
     private final Provider<RegularFile> targetFile;
     private final long startTimeNanos;
     private final BuildFailureListener failureListener;
+    private final TaskExecutionRecorder executionRecorder;
+    private final BuildJournal journal;
 
-    public BuildFinishedAction(Provider<RegularFile> targetFile, BuildFailureListener failureListener) {
+    public BuildFinishedAction(
+            Provider<RegularFile> targetFile,
+            BuildFailureListener failureListener,
+            TaskExecutionRecorder executionRecorder) {
+        this(targetFile, failureListener, executionRecorder, new BuildJournal());
+    }
+
+    BuildFinishedAction(
+            Provider<RegularFile> targetFile,
+            BuildFailureListener failureListener,
+            TaskExecutionRecorder executionRecorder,
+            BuildJournal journal) {
         this.targetFile = targetFile;
         this.failureListener = failureListener;
+        this.executionRecorder = executionRecorder;
+        this.journal = journal;
         startTimeNanos = System.nanoTime();
     }
 
     @Override
     public void execute(BuildResult result) {
+        Map<String, TaskResourceUsage> resourceUsage = executionRecorder.getResourceUsageByTaskPath();
+        List<Report.TestCase> testCases = new ArrayList<>();
+        for (Map.Entry<String, Report.TestCase> entry : failureListener.getTestCasesWithTaskPaths()) {
+            Report.TestCase testCase = entry.getValue();
+            TaskResourceUsage usage = resourceUsage.get(entry.getKey());
+            if (usage != null) {
+                testCase = testCase.toBuilder().putAllProperties(usage.asProperties()).build();
+            }
+            testCases.add(testCase);
+        }
+
         Report report = new Report.Builder()
                 .name("gradle")
                 .subname("gradle")
                 .elapsedTimeNanos(System.nanoTime() - startTimeNanos)
-                .addAllTestCases(failureListener.getTestCases())
+                .addAllTestCases(testCases)
                 .build();
-        Document xml = JunitReportCreator.reportToXml(report);
 
         try {
-            Files.createDirectories(getTargetFile().getParent());
+            try {
+                JunitReportCreator.writeReport(report, getTargetFile());
+            } finally {
+                journal.close();
+            }
+            // Only once the report is safely written is the journal no longer needed
+            journal.delete();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        try (Writer writer = Files.newBufferedWriter(getTargetFile(), StandardCharsets.UTF_8)) {
-            XmlUtils.write(writer, xml);
-        } catch (IOException | TransformerException e) {
-            throw new RuntimeException(e);
-        }
     }
 
     private Path getTargetFile() {
@@ -0,0 +1,308 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of the test cases in the build report, so that the report can be recovered by the next build if
+ * this one is killed before it finishes.
+ *
+ * <p>Records are encoded on the thread that appends them, but written by a single background thread, so that tasks
+ * finishing on parallel workers never wait for the file or for each other. Each record is written to the file as soon
+ * as that thread gets to it, so it survives the daemon being killed or running out of memory. The file is forced to
+ * disk every {@link #FORCE_INTERVAL_NANOS} while there are unforced records, which bounds what a machine crash can lose
+ * without paying for an fsync per task, and once more when the journal is closed. Records are length-prefixed and
+ * checksummed, so a record that was torn by a crash is ignored on recovery.
+ */
+final class BuildJournal implements Closeable {
+
+    private static final long FORCE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** Anything longer can only be the result of a torn length. */
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final byte START = 'S';
+    private static final byte TEST_CASE = 'T';
+
+    private final AtomicReference<IOException> writeFailure = new AtomicReference<>();
+    private final AtomicBoolean writeFailureReported = new AtomicBoolean();
+    private Path file;
+    /** Only used by {@link #writer} once the journal is open. */
+    private FileChannel channel;
+    private volatile ScheduledExecutorService writer;
+    private volatile boolean unforced;
+
+    /** Starts a new journal at {@code journalFile}, replacing any existing one. */
+    synchronized void open(Path journalFile) throws IOException {
+        Files.createDirectories(journalFile.toAbsolutePath().getParent());
+        file = journalFile;
+        channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        write(encode(START, System.currentTimeMillis(), output -> { }));
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "build-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(
+                this::forceIfUnforced, FORCE_INTERVAL_NANOS, FORCE_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        writer = executor;
+    }
+
+    /**
+     * Queues {@code testCase} to be recorded, if the journal is open. Fails if an earlier record couldn't be written,
+     * after which nothing more is recorded.
+     */
+    void append(Report.TestCase testCase) throws IOException {
+        ScheduledExecutorService currentWriter = writer;
+        if (currentWriter == null) {
+            return;
+        }
+        IOException failure = writeFailure.get();
+        if (failure != null) {
+            if (writeFailureReported.compareAndSet(false, true)) {
+                throw failure;
+            }
+            return;
+        }
+        ByteBuffer record = encode(TEST_CASE, System.currentTimeMillis(), output -> writeTestCase(output, testCase));
+        try {
+            currentWriter.execute(() -> writeInBackground(record));
+        } catch (RejectedExecutionException e) {
+            // The journal was closed while the task finished
+        }
+    }
+
+    /** Waits until every record queued so far has been written to the file, if the journal is open. */
+    void flush() throws IOException {
+        ScheduledExecutorService currentWriter = writer;
+        if (currentWriter == null) {
+            return;
+        }
+        try {
+            currentWriter.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the build journal");
+        } catch (ExecutionException | RejectedExecutionException e) {
+            // The journal was closed in the meantime, which writes every queued record first
+        }
+    }
+
+    /**
+     * Writes every queued record, then closes the journal, and stops its background thread. The file is left behind,
+     * for the next build to recover unless it is {@linkplain #delete deleted}.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        ScheduledExecutorService currentWriter = writer;
+        if (currentWriter == null) {
+            return;
+        }
+        writer = null;
+        currentWriter.shutdown();
+        try {
+            currentWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the build journal");
+        } finally {
+            if (channel.isOpen()) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    /** Deletes the file of a closed journal, once the report it backs up has been written. */
+    synchronized void delete() throws IOException {
+        if (writer == null && file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Reads the journal left behind by a build that didn't finish. The recovered report contains every test case that
+     * was journaled, followed by a failed test case saying that the build was cut short.
+     */
+    static Optional<Report> recover(Path journalFile) throws IOException {
+        if (!Files.isRegularFile(journalFile)) {
+            return Optional.empty();
+        }
+        Report.Builder report = new Report.Builder().name("gradle").subname("gradle");
+        long startMillis = -1;
+        long lastMillis = -1;
+        int testCases = 0;
+        try (DataInputStream input = new DataInputStream(XmlUtils.newInputStream(journalFile))) {
+            byte[] payload;
+            while ((payload = readRecord(input)) != null) {
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                lastMillis = record.readLong();
+                if (type == START) {
+                    startMillis = lastMillis;
+                } else if (type == TEST_CASE) {
+                    report.addTestCases(readTestCase(record));
+                    testCases++;
+                }
+            }
+        }
+        report.elapsedTimeNanos(startMillis < 0 ? 0 : TimeUnit.MILLISECONDS.toNanos(lastMillis - startMillis));
+        report.addTestCases(new Report.TestCase.Builder()
+                .name("gradle")
+                .failure(new Report.Failure.Builder()
+                        .message("Build did not finish")
+                        .details("The build was killed before it finished. The results of the " + testCases
+                                + " tasks that completed before then were recovered from " + journalFile + ".")
+                        .build())
+                .build());
+        Files.delete(journalFile);
+        return Optional.of(report.build());
+    }
+
+    private static ByteBuffer encode(byte type, long timeMillis, RecordWriter recordWriter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeByte(type);
+        output.writeLong(timeMillis);
+        recordWriter.write(output);
+        output.flush();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + bytes.size());
+        buffer.putInt(bytes.size()).putLong(crc.getValue()).put(bytes.toByteArray());
+        buffer.flip();
+        return buffer;
+    }
+
+    private void write(ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+        unforced = true;
+    }
+
+    private void writeInBackground(ByteBuffer record) {
+        if (writeFailure.get() != null) {
+            return;
+        }
+        try {
+            write(record);
+        } catch (IOException e) {
+            writeFailure.compareAndSet(null, e);
+        }
+    }
+
+    private void forceIfUnforced() {
+        if (!unforced) {
+            return;
+        }
+        unforced = false;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            writeFailure.compareAndSet(null, e);
+        }
+    }
+
+    /** Returns the next record's payload, or null at the end of the journal or at a torn record. */
+    private static byte[] readRecord(DataInputStream input) throws IOException {
+        try {
+            int length = input.readInt();
+            long checksum = input.readLong();
+            if (length <= 0 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            input.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void writeTestCase(DataOutputStream output, Report.TestCase testCase) throws IOException {
+        writeString(output, testCase.name());
+        Report.Failure failure = testCase.failure();
+        output.writeBoolean(failure != null);
+        if (failure != null) {
+            writeString(output, failure.message());
+            writeString(output, failure.details());
+        }
+        output.writeInt(testCase.properties().size());
+        for (Map.Entry<String, String> property : testCase.properties().entrySet()) {
+            writeString(output, property.getKey());
+            writeString(output, property.getValue());
+        }
+    }
+
+    private static Report.TestCase readTestCase(DataInputStream input) throws IOException {
+        Report.TestCase.Builder testCase = new Report.TestCase.Builder().name(readString(input));
+        if (input.readBoolean()) {
+            testCase.failure(new Report.Failure.Builder()
+                    .message(readString(input))
+                    .details(readString(input))
+                    .build());
+        }
+        int properties = input.readInt();
+        for (int i = 0; i < properties; i++) {
+            testCase.putProperties(readString(input), readString(input));
+        }
+        return testCase.build();
+    }
+
+    /** Unlike {@link DataOutputStream#writeUTF}, not limited to 64KB, which stack traces can exceed. */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.util.List;
+import java.util.Map;
+import org.inferred.freebuilder.FreeBuilder;
+
+/** Everything {@link BuildMetricsWriter} reports about a build. */
+@FreeBuilder
+interface BuildMetrics {
+
+    List<TaskExecution> executions();
+    /** Map of task path to the simple name of the task's type, such as {@code JavaCompile}. */
+    Map<String, String> taskTypes();
+    /** Map of task path to the number of failures that check reported. */
+    Map<String, Integer> checkFailures();
+    long configurationTimeNanos();
+    long buildTimeNanos();
+    boolean failed();
+
+    class Builder extends BuildMetrics_Builder { }
+}
@@ -0,0 +1,153 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a snapshot of a build's metrics in the Prometheus text format, which the node-exporter textfile collector
+ * reads. Covers task durations by task type, task outcomes, failures reported by each check, and how long the build
+ * spent configuring and in total. Build times are measured from when the root project applied the plugin.
+ */
+final class BuildMetricsWriter {
+
+    private static final double[] DURATION_BUCKETS_SECONDS = {0.1, 0.5, 1, 5, 10, 30, 60, 300, 900};
+
+    private BuildMetricsWriter() {}
+
+    /**
+     * Writes the metrics to a temporary file first and moves it into place, so that a collector never reads a
+     * half-written file. Temporary files are only readable by their owner, so the file is made world-readable first,
+     * as the collector may run as another user.
+     */
+    static void write(BuildMetrics metrics, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                write(metrics, writer);
+            }
+            if (Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-r--r--"));
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    static void write(BuildMetrics metrics, Writer writer) throws IOException {
+        writer.write("# HELP gradle_build_seconds Time from the build starting to be configured to it finishing.\n"
+                + "# TYPE gradle_build_seconds gauge\n"
+                + "gradle_build_seconds " + seconds(metrics.buildTimeNanos()) + "\n");
+        writer.write("# HELP gradle_configuration_seconds Time spent configuring the build.\n"
+                + "# TYPE gradle_configuration_seconds gauge\n"
+                + "gradle_configuration_seconds " + seconds(metrics.configurationTimeNanos()) + "\n");
+        writer.write("# HELP gradle_build_failed Whether the build failed.\n"
+                + "# TYPE gradle_build_failed gauge\n"
+                + "gradle_build_failed " + (metrics.failed() ? 1 : 0) + "\n");
+
+        writeDurations(metrics.executions(), metrics.taskTypes(), writer);
+        writeOutcomes(metrics.executions(), metrics.taskTypes(), writer);
+
+        writer.write("# HELP gradle_check_failures The number of failures each check reported.\n"
+                + "# TYPE gradle_check_failures gauge\n");
+        for (Map.Entry<String, Integer> entry : new TreeMap<>(metrics.checkFailures()).entrySet()) {
+            writer.write("gradle_check_failures{task=" + label(entry.getKey())
+                    + ",type=" + label(metrics.taskTypes().getOrDefault(entry.getKey(), "unknown"))
+                    + "} " + entry.getValue() + "\n");
+        }
+    }
+
+    private static void writeDurations(
+            List<TaskExecution> executions, Map<String, String> taskTypes, Writer writer) throws IOException {
+        SortedMap<String, long[]> bucketCounts = new TreeMap<>();
+        SortedMap<String, Long> sums = new TreeMap<>();
+        for (TaskExecution execution : executions) {
+            String type = taskTypes.getOrDefault(execution.path(), "unknown");
+            long[] counts = bucketCounts.computeIfAbsent(type, key -> new long[DURATION_BUCKETS_SECONDS.length + 1]);
+            double elapsedSeconds = execution.elapsedTimeNanos() / 1e9;
+            for (int i = 0; i < DURATION_BUCKETS_SECONDS.length; i++) {
+                if (elapsedSeconds <= DURATION_BUCKETS_SECONDS[i]) {
+                    counts[i]++;
+                }
+            }
+            counts[DURATION_BUCKETS_SECONDS.length]++;
+            sums.merge(type, execution.elapsedTimeNanos(), Long::sum);
+        }
+
+        writer.write("# HELP gradle_task_duration_seconds How long tasks took to run, by task type.\n"
+                + "# TYPE gradle_task_duration_seconds histogram\n");
+        for (Map.Entry<String, long[]> entry : bucketCounts.entrySet()) {
+            String type = label(entry.getKey());
+            long[] counts = entry.getValue();
+            for (int i = 0; i < DURATION_BUCKETS_SECONDS.length; i++) {
+                writer.write("gradle_task_duration_seconds_bucket{type=" + type
+                        + ",le=\"" + decimal(DURATION_BUCKETS_SECONDS[i]) + "\"} " + counts[i] + "\n");
+            }
+            long count = counts[DURATION_BUCKETS_SECONDS.length];
+            writer.write("gradle_task_duration_seconds_bucket{type=" + type + ",le=\"+Inf\"} " + count + "\n");
+            writer.write("gradle_task_duration_seconds_sum{type=" + type + "} " + seconds(sums.get(entry.getKey()))
+                    + "\n");
+            writer.write("gradle_task_duration_seconds_count{type=" + type + "} " + count + "\n");
+        }
+    }
+
+    private static void writeOutcomes(
+            List<TaskExecution> executions, Map<String, String> taskTypes, Writer writer) throws IOException {
+        SortedMap<String, SortedMap<String, Integer>> counts = new TreeMap<>();
+        for (TaskExecution execution : executions) {
+            counts.computeIfAbsent(taskTypes.getOrDefault(execution.path(), "unknown"), key -> new TreeMap<>())
+                    .merge(execution.outcome(), 1, Integer::sum);
+        }
+
+        writer.write("# HELP gradle_tasks_total The number of tasks by type and outcome, such as FROM-CACHE.\n"
+                + "# TYPE gradle_tasks_total gauge\n");
+        for (Map.Entry<String, SortedMap<String, Integer>> type : counts.entrySet()) {
+            for (Map.Entry<String, Integer> outcome : type.getValue().entrySet()) {
+                writer.write("gradle_tasks_total{type=" + label(type.getKey())
+                        + ",outcome=" + label(outcome.getKey()) + "} " + outcome.getValue() + "\n");
+            }
+        }
+    }
+
+    private static String label(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + '"';
+    }
+
+    private static String seconds(long nanos) {
+        return decimal(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private static String decimal(double value) {
+        String formatted = String.format(Locale.ROOT, "%.3f", value);
+        return formatted.replaceAll("\\.?0+$", "");
+    }
+}
@@ -15,15 +15,24 @@
  */
 package com.palantir.gradle.junit;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.xml.stream.XMLStreamReader;
 import org.gradle.api.plugins.quality.Checkstyle;
-import org.xml.sax.Attributes;
 
 public final class CheckstyleReportHandler extends ReportHandler<Checkstyle> {
 
     private final List<Failure> failures = new ArrayList<>();
+    // Large reports repeat the same few sources and severities thousands of times
+    private final Interner<String> sources = Interners.newStrongInterner();
+    private final Map<String, String> severities = new HashMap<>();
+    private final Map<String, File> files = new HashMap<>();
     private File file;
 
     @Override
@@ -33,19 +42,19 @@ public final class CheckstyleReportHandler extends ReportHandler<Checkstyle> {
     }
 
     @Override
-    public void startElement(String uri, String localName, String qName, Attributes attributes) {
-        switch (qName) {
+    public void startElement(XMLStreamReader reader) {
+        switch (reader.getLocalName()) {
             case "file":
-                file = new File(attributes.getValue("name"));
+                file = files.computeIfAbsent(reader.getAttributeValue(null, "name"), File::new);
                 break;
 
             case "error":
                 failures.add(new Failure.Builder()
-                        .source(attributes.getValue("source"))
-                        .severity(attributes.getValue("severity").toUpperCase())
+                        .source(sources.intern(reader.getAttributeValue(null, "source")))
+                        .severity(severity(reader.getAttributeValue(null, "severity")))
                         .file(file)
-                        .line(Integer.parseInt(attributes.getValue("line")))
-                        .message(attributes.getValue("message"))
+                        .line(Integer.parseInt(reader.getAttributeValue(null, "line")))
+                        .message(reader.getAttributeValue(null, "message"))
                         .build());
                 break;
 
@@ -54,6 +63,10 @@ public final class CheckstyleReportHandler extends ReportHandler<Checkstyle> {
         }
     }
 
+    private String severity(String severity) {
+        return severities.computeIfAbsent(severity, key -> key.toUpperCase(Locale.ROOT));
+    }
+
     @Override
     public List<Failure> failures() {
         return failures;
@@ -0,0 +1,322 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out which tasks bounded the wall-clock time of a build, and how well it used its workers.
+ *
+ * <p>The critical path is found from the observed timings: starting from the task that finished last, each step goes
+ * back to the dependency that finished last, which is the one the task was waiting for. Any time between that
+ * dependency finishing and the task starting was spent waiting for a free worker.
+ */
+final class CriticalPathAnalysis {
+
+    /** Tasks that ran alone for at least this fraction of the build are reported as serializing it. */
+    private static final double SERIALIZING_FRACTION = 0.01;
+    private static final int MAX_UTILIZATION_INTERVALS = 100;
+    private static final long MIN_UTILIZATION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long startTimeNanos;
+    private final long wallTimeNanos;
+    private final long taskTimeNanos;
+    private final int taskCount;
+    private final int peakBusyWorkers;
+    private final List<TaskExecution> criticalPath;
+    private final long utilizationIntervalNanos;
+    private final double[] busyWorkers;
+    private final Map<TaskExecution, Long> serializingTasks;
+
+    private CriticalPathAnalysis(
+            long startTimeNanos,
+            long wallTimeNanos,
+            long taskTimeNanos,
+            int taskCount,
+            int peakBusyWorkers,
+            List<TaskExecution> criticalPath,
+            long utilizationIntervalNanos,
+            double[] busyWorkers,
+            Map<TaskExecution, Long> serializingTasks) {
+        this.startTimeNanos = startTimeNanos;
+        this.wallTimeNanos = wallTimeNanos;
+        this.taskTimeNanos = taskTimeNanos;
+        this.taskCount = taskCount;
+        this.peakBusyWorkers = peakBusyWorkers;
+        this.criticalPath = criticalPath;
+        this.utilizationIntervalNanos = utilizationIntervalNanos;
+        this.busyWorkers = busyWorkers;
+        this.serializingTasks = serializingTasks;
+    }
+
+    /**
+     * Analyses the tasks that ran in a build.
+     *
+     * @param dependencies map of task path to the paths of the tasks it depends on, as in the task graph
+     */
+    static CriticalPathAnalysis analyze(
+            List<TaskExecution> executions, Map<String, Set<String>> dependencies) {
+        if (executions.isEmpty()) {
+            return new CriticalPathAnalysis(
+                    0, 0, 0, 0, 0, Collections.emptyList(), MIN_UTILIZATION_INTERVAL_NANOS, new double[0],
+                    Collections.emptyMap());
+        }
+        long start = executions.stream().mapToLong(TaskExecution::startTimeNanos).min().getAsLong();
+        long end = executions.stream().mapToLong(TaskExecution::endTimeNanos).max().getAsLong();
+        long wallTime = end - start;
+        long taskTime = executions.stream().mapToLong(TaskExecution::elapsedTimeNanos).sum();
+
+        long intervalNanos = Math.max(
+                MIN_UTILIZATION_INTERVAL_NANOS, divideRoundingUp(wallTime, MAX_UTILIZATION_INTERVALS));
+        double[] busyWorkers = new double[(int) Math.max(1, divideRoundingUp(wallTime, intervalNanos))];
+        Map<TaskExecution, Long> aloneNanos = new HashMap<>();
+        int peakBusyWorkers = sweep(executions, start, intervalNanos, busyWorkers, aloneNanos);
+
+        Map<TaskExecution, Long> serializingTasks = new LinkedHashMap<>();
+        aloneNanos.entrySet().stream()
+                .filter(entry -> entry.getValue() >= wallTime * SERIALIZING_FRACTION)
+                .sorted(Map.Entry.<TaskExecution, Long>comparingByValue().reversed()
+                        .thenComparing(entry -> entry.getKey().startTimeNanos()))
+                .forEach(entry -> serializingTasks.put(entry.getKey(), entry.getValue()));
+
+        return new CriticalPathAnalysis(
+                start,
+                wallTime,
+                taskTime,
+                executions.size(),
+                peakBusyWorkers,
+                criticalPath(executions, dependencies),
+                intervalNanos,
+                busyWorkers,
+                serializingTasks);
+    }
+
+    private static List<TaskExecution> criticalPath(
+            List<TaskExecution> executions, Map<String, Set<String>> dependencies) {
+        Map<String, TaskExecution> byPath = new HashMap<>();
+        executions.forEach(execution -> byPath.put(execution.path(), execution));
+
+        List<TaskExecution> path = new ArrayList<>();
+        TaskExecution current = executions.stream().max(Comparator.comparingLong(TaskExecution::endTimeNanos)).get();
+        Set<String> visited = new LinkedHashSet<>();
+        while (current != null && visited.add(current.path())) {
+            path.add(current);
+            TaskExecution next = null;
+            for (String dependency : dependencies.getOrDefault(current.path(), Collections.emptySet())) {
+                TaskExecution candidate = byPath.get(dependency);
+                if (candidate != null && candidate.endTimeNanos() <= current.startTimeNanos()
+                        && (next == null || candidate.endTimeNanos() > next.endTimeNanos())) {
+                    next = candidate;
+                }
+            }
+            current = next;
+        }
+        Collections.reverse(path);
+        return Collections.unmodifiableList(path);
+    }
+
+    /**
+     * Walks through the starts and ends of all tasks in order, adding the number of busy workers in each interval to
+     * {@code busyWorkers}, and the time each task ran alone to {@code aloneNanos}. Returns the most tasks that ran at
+     * once.
+     */
+    private static int sweep(
+            List<TaskExecution> executions,
+            long start,
+            long intervalNanos,
+            double[] busyWorkers,
+            Map<TaskExecution, Long> aloneNanos) {
+        List<Event> events = new ArrayList<>(executions.size() * 2);
+        for (TaskExecution execution : executions) {
+            events.add(new Event(execution.startTimeNanos(), execution, true));
+            events.add(new Event(execution.endTimeNanos(), execution, false));
+        }
+        // Ends before starts at the same time, so that back to back tasks don't count as running at once
+        events.sort(Comparator.comparingLong((Event event) -> event.timeNanos)
+                .thenComparing(event -> event.isStart));
+
+        Set<TaskExecution> running = new LinkedHashSet<>();
+        int peak = 0;
+        long previousTime = start;
+        for (Event event : events) {
+            if (event.timeNanos > previousTime && !running.isEmpty()) {
+                addBusyTime(busyWorkers, previousTime - start, event.timeNanos - start, running.size(), intervalNanos);
+                if (running.size() == 1) {
+                    aloneNanos.merge(running.iterator().next(), event.timeNanos - previousTime, Long::sum);
+                }
+            }
+            previousTime = event.timeNanos;
+            if (event.isStart) {
+                running.add(event.execution);
+                peak = Math.max(peak, running.size());
+            } else {
+                running.remove(event.execution);
+            }
+        }
+        for (int i = 0; i < busyWorkers.length; i++) {
+            busyWorkers[i] /= intervalNanos;
+        }
+        return peak;
+    }
+
+    private static void addBusyTime(double[] busyWorkers, long from, long to, int workers, long intervalNanos) {
+        for (int i = (int) (from / intervalNanos); i < busyWorkers.length && (long) i * intervalNanos < to; i++) {
+            long overlap = Math.min(to, (i + 1) * intervalNanos) - Math.max(from, i * intervalNanos);
+            busyWorkers[i] += (double) overlap * workers;
+        }
+    }
+
+    long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /** The tasks on the critical path, from the first to run to the last. */
+    List<TaskExecution> getCriticalPath() {
+        return criticalPath;
+    }
+
+    /** The total time tasks were running, divided by the wall time. */
+    double getAverageBusyWorkers() {
+        return wallTimeNanos == 0 ? 0 : (double) taskTimeNanos / wallTimeNanos;
+    }
+
+    /** The average number of busy workers in consecutive intervals of {@link #getUtilizationIntervalNanos()}. */
+    double[] getBusyWorkers() {
+        return busyWorkers.clone();
+    }
+
+    long getUtilizationIntervalNanos() {
+        return utilizationIntervalNanos;
+    }
+
+    /** Map of task to how long it was the only task running, for the tasks that serialized the build. */
+    Map<TaskExecution, Long> getSerializingTasks() {
+        return Collections.unmodifiableMap(serializingTasks);
+    }
+
+    void writeJson(Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            writeJson(writer);
+        }
+    }
+
+    void writeJson(Writer writer) throws IOException {
+        writer.write("{\"wallTimeMillis\":" + millis(wallTimeNanos)
+                + ",\"taskTimeMillis\":" + millis(taskTimeNanos)
+                + ",\"taskCount\":" + taskCount
+                + ",\"averageBusyWorkers\":" + decimal(getAverageBusyWorkers())
+                + ",\"peakBusyWorkers\":" + peakBusyWorkers);
+
+        writer.write(",\n\"criticalPath\":[");
+        long previousEnd = criticalPath.isEmpty() ? startTimeNanos : criticalPath.get(0).startTimeNanos();
+        for (int i = 0; i < criticalPath.size(); i++) {
+            TaskExecution execution = criticalPath.get(i);
+            writer.write((i == 0 ? "\n" : ",\n") + "{\"path\":" + TraceEventWriter.quote(execution.path())
+                    + ",\"outcome\":" + TraceEventWriter.quote(execution.outcome())
+                    + ",\"startMillis\":" + millis(execution.startTimeNanos() - startTimeNanos)
+                    + ",\"durationMillis\":" + millis(execution.elapsedTimeNanos())
+                    + ",\"waitMillis\":" + millis(execution.startTimeNanos() - previousEnd) + "}");
+            previousEnd = execution.endTimeNanos();
+        }
+        writer.write("],\n\"utilization\":{\"intervalMillis\":" + millis(utilizationIntervalNanos)
+                + ",\"busyWorkers\":[");
+        for (int i = 0; i < busyWorkers.length; i++) {
+            writer.write((i == 0 ? "" : ",") + decimal(busyWorkers[i]));
+        }
+        writer.write("]},\n\"serializingTasks\":[");
+        boolean first = true;
+        for (Map.Entry<TaskExecution, Long> entry : serializingTasks.entrySet()) {
+            writer.write((first ? "\n" : ",\n") + "{\"path\":" + TraceEventWriter.quote(entry.getKey().path())
+                    + ",\"aloneMillis\":" + millis(entry.getValue())
+                    + ",\"durationMillis\":" + millis(entry.getKey().elapsedTimeNanos()) + "}");
+            first = false;
+        }
+        writer.write("]}\n");
+    }
+
+    void writeSummary(Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            writeSummary(writer);
+        }
+    }
+
+    void writeSummary(Writer writer) throws IOException {
+        writer.write(String.format(Locale.ROOT,
+                "Ran %d tasks in %s, with %.2f busy workers on average and %d at most%n",
+                taskCount, seconds(wallTimeNanos), getAverageBusyWorkers(), peakBusyWorkers));
+
+        long pathTaskTime = criticalPath.stream().mapToLong(TaskExecution::elapsedTimeNanos).sum();
+        writer.write(String.format(Locale.ROOT, "%nCritical path: %s running tasks, %s waiting for a worker%n",
+                seconds(pathTaskTime), seconds(wallTimeNanos - pathTaskTime)));
+        for (TaskExecution execution : criticalPath) {
+            writer.write(String.format(Locale.ROOT, "  %10s  %s%n", seconds(execution.elapsedTimeNanos()),
+                    execution.path()));
+        }
+
+        if (!serializingTasks.isEmpty()) {
+            writer.write(String.format(Locale.ROOT, "%nTasks that ran with no other task running:%n"));
+            for (Map.Entry<TaskExecution, Long> entry : serializingTasks.entrySet()) {
+                writer.write(String.format(Locale.ROOT, "  %10s  %s%n", seconds(entry.getValue()),
+                        entry.getKey().path()));
+            }
+        }
+    }
+
+    private static long divideRoundingUp(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static String decimal(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.3fs", nanos / 1e9);
+    }
+
+    private static final class Event {
+        private final long timeNanos;
+        private final TaskExecution execution;
+        private final boolean isStart;
+
+        Event(long timeNanos, TaskExecution execution, boolean isStart) {
+            this.timeNanos = timeNanos;
+            this.execution = execution;
+            this.isStart = isStart;
+        }
+    }
+}
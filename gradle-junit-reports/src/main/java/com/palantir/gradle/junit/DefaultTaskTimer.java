@@ -15,25 +15,23 @@
  */
 package com.palantir.gradle.junit;
 
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.gradle.api.Task;
-import org.gradle.api.plugins.quality.Checkstyle;
-import org.gradle.api.plugins.quality.FindBugs;
 import org.gradle.api.tasks.TaskState;
-import org.gradle.api.tasks.compile.JavaCompile;
 
-public final class StyleTaskTimer implements TaskTimer {
+/**
+ * Times every task in the build. Start times are tracked per task, so that tasks running concurrently under
+ * {@code --parallel} don't overwrite each other's timings.
+ */
+public final class DefaultTaskTimer implements TaskTimer {
 
-    private final Map<Task, Long> taskTimeNanosByTask = new LinkedHashMap<>();
-    private long lastStartTime;
+    private final Map<String, Long> startTimeNanosByTaskPath = new ConcurrentHashMap<>();
+    private final Map<String, Long> taskTimeNanosByTaskPath = new ConcurrentHashMap<>();
 
     @Override
-    public long getTaskTimeNanos(Task styleTask) {
-        if (!isStyleTask(styleTask)) {
-            throw new ClassCastException("not a style task");
-        }
-        Long taskTimeNanos = taskTimeNanosByTask.get(styleTask);
+    public long getTaskTimeNanos(Task task) {
+        Long taskTimeNanos = taskTimeNanosByTaskPath.get(task.getPath());
         if (taskTimeNanos == null) {
             throw new IllegalArgumentException("no time available for task");
         }
@@ -42,19 +40,14 @@ public final class StyleTaskTimer implements TaskTimer {
 
     @Override
     public void beforeExecute(Task task) {
-        if (isStyleTask(task)) {
-            lastStartTime = System.nanoTime();
-        }
+        startTimeNanosByTaskPath.put(task.getPath(), System.nanoTime());
     }
 
     @Override
     public void afterExecute(Task task, TaskState taskState) {
-        if (isStyleTask(task)) {
-            taskTimeNanosByTask.put(task, System.nanoTime() - lastStartTime);
+        Long startTimeNanos = startTimeNanosByTaskPath.remove(task.getPath());
+        if (startTimeNanos != null) {
+            taskTimeNanosByTaskPath.put(task.getPath(), System.nanoTime() - startTimeNanos);
         }
     }
-
-    public static boolean isStyleTask(Task task) {
-        return task instanceof Checkstyle || task instanceof FindBugs || task instanceof JavaCompile;
-    }
 }
@@ -16,8 +16,13 @@
 package com.palantir.gradle.junit;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -39,18 +44,11 @@ public final class FailuresReportGenerator {
                 .subname(taskName);
 
         for (Failure failure : failures) {
-            String shortSource = failure.source().isEmpty() ? "" : failure.source().replaceAll(".*\\.", "") + " - ";
-            String className = getClassName(failure.file());
-
             Report.TestCase testCase = new Report.TestCase.Builder()
-                    .name(shortSource + className)
+                    .name(testCaseName(failure))
                     .failure(new Report.Failure.Builder()
-                            .message(failure.file().getName() + ":" + failure.line() + ": " + failure.message())
-                            .details(
-                                    failure.severity() + ": " + failure.message() + failure.details() + "\n"
-                                            + (failure.source().isEmpty() ? "" : "Category: " + failure.source() + "\n")
-                                            + "File: " + relativise(rootDir, failure) + "\n"
-                                            + "Line: " + failure.line() + "\n")
+                            .message(message(failure))
+                            .details(details(rootDir, failure))
                             .build())
                     .build();
             report.addTestCases(testCase);
@@ -59,6 +57,84 @@ public final class FailuresReportGenerator {
         return report.build();
     }
 
+    /**
+     * Like {@link #failuresReport}, but with one test case per source rule and class rather than per failure, so that a
+     * rule that fires thousands of times doesn't make the report huge. Each test case lists the locations of at most
+     * {@code maxLocations} of its failures, and points to {@code fullReportName} for the rest.
+     */
+    public static Report groupedFailuresReport(
+            File rootDir,
+            String projectName,
+            String taskName,
+            long elapsedTimeNanos,
+            List<Failure> failures,
+            int maxLocations,
+            String fullReportName) {
+        Map<String, List<Failure>> groups = new LinkedHashMap<>();
+        for (Failure failure : failures) {
+            groups.computeIfAbsent(testCaseName(failure), name -> new ArrayList<>()).add(failure);
+        }
+
+        Report.Builder report = new Report.Builder()
+                .elapsedTimeNanos(elapsedTimeNanos)
+                .name(projectName)
+                .subname(taskName);
+        groups.forEach((name, group) -> {
+            Failure first = group.get(0);
+            if (group.size() == 1) {
+                report.addTestCases(new Report.TestCase.Builder()
+                        .name(name)
+                        .failure(new Report.Failure.Builder()
+                                .message(message(first))
+                                .details(details(rootDir, first))
+                                .build())
+                        .build());
+                return;
+            }
+            StringBuilder details = new StringBuilder()
+                    .append(group.size()).append(" failures")
+                    .append(first.source().isEmpty() ? "" : " of " + first.source()).append('\n');
+            group.stream().limit(maxLocations).forEach(failure -> details
+                    .append(relativise(rootDir, failure)).append(':').append(failure.line()).append(": ")
+                    .append(failure.severity()).append(": ").append(failure.message()).append('\n'));
+            if (group.size() > maxLocations) {
+                details.append("... and ").append(group.size() - maxLocations).append(" more, listed in ")
+                        .append(fullReportName).append('\n');
+            }
+            report.addTestCases(new Report.TestCase.Builder()
+                    .name(name)
+                    .failure(new Report.Failure.Builder()
+                            .message(message(first) + " (and " + (group.size() - 1) + " more)")
+                            .details(details.toString())
+                            .build())
+                    .build());
+        });
+        return report.build();
+    }
+
+    /** Writes the full details of every failure, as they would appear in {@link #failuresReport}. */
+    public static void writeFailures(File rootDir, List<Failure> failures, Writer writer) throws IOException {
+        for (Failure failure : failures) {
+            writer.write(testCaseName(failure) + "\n" + message(failure) + "\n" + details(rootDir, failure) + "\n");
+        }
+    }
+
+    private static String testCaseName(Failure failure) {
+        String shortSource = failure.source().isEmpty() ? "" : failure.source().replaceAll(".*\\.", "") + " - ";
+        return shortSource + getClassName(failure.file());
+    }
+
+    private static String message(Failure failure) {
+        return failure.file().getName() + ":" + failure.line() + ": " + failure.message();
+    }
+
+    private static String details(File rootDir, Failure failure) {
+        return failure.severity() + ": " + failure.message() + failure.details() + "\n"
+                + (failure.source().isEmpty() ? "" : "Category: " + failure.source() + "\n")
+                + "File: " + relativise(rootDir, failure) + "\n"
+                + "Line: " + failure.line() + "\n";
+    }
+
     public static Path relativise(File rootDir, Failure failure) {
         try {
             return rootDir.toPath().relativize(failure.file().toPath());
@@ -0,0 +1,115 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Tracks the peak heap usage of the JVM between {@link #start} and {@link #stop}, without resetting the peak usage of
+ * the memory pools, which other tools and other trackers running at the same time rely on. Heap usage peaks just
+ * before a garbage collection, so the peak is the highest heap usage at the start, at the end, and just before any
+ * collection in between, as reported by garbage collection notifications.
+ *
+ * <p>The notification listener is only registered while a tracker is running, so that nothing is left registered
+ * with the JVM once the last one has stopped.
+ */
+final class HeapPeakTracker {
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+    private static final Set<String> HEAP_POOL_NAMES =
+            HEAP_POOLS.stream().map(MemoryPoolMXBean::getName).collect(Collectors.toSet());
+    private static final NotificationListener LISTENER = HeapPeakTracker::onNotification;
+    private static final Set<HeapPeakTracker> RUNNING = new HashSet<>();
+
+    private final AtomicLong peakHeapBytes;
+
+    private HeapPeakTracker(long heapBytes) {
+        this.peakHeapBytes = new AtomicLong(heapBytes);
+    }
+
+    static HeapPeakTracker start() {
+        HeapPeakTracker tracker = new HeapPeakTracker(currentHeapBytes());
+        synchronized (RUNNING) {
+            if (RUNNING.isEmpty()) {
+                COLLECTORS.stream()
+                        .filter(NotificationEmitter.class::isInstance)
+                        .forEach(collector -> ((NotificationEmitter) collector)
+                                .addNotificationListener(LISTENER, null, null));
+            }
+            RUNNING.add(tracker);
+        }
+        return tracker;
+    }
+
+    /** Stops tracking, and returns the peak heap usage in bytes since {@link #start}. */
+    long stop() {
+        synchronized (RUNNING) {
+            if (RUNNING.remove(this) && RUNNING.isEmpty()) {
+                COLLECTORS.stream()
+                        .filter(NotificationEmitter.class::isInstance)
+                        .forEach(collector -> removeListener((NotificationEmitter) collector));
+            }
+        }
+        return peakHeapBytes.accumulateAndGet(currentHeapBytes(), Math::max);
+    }
+
+    private static long currentHeapBytes() {
+        return HEAP_POOLS.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    }
+
+    private static void onNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        Map<String, MemoryUsage> beforeGc = GarbageCollectionNotificationInfo
+                .from((CompositeData) notification.getUserData())
+                .getGcInfo()
+                .getMemoryUsageBeforeGc();
+        long heapBytes = beforeGc.entrySet().stream()
+                .filter(entry -> HEAP_POOL_NAMES.contains(entry.getKey()))
+                .mapToLong(entry -> entry.getValue().getUsed())
+                .sum();
+        synchronized (RUNNING) {
+            RUNNING.forEach(tracker -> tracker.peakHeapBytes.accumulateAndGet(heapBytes, Math::max));
+        }
+    }
+
+    private static void removeListener(NotificationEmitter collector) {
+        try {
+            collector.removeNotificationListener(LISTENER);
+        } catch (ListenerNotFoundException e) {
+            // Already removed, which is all we wanted
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import com.google.common.base.Splitter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.process.CommandLineArgumentProvider;
+
+/**
+ * Runs the {@code BaselineJavacDiagnostics} compiler plugin from {@code baseline-javac-diagnostics-plugin}, which
+ * writes javac's diagnostics to a file as they are reported, one per line:
+ *
+ * <pre>
+ * kind  code  line  column  file  message
+ * </pre>
+ *
+ * <p>Fields are tab-separated, and backslashes, tabs and newlines in {@code file} and {@code message} are escaped.
+ */
+final class JavacDiagnosticsPlugin {
+
+    private static final String CONFIGURATION_NAME = "baselineJavacDiagnostics";
+    private static final String PLUGIN_NAME = "BaselineJavacDiagnostics";
+
+    private JavacDiagnosticsPlugin() {}
+
+    /**
+     * Runs the compiler plugin in {@code javac} if {@code enabled}, which is only read once the task graph is ready, so
+     * that it can be set anywhere in the build. Otherwise the task is left untouched, so it is cached as before.
+     */
+    static void configure(JavaCompile javac, Provider<Boolean> enabled) {
+        javac.getProject().getGradle().getTaskGraph().whenReady(graph -> {
+            if (enabled.get() && graph.hasTask(javac)) {
+                useCompilerPlugin(javac);
+            }
+        });
+    }
+
+    /** Adds the compiler plugin to the annotation processor path of {@code javac}, and runs it. */
+    static void useCompilerPlugin(JavaCompile javac) {
+        Configuration plugin = pluginConfiguration(javac.getProject());
+        FileCollection processorPath = javac.getOptions().getAnnotationProcessorPath();
+        javac.getOptions().setAnnotationProcessorPath(processorPath == null ? plugin : processorPath.plus(plugin));
+        javac.getOptions().getCompilerArgumentProviders().add(new PluginArguments(diagnosticsFile(javac).toFile()));
+        javac.doFirst(new DeleteDiagnosticsFile());
+    }
+
+    static Path diagnosticsFile(JavaCompile javac) {
+        return javac.getTemporaryDir().toPath().resolve("diagnostics.tsv");
+    }
+
+    /** Every error with a source file, in the order javac reported them. */
+    static List<Failure> readErrors(Path diagnosticsFile) throws IOException {
+        List<Failure> failures = new ArrayList<>();
+        if (!Files.exists(diagnosticsFile)) {
+            return failures;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(diagnosticsFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                parseError(line).ifPresent(failures::add);
+            }
+        }
+        return failures;
+    }
+
+    private static Optional<Failure> parseError(String line) {
+        List<String> fields = Splitter.on('\t').limit(6).splitToList(line);
+        if (fields.size() != 6 || !fields.get(0).equals("ERROR") || fields.get(4).isEmpty()) {
+            return Optional.empty();
+        }
+        String message = unescape(fields.get(5));
+        int firstNewline = message.indexOf('\n');
+        // The diagnostic code isn't used as the source, so that reports look the same as when scraping the output
+        return Optional.of(new Failure.Builder()
+                .file(new File(unescape(fields.get(4))))
+                .line(Math.max(0, Integer.parseInt(fields.get(2))))
+                .severity("ERROR")
+                .message(firstNewline == -1 ? message : message.substring(0, firstNewline))
+                .details(firstNewline == -1 ? "" : message.substring(firstNewline))
+                .build());
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') == -1) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                unescaped.append(ch);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Passes the diagnostics file to the plugin. It is in the task's temporary directory, so it is neither an input nor
+     * an output, and its absolute path doesn't stop the task from being relocated.
+     */
+    private static final class PluginArguments implements CommandLineArgumentProvider {
+        private final File diagnosticsFile;
+
+        PluginArguments(File diagnosticsFile) {
+            this.diagnosticsFile = diagnosticsFile;
+        }
+
+        @Internal
+        public File getDiagnosticsFile() {
+            return diagnosticsFile;
+        }
+
+        @Override
+        public Iterable<String> asArguments() {
+            // javac splits plugin arguments on whitespace, which a file URI never contains
+            return Collections.singletonList("-Xplugin:" + PLUGIN_NAME + " --out " + diagnosticsFile.toPath().toUri());
+        }
+    }
+
+    /** Never reports the errors of a previous run if the compiler fails before the plugin starts. */
+    private static final class DeleteDiagnosticsFile implements Action<Task> {
+        @Override
+        public void execute(Task task) {
+            try {
+                Files.deleteIfExists(diagnosticsFile((JavaCompile) task));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The configuration with the compiler plugin, which defaults to the same version as this plugin. Builds can add
+     * their own dependency to use another version.
+     */
+    private static Configuration pluginConfiguration(Project project) {
+        Configuration existing = project.getConfigurations().findByName(CONFIGURATION_NAME);
+        if (existing != null) {
+            return existing;
+        }
+        Optional<String> version = Optional.ofNullable(JavacDiagnosticsPlugin.class.getPackage()
+                .getImplementationVersion());
+        Configuration configuration = project.getConfigurations().create(CONFIGURATION_NAME);
+        configuration.defaultDependencies(dependencies -> dependencies.add(project.getDependencies().create(
+                "com.palantir.baseline:baseline-javac-diagnostics-plugin" + version.map(v -> ":" + v).orElse(""))));
+        return configuration;
+    }
+}
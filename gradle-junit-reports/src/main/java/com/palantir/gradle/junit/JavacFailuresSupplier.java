@@ -17,34 +17,63 @@ package com.palantir.gradle.junit;
 
 import com.google.common.base.Splitter;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.compile.JavaCompile;
 
 public final class JavacFailuresSupplier implements FailuresSupplier {
 
     public static JavacFailuresSupplier create(JavaCompile javac) {
-        // Capture standard output
+        return create(javac, javac.getProject().provider(() -> false));
+    }
+
+    /**
+     * Reads the compiler's errors from the file written by the {@code baseline-javac-diagnostics-plugin} compiler
+     * plugin when {@code useDiagnosticsPlugin} is set, and otherwise scrapes them from its standard error.
+     */
+    public static JavacFailuresSupplier create(JavaCompile javac, Provider<Boolean> useDiagnosticsPlugin) {
+        // Capture standard output, unless the compiler plugin records the errors for us
         final StringBuilder errorStream = new StringBuilder();
-        javac.getLogging().addStandardErrorListener(errorStream::append);
+        javac.getLogging().addStandardErrorListener(output -> {
+            if (!useDiagnosticsPlugin.get()) {
+                errorStream.append(output);
+            }
+        });
 
-        // Configure the finalizer task
-        return new JavacFailuresSupplier(errorStream);
+        JavacDiagnosticsPlugin.configure(javac, useDiagnosticsPlugin);
+        return new JavacFailuresSupplier(errorStream, () -> useDiagnosticsPlugin.get()
+                ? Optional.of(JavacDiagnosticsPlugin.diagnosticsFile(javac))
+                : Optional.empty());
     }
 
     private static final Pattern ERROR_LINE = Pattern.compile("([^ ].*):(\\d+): error: (.*)");
 
     private final StringBuilder errorStream;
+    private final Supplier<Optional<Path>> diagnosticsFile;
 
     JavacFailuresSupplier(StringBuilder errorStream) {
+        this(errorStream, Optional::empty);
+    }
+
+    JavacFailuresSupplier(StringBuilder errorStream, Supplier<Optional<Path>> diagnosticsFile) {
         this.errorStream = errorStream;
+        this.diagnosticsFile = diagnosticsFile;
     }
 
     @Override
-    public List<Failure> getFailures() {
+    public List<Failure> getFailures() throws IOException {
+        Optional<Path> diagnostics = diagnosticsFile.get();
+        if (diagnostics.isPresent()) {
+            return JavacDiagnosticsPlugin.readErrors(diagnostics.get());
+        }
+
         List<Failure> failures = new ArrayList<>();
         Failure.Builder failureBuilder = null;
         StringBuilder details = null;
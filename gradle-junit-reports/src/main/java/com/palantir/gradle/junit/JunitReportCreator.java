@@ -15,56 +15,117 @@
  */
 package com.palantir.gradle.junit;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
+/**
+ * Streams a {@link Report} as JUnit XML. Nothing is buffered beyond the underlying writer, so arbitrarily large
+ * reports are written in a single pass.
+ */
 final class JunitReportCreator {
 
-    static Document reportToXml(Report report) {
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    static void writeReport(Report report, Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            writeReport(report, writer);
+        }
+    }
+
+    static void writeReport(Report report, Writer writer) throws IOException {
+        String elapsedTimeString = String.format("%.03f", report.elapsedTimeNanos() / 1e9);
+        String tests = Integer.toString(report.testCases().size());
+        String failures = Long.toString(report.testCases().stream()
+                .filter(testCase -> testCase.failure() != null)
+                .count());
+
+        // Written by hand as XMLStreamWriter has no way to declare standalone="no"
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
         try {
-            Document xml = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-            String elapsedTimeString = String.format("%.03f", report.elapsedTimeNanos() / 1e9);
-
-            Element testSuitesXml = xml.createElement("testsuites");
-            xml.appendChild(testSuitesXml);
-            testSuitesXml.setAttribute("id", asId(report.name()));
-            testSuitesXml.setAttribute("name", report.name());
-            testSuitesXml.setAttribute("tests", Integer.toString(report.testCases().size()));
-            testSuitesXml.setAttribute("time", elapsedTimeString);
-
-            Element testSuiteXml = xml.createElement("testsuite");
-            testSuitesXml.appendChild(testSuiteXml);
-            testSuiteXml.setAttribute("id", asId(report.subname()));
-            testSuiteXml.setAttribute("name", report.subname());
-            testSuiteXml.setAttribute("tests", Integer.toString(report.testCases().size()));
-            testSuiteXml.setAttribute("time", elapsedTimeString);
-
-            int failures = 0;
+            XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+
+            xml.writeStartElement("testsuites");
+            xml.writeAttribute("failures", failures);
+            xml.writeAttribute("id", asId(report.name()));
+            xml.writeAttribute("name", report.name());
+            xml.writeAttribute("tests", tests);
+            xml.writeAttribute("time", elapsedTimeString);
+            xml.writeCharacters("\n");
+
+            if (report.testCases().isEmpty()) {
+                xml.writeEmptyElement("testsuite");
+            } else {
+                xml.writeStartElement("testsuite");
+            }
+            xml.writeAttribute("failures", failures);
+            xml.writeAttribute("id", asId(report.subname()));
+            xml.writeAttribute("name", report.subname());
+            xml.writeAttribute("tests", tests);
+            xml.writeAttribute("time", elapsedTimeString);
+            xml.writeCharacters("\n");
+
             for (Report.TestCase testCase : report.testCases()) {
-                Element testCaseXml = xml.createElement("testcase");
-                testSuiteXml.appendChild(testCaseXml);
-                testCaseXml.setAttribute("id", asId(testCase.name()));
-                testCaseXml.setAttribute("name", testCase.name());
-
-                Report.Failure failure = testCase.failure();
-                if (failure != null) {
-                    failures++;
-                    Element failureXml = xml.createElement("failure");
-                    testCaseXml.appendChild(failureXml);
-                    failureXml.setAttribute("message", failure.message());
-                    failureXml.setAttribute("type", "ERROR");
-                    failureXml.setTextContent(failure.details());
-                }
+                writeTestCase(xml, testCase);
             }
 
-            testSuitesXml.setAttribute("failures", Integer.toString(failures));
-            testSuiteXml.setAttribute("failures", Integer.toString(failures));
+            if (!report.testCases().isEmpty()) {
+                xml.writeEndElement();
+                xml.writeCharacters("\n");
+            }
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.flush();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeTestCase(XMLStreamWriter xml, Report.TestCase testCase) throws XMLStreamException {
+        Report.Failure failure = testCase.failure();
+        boolean empty = failure == null && testCase.properties().isEmpty();
+        if (empty) {
+            xml.writeEmptyElement("testcase");
+        } else {
+            xml.writeStartElement("testcase");
+        }
+        xml.writeAttribute("id", asId(testCase.name()));
+        xml.writeAttribute("name", testCase.name());
+        xml.writeCharacters("\n");
+
+        if (!testCase.properties().isEmpty()) {
+            xml.writeStartElement("properties");
+            xml.writeCharacters("\n");
+            for (Map.Entry<String, String> property : testCase.properties().entrySet()) {
+                xml.writeEmptyElement("property");
+                xml.writeAttribute("name", property.getKey());
+                xml.writeAttribute("value", property.getValue());
+                xml.writeCharacters("\n");
+            }
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+        }
+
+        if (failure != null) {
+            xml.writeStartElement("failure");
+            xml.writeAttribute("message", failure.message());
+            xml.writeAttribute("type", "ERROR");
+            xml.writeCharacters(failure.details());
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+        }
 
-            return xml;
-        } catch (ParserConfigurationException e) {
-            throw new RuntimeException(e);
+        if (!empty) {
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
         }
     }
 
@@ -18,17 +18,111 @@ package com.palantir.gradle.junit;
 
 import org.gradle.api.Project;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
 
 public class JunitReportsExtension {
 
     private final DirectoryProperty reportsDirectory;
+    private final Property<Integer> maxTestOutputChars;
+    private final Property<Integer> maxSuiteOutputChars;
+    private final Property<Boolean> journal;
+    private final Property<Boolean> structuredJavacDiagnostics;
+    private final Property<Boolean> groupStyleFailures;
+    private final Property<Boolean> consolidate;
+    private final DirectoryProperty consolidatedReportsDirectory;
+    private final Property<Long> consolidatedMaxFileBytes;
+    private final Property<Boolean> consolidatedGzip;
+    private final RegularFileProperty metricsFile;
 
     public JunitReportsExtension(Project project) {
         this.reportsDirectory = project.getLayout().directoryProperty();
         reportsDirectory.set(project.getLayout().getBuildDirectory().dir("junit-reports"));
+        this.maxTestOutputChars = project.getObjects().property(Integer.class);
+        this.maxSuiteOutputChars = project.getObjects().property(Integer.class);
+        this.journal = project.getObjects().property(Boolean.class);
+        journal.set(false);
+        this.structuredJavacDiagnostics = project.getObjects().property(Boolean.class);
+        structuredJavacDiagnostics.set(false);
+        this.groupStyleFailures = project.getObjects().property(Boolean.class);
+        groupStyleFailures.set(false);
+        this.consolidate = project.getObjects().property(Boolean.class);
+        consolidate.set(false);
+        this.consolidatedReportsDirectory = project.getLayout().directoryProperty();
+        consolidatedReportsDirectory.set(project.getLayout().getBuildDirectory().dir("junit-reports-consolidated"));
+        this.consolidatedMaxFileBytes = project.getObjects().property(Long.class);
+        consolidatedMaxFileBytes.set(64L * 1024 * 1024);
+        this.consolidatedGzip = project.getObjects().property(Boolean.class);
+        consolidatedGzip.set(false);
+        this.metricsFile = project.getLayout().fileProperty();
     }
 
     public final DirectoryProperty getReportsDirectory() {
         return reportsDirectory;
     }
+
+    /**
+     * The most {@code system-out} or {@code system-err} to keep in the report for a single test case, which is where
+     * Gradle puts test output when {@code outputPerTestCase} is set. Output over this limit keeps its first and last
+     * halves, and is written in full to a side file. Not limited by default.
+     */
+    public final Property<Integer> getMaxTestOutputChars() {
+        return maxTestOutputChars;
+    }
+
+    /** Like {@link #getMaxTestOutputChars()}, for the output of a whole test class. */
+    public final Property<Integer> getMaxSuiteOutputChars() {
+        return maxSuiteOutputChars;
+    }
+
+    /**
+     * Whether to journal each task's result as it finishes, so that if the build is killed, the next build can recover
+     * its report into {@code gradle/build<N>.xml}.
+     */
+    public final Property<Boolean> getJournal() {
+        return journal;
+    }
+
+    /**
+     * Whether to record javac errors with the {@code baseline-javac-diagnostics-plugin} compiler plugin, rather than
+     * by scraping the compiler's output.
+     */
+    public final Property<Boolean> getStructuredJavacDiagnostics() {
+        return structuredJavacDiagnostics;
+    }
+
+    /**
+     * Whether to report style failures with one test case per source rule and class, listing a sample of locations,
+     * rather than one test case per failure. Every failure is still listed in full in a compressed side file.
+     */
+    public final Property<Boolean> getGroupStyleFailures() {
+        return groupStyleFailures;
+    }
+
+    /** Whether to merge all reports into {@link #getConsolidatedReportsDirectory()} when the build finishes. */
+    public final Property<Boolean> getConsolidate() {
+        return consolidate;
+    }
+
+    /** Kept apart from {@link #getReportsDirectory()} so that CI doesn't ingest every result twice. */
+    public final DirectoryProperty getConsolidatedReportsDirectory() {
+        return consolidatedReportsDirectory;
+    }
+
+    /** Once a consolidated file reaches this size, the next suite starts a new file. */
+    public final Property<Long> getConsolidatedMaxFileBytes() {
+        return consolidatedMaxFileBytes;
+    }
+
+    public final Property<Boolean> getConsolidatedGzip() {
+        return consolidatedGzip;
+    }
+
+    /**
+     * Where to write a snapshot of the build's metrics in the Prometheus text format when the build finishes, for
+     * example into the node-exporter textfile collector's directory. Not written by default.
+     */
+    public final RegularFileProperty getMetricsFile() {
+        return metricsFile;
+    }
 }
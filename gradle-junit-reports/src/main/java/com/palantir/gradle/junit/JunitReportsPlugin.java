@@ -18,9 +18,18 @@ package com.palantir.gradle.junit;
 
 import com.google.common.base.Splitter;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.Task;
 import org.gradle.api.file.Directory;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFile;
@@ -44,28 +53,39 @@ public final class JunitReportsPlugin implements Plugin<Project> {
         JunitReportsExtension reportsExtension = project.getExtensions()
                 .create(EXT_JUNIT_REPORTS, JunitReportsExtension.class, project);
 
-        configureBuildFailureFinalizer(project.getRootProject(), reportsExtension.getReportsDirectory());
+        TaskExecutionRecorder recorder = new TaskExecutionRecorder();
+        project.getRootProject().getGradle().addListener(recorder);
+        configureBuildFailureFinalizer(project.getRootProject(), reportsExtension, recorder);
+        configureTrace(project.getRootProject(), reportsExtension.getReportsDirectory(), recorder);
+        configureCriticalPath(project.getRootProject(), reportsExtension.getReportsDirectory(), recorder);
 
-        TaskTimer timer = new StyleTaskTimer();
-        project.getRootProject().getGradle().addListener(timer);
+        // The recorder was added first, so it has timed each task by the time the collector sees it finish
+        StyleReportCollector collector = new StyleReportCollector(
+                recorder, reportsExtension.getGroupStyleFailures()::get);
+        project.getRootProject().getGradle().addListener(collector);
+        project.getRootProject().getGradle().buildFinished(result -> collector.awaitCompletion());
+        configureMetrics(project.getRootProject(), reportsExtension, recorder, collector);
+
+        configureTestReportPostProcessing(project.getRootProject(), reportsExtension);
+        configureConsolidation(project.getRootProject(), reportsExtension);
 
         project.getRootProject().allprojects(proj -> {
             proj.getTasks().withType(Test.class, test -> {
                 test.getReports().getJunitXml().setEnabled(true);
-                test.getReports().getJunitXml().setDestination(
-                        junitPath(reportsExtension.getReportsDirectory(), test.getPath()));
+                test.getReports().getJunitXml().setDestination(proj.provider(() -> isPostProcessingTestReports(
+                        reportsExtension, test)
+                        ? rawJunitDir(test)
+                        : junitPath(reportsExtension.getReportsDirectory(), test.getPath()).get()));
             });
-            proj.getTasks().withType(Checkstyle.class, checkstyle ->
-                    JunitReportsFinalizer.registerFinalizer(
+            proj.getTasks().withType(Checkstyle.class).configureEach(checkstyle ->
+                    collector.register(
                             checkstyle,
-                            timer,
                             XmlReportFailuresSupplier.create(checkstyle, new CheckstyleReportHandler()),
                             reportsExtension.getReportsDirectory().map(dir -> dir.dir("checkstyle"))));
-            proj.getTasks().withType(JavaCompile.class, javac ->
-                    JunitReportsFinalizer.registerFinalizer(
+            proj.getTasks().withType(JavaCompile.class).configureEach(javac ->
+                    collector.register(
                             javac,
-                            timer,
-                            JavacFailuresSupplier.create(javac),
+                            JavacFailuresSupplier.create(javac, reportsExtension.getStructuredJavacDiagnostics()),
                             reportsExtension.getReportsDirectory().map(dir -> dir.dir("javac"))));
         });
     }
@@ -77,20 +97,189 @@ public final class JunitReportsPlugin implements Plugin<Project> {
                 .map(RegularFile::getAsFile);
     }
 
-    private static void configureBuildFailureFinalizer(Project rootProject, Provider<Directory> reportsDir) {
-        Provider<RegularFile> targetFileProvider = reportsDir.map(dir -> {
+    private static void configureBuildFailureFinalizer(
+            Project rootProject, JunitReportsExtension reportsExtension, TaskExecutionRecorder recorder) {
+        Provider<Directory> reportsDir = reportsExtension.getReportsDirectory();
+        Provider<RegularFile> targetFileProvider = nextAttemptFile(reportsDir, "build", ".xml");
+
+        BuildJournal journal = new BuildJournal();
+        BuildFailureListener listener = new BuildFailureListener(journal);
+        BuildFinishedAction action = new BuildFinishedAction(targetFileProvider, listener, recorder, journal);
+        rootProject.getGradle().addListener(listener);
+        rootProject.getGradle().buildFinished(action);
+
+        // The reports directory is final once the build is configured
+        rootProject.getGradle().getTaskGraph().whenReady(graph -> {
+            if (!reportsExtension.getJournal().get()) {
+                return;
+            }
+            Path journalFile = reportsDir.get().getAsFile().toPath().resolve("gradle").resolve("build.journal");
+            try {
+                Optional<Report> recovered = BuildJournal.recover(journalFile);
+                if (recovered.isPresent()) {
+                    Path recoveredFile = nextAttemptFile(reportsDir, "build", ".xml").get().getAsFile().toPath();
+                    JunitReportCreator.writeReport(recovered.get(), recoveredFile);
+                    rootProject.getLogger().warn(
+                            "The previous build did not finish; recovered its report into {}", recoveredFile);
+                }
+                journal.open(journalFile);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open the build journal at " + journalFile, e);
+            }
+        });
+    }
+
+    private static void configureTrace(
+            Project rootProject, Provider<Directory> reportsDir, TaskExecutionRecorder recorder) {
+        Provider<RegularFile> targetFileProvider = nextAttemptFile(reportsDir, "trace", ".json");
+
+        rootProject.getGradle().buildFinished(result -> {
+            try {
+                TraceEventWriter.writeTrace(
+                        recorder.getExecutions(),
+                        recorder.getBuildStartTimeNanos(),
+                        targetFileProvider.get().getAsFile().toPath());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static void configureCriticalPath(
+            Project rootProject, Provider<Directory> reportsDir, TaskExecutionRecorder recorder) {
+        Provider<RegularFile> targetFileProvider = nextAttemptFile(reportsDir, "critical-path", ".json");
+
+        Map<String, Set<String>> dependencies = new HashMap<>();
+        rootProject.getGradle().getTaskGraph().whenReady(graph -> graph.getAllTasks().forEach(task ->
+                dependencies.put(task.getPath(), graph.getDependencies(task).stream()
+                        .map(Task::getPath)
+                        .collect(Collectors.toSet()))));
+
+        rootProject.getGradle().buildFinished(result -> {
+            Path jsonFile = targetFileProvider.get().getAsFile().toPath();
+            Path summaryFile = jsonFile.resolveSibling(
+                    jsonFile.getFileName().toString().replaceAll("\\.json$", ".txt"));
+            try {
+                CriticalPathAnalysis analysis = CriticalPathAnalysis.analyze(recorder.getExecutions(), dependencies);
+                analysis.writeJson(jsonFile);
+                analysis.writeSummary(summaryFile);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static void configureMetrics(
+            Project rootProject,
+            JunitReportsExtension reportsExtension,
+            TaskExecutionRecorder recorder,
+            StyleReportCollector collector) {
+        Map<String, String> taskTypes = new HashMap<>();
+        AtomicLong configuredTimeNanos = new AtomicLong(recorder.getBuildStartTimeNanos());
+        rootProject.getGradle().getTaskGraph().whenReady(graph -> {
+            configuredTimeNanos.set(System.nanoTime());
+            graph.getAllTasks().forEach(task ->
+                    taskTypes.put(task.getPath(), task.getClass().getSimpleName().replaceAll("_Decorated$", "")));
+        });
+
+        // Registered after the collector has finished writing reports, so that all failures are counted
+        rootProject.getGradle().buildFinished(result -> {
+            if (!reportsExtension.getMetricsFile().isPresent()) {
+                return;
+            }
+            long finishedTimeNanos = System.nanoTime();
+            BuildMetrics metrics = new BuildMetrics.Builder()
+                    .addAllExecutions(recorder.getExecutions())
+                    .putAllTaskTypes(taskTypes)
+                    .putAllCheckFailures(collector.getFailureCounts())
+                    .configurationTimeNanos(configuredTimeNanos.get() - recorder.getBuildStartTimeNanos())
+                    .buildTimeNanos(finishedTimeNanos - recorder.getBuildStartTimeNanos())
+                    .failed(result.getFailure() != null)
+                    .build();
+            Path target = reportsExtension.getMetricsFile().get().getAsFile().toPath();
+            try {
+                BuildMetricsWriter.write(metrics, target);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write build metrics to " + target, e);
+            }
+        });
+    }
+
+    /**
+     * Gradle writes reports into {@link #rawJunitDir}, from where they are processed into the reports. That directory
+     * is the task's report output, so it is restored for tests that are up-to-date or come from the build cache, which
+     * are processed too. The resource usage of each test class is added when {@link TestResourceProfileListener}
+     * recorded it during this build. The task's own outputs are never changed.
+     */
+    private static void configureTestReportPostProcessing(
+            Project rootProject, JunitReportsExtension reportsExtension) {
+        rootProject.getGradle().getTaskGraph().afterTask(task -> {
+            if (!(task instanceof Test) || !isPostProcessingTestReports(reportsExtension, (Test) task)) {
+                return;
+            }
+            Test test = (Test) task;
+            if (!(task.getDidWork() || task.getState().getUpToDate()) || !rawJunitDir(test).exists()) {
+                return;
+            }
+            try {
+                // Profiles are only recorded, and only match the reports, when the tests actually ran
+                Map<String, Map<String, String>> suiteProperties = task.getDidWork()
+                        ? TestResourceProfiles.asSuiteProperties(
+                                TestResourceProfiles.read(TestResourceProfiles.outputDir(test).toPath()))
+                        : Collections.emptyMap();
+                new TestReportPostProcessor(
+                        reportsExtension.getMaxTestOutputChars().getOrElse(Integer.MAX_VALUE),
+                        reportsExtension.getMaxSuiteOutputChars().getOrElse(Integer.MAX_VALUE),
+                        suiteProperties)
+                        .process(
+                                rawJunitDir(test).toPath(),
+                                junitPath(reportsExtension.getReportsDirectory(), task.getPath()).get().toPath());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to process the junit reports of " + task.getPath(), e);
+            }
+        });
+    }
+
+    /** Whether the reports of {@code test} are capped, or get the profiles of its test classes. */
+    private static boolean isPostProcessingTestReports(JunitReportsExtension reportsExtension, Test test) {
+        return reportsExtension.getMaxTestOutputChars().isPresent()
+                || reportsExtension.getMaxSuiteOutputChars().isPresent()
+                || TestResourceProfiles.isEnabled(test);
+    }
+
+    /** Not in the task's temporary directory, which isn't an output, so isn't restored from the build cache. */
+    private static File rawJunitDir(Test test) {
+        return new File(test.getProject().getBuildDir(), "junit-reports-raw/" + test.getName());
+    }
+
+    private static void configureConsolidation(Project rootProject, JunitReportsExtension reportsExtension) {
+        // Registered after the other build finished actions, so that their reports are included
+        rootProject.getGradle().buildFinished(result -> {
+            if (!reportsExtension.getConsolidate().get()) {
+                return;
+            }
+            try {
+                ReportConsolidator.consolidate(
+                        reportsExtension.getReportsDirectory().get().getAsFile().toPath(),
+                        reportsExtension.getConsolidatedReportsDirectory().get().getAsFile().toPath(),
+                        reportsExtension.getConsolidatedMaxFileBytes().get(),
+                        reportsExtension.getConsolidatedGzip().get());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to consolidate junit reports", e);
+            }
+        });
+    }
+
+    /** The first of {@code gradle/<name><suffix>}, {@code gradle/<name>2<suffix>}, ... that doesn't exist yet. */
+    private static Provider<RegularFile> nextAttemptFile(Provider<Directory> reportsDir, String name, String suffix) {
+        return reportsDir.map(dir -> {
             int attemptNumber = 1;
-            Path targetFile = dir.getAsFile().toPath().resolve("gradle").resolve("build.xml");
+            Path targetFile = dir.getAsFile().toPath().resolve("gradle").resolve(name + suffix);
             while (targetFile.toFile().exists()) {
-                targetFile = dir.getAsFile().toPath().resolve("gradle").resolve("build" + (++attemptNumber) + ".xml");
+                targetFile = dir.getAsFile().toPath().resolve("gradle").resolve(name + (++attemptNumber) + suffix);
             }
             return dir.file(targetFile.toAbsolutePath().toString());
         });
-
-        BuildFailureListener listener = new BuildFailureListener();
-        BuildFinishedAction action = new BuildFinishedAction(targetFileProvider, listener);
-        rootProject.getGradle().addListener(listener);
-        rootProject.getGradle().buildFinished(action);
     }
 
 }
@@ -16,6 +16,7 @@
 package com.palantir.gradle.junit;
 
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 import org.inferred.freebuilder.FreeBuilder;
 
@@ -35,6 +36,8 @@ interface Report {
     public interface TestCase {
         String name();
         @Nullable Failure failure();
+        /** Written as JUnit {@code <properties>}, in insertion order. */
+        Map<String, String> properties();
 
         Builder toBuilder();
         class Builder extends Report_TestCase_Builder { }
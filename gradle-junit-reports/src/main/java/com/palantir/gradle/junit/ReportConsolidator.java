@@ -0,0 +1,277 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Merges every JUnit XML report under a directory into a few size-capped files, with one {@code testsuite} per task:
+ * the {@code TEST-*.xml} files Gradle writes for each test class are merged into a single suite named after the
+ * directory they are in, and every other report becomes a suite named after its file.
+ *
+ * <p>Reports are streamed one at a time, so memory use doesn't depend on the size or number of reports. Each report
+ * is read twice: once for the totals of its suite, which come before the test cases, and once to copy its test cases.
+ * Suite-level {@code properties}, {@code system-out} and {@code system-err} are not copied. A suite is never split
+ * across files, so a file can exceed the size cap by the size of its last suite.
+ */
+final class ReportConsolidator implements Closeable {
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final String FILE_PREFIX = "junit-";
+
+    private final Path outputDir;
+    private final long maxFileBytes;
+    private final boolean gzip;
+
+    private int fileNumber = 0;
+    /** Counts the bytes written to the file, after compression, as of the last flush. */
+    private CountingOutputStream counter;
+    private OutputStream output;
+    private XMLStreamWriter xml;
+
+    private ReportConsolidator(Path outputDir, long maxFileBytes, boolean gzip) {
+        this.outputDir = outputDir;
+        this.maxFileBytes = maxFileBytes;
+        this.gzip = gzip;
+    }
+
+    /** Replaces any previously consolidated files in {@code outputDir}, and returns the files written. */
+    static List<Path> consolidate(Path reportsDir, Path outputDir, long maxFileBytes, boolean gzip)
+            throws IOException {
+        Files.createDirectories(outputDir);
+        try (Stream<Path> previous = Files.list(outputDir)) {
+            for (Path file : previous.filter(ReportConsolidator::isConsolidatedFile).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+
+        List<Path> written = new ArrayList<>();
+        try (ReportConsolidator consolidator = new ReportConsolidator(outputDir, maxFileBytes, gzip)) {
+            for (Map.Entry<String, List<Path>> suite : findSuites(reportsDir, outputDir).entrySet()) {
+                consolidator.writeSuite(suite.getKey(), suite.getValue()).ifPresent(written::add);
+            }
+            consolidator.closeFile().ifPresent(written::add);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return written;
+    }
+
+    /** Map of suite name to the reports in it, sorted so that the output doesn't depend on file system order. */
+    private static Map<String, List<Path>> findSuites(Path reportsDir, Path outputDir) throws IOException {
+        Map<String, List<Path>> suites = new TreeMap<>();
+        if (!Files.isDirectory(reportsDir)) {
+            return suites;
+        }
+        try (Stream<Path> files = Files.walk(reportsDir)) {
+            files.filter(file -> !file.startsWith(outputDir))
+                    .filter(file -> file.getFileName().toString().endsWith(".xml"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .forEach(file -> {
+                        Path suite = file.getFileName().toString().startsWith("TEST-")
+                                ? reportsDir.relativize(file.getParent())
+                                : reportsDir.relativize(file);
+                        String name = suite.toString().replace(suite.getFileSystem().getSeparator(), "/");
+                        suites.computeIfAbsent(name, key -> new ArrayList<>()).add(file);
+                    });
+        }
+        return suites;
+    }
+
+    private static boolean isConsolidatedFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(FILE_PREFIX) && (name.endsWith(".xml") || name.endsWith(".xml.gz"));
+    }
+
+    /** Writes a suite to the current file, and returns the file if this suite filled it up. */
+    private Optional<Path> writeSuite(String name, List<Path> reports)
+            throws IOException, XMLStreamException {
+        SuiteTotals totals = new SuiteTotals();
+        for (Path report : reports) {
+            totals.add(report);
+        }
+
+        if (xml == null) {
+            openFile();
+        }
+        xml.writeStartElement("testsuite");
+        xml.writeAttribute("errors", Long.toString(totals.errors));
+        xml.writeAttribute("failures", Long.toString(totals.failures));
+        xml.writeAttribute("name", name);
+        xml.writeAttribute("skipped", Long.toString(totals.skipped));
+        xml.writeAttribute("tests", Long.toString(totals.tests));
+        xml.writeAttribute("time", String.format(Locale.ROOT, "%.03f", totals.time));
+        xml.writeCharacters("\n");
+        for (Path report : reports) {
+            copyTestCases(report);
+        }
+        xml.writeEndElement();
+        xml.writeCharacters("\n");
+        xml.flush();
+        // Compresses everything written so far, so that it is counted
+        output.flush();
+
+        if (counter.getCount() >= maxFileBytes) {
+            return closeFile();
+        }
+        return Optional.empty();
+    }
+
+    private void copyTestCases(Path report) throws IOException, XMLStreamException {
+        try (InputStream input = XmlUtils.newInputStream(report)) {
+            XMLStreamReader reader = XmlUtils.createReader(input);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && reader.getLocalName().equals("testcase")) {
+                        copyElement(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /** Copies the element the reader is on, including everything inside it, and leaves the reader on its end. */
+    private void copyElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        do {
+            switch (reader.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    xml.writeStartElement(reader.getLocalName());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        xml.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    xml.writeEndElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    xml.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    xml.writeCData(reader.getText());
+                    break;
+                default:
+                    // Comments and processing instructions aren't needed in the merged report
+                    break;
+            }
+        } while (depth > 0 && reader.hasNext() && reader.next() != XMLStreamConstants.END_DOCUMENT);
+        xml.writeCharacters("\n");
+    }
+
+    private void openFile() throws IOException, XMLStreamException {
+        fileNumber++;
+        Path file = outputDir.resolve(FILE_PREFIX + fileNumber + (gzip ? ".xml.gz" : ".xml"));
+        counter = new CountingOutputStream(Files.newOutputStream(file));
+        output = counter;
+        output = new BufferedOutputStream(gzip ? new GZIPOutputStream(counter, 8 * 1024, true) : counter, 64 * 1024);
+        xml = OUTPUT_FACTORY.createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+        xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        xml.writeCharacters("\n");
+        xml.writeStartElement("testsuites");
+        xml.writeCharacters("\n");
+    }
+
+    private Optional<Path> closeFile() throws IOException, XMLStreamException {
+        if (xml == null) {
+            return Optional.empty();
+        }
+        xml.writeEndElement();
+        xml.writeCharacters("\n");
+        xml.writeEndDocument();
+        xml.close();
+        // XMLStreamWriter.close doesn't close the underlying stream
+        output.close();
+        output = null;
+        xml = null;
+        return Optional.of(outputDir.resolve(FILE_PREFIX + fileNumber + (gzip ? ".xml.gz" : ".xml")));
+    }
+
+    /** Closes the current file, if writing it failed part of the way through, without completing it. */
+    @Override
+    public void close() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+            xml = null;
+        }
+    }
+
+    /** Totals of the suites in a set of reports, read from their {@code testsuite} elements. */
+    private static final class SuiteTotals {
+        private long tests;
+        private long failures;
+        private long errors;
+        private long skipped;
+        private double time;
+
+        void add(Path report) throws IOException, XMLStreamException {
+            try (InputStream input = XmlUtils.newInputStream(report)) {
+                XMLStreamReader reader = XmlUtils.createReader(input);
+                try {
+                    while (reader.hasNext()) {
+                        if (reader.next() == XMLStreamConstants.START_ELEMENT
+                                && reader.getLocalName().equals("testsuite")) {
+                            tests += parseLong(reader.getAttributeValue(null, "tests"));
+                            failures += parseLong(reader.getAttributeValue(null, "failures"));
+                            errors += parseLong(reader.getAttributeValue(null, "errors"));
+                            skipped += parseLong(reader.getAttributeValue(null, "skipped"));
+                            time += parseDouble(reader.getAttributeValue(null, "time"));
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+
+        private static long parseLong(String value) {
+            return value == null || value.isEmpty() ? 0 : Long.parseLong(value.trim());
+        }
+
+        private static double parseDouble(String value) {
+            return value == null || value.isEmpty() ? 0 : Double.parseDouble(value.trim().replace(",", ""));
+        }
+    }
+}
@@ -16,14 +16,20 @@
 package com.palantir.gradle.junit;
 
 import java.util.List;
+import javax.xml.stream.XMLStreamReader;
 import org.gradle.api.Task;
 import org.gradle.api.reporting.ReportContainer;
 import org.gradle.api.reporting.Reporting;
 import org.gradle.api.reporting.SingleFileReport;
-import org.xml.sax.helpers.DefaultHandler;
 
-abstract class ReportHandler<T extends Task & Reporting<? extends ReportContainer<SingleFileReport>>>
-        extends DefaultHandler {
+abstract class ReportHandler<T extends Task & Reporting<? extends ReportContainer<SingleFileReport>>> {
     public abstract void configureTask(T task);
+
+    /**
+     * Called by {@link XmlUtils#parseXml} for every element in the report, with {@code reader} positioned on the
+     * element's start tag.
+     */
+    public abstract void startElement(XMLStreamReader reader);
+
     public abstract List<Failure> failures();
 }
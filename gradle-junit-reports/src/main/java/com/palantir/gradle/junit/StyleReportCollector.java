@@ -0,0 +1,179 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import org.gradle.api.Task;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.file.Directory;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskState;
+
+/**
+ * Converts the failures of style tasks such as checkstyle and javac into JUnit reports as those tasks finish, without
+ * adding any tasks to the build. Reports are parsed and written on a single background thread, off the build's
+ * worker threads; {@link #awaitCompletion} waits for them to be written when the build finishes.
+ */
+public final class StyleReportCollector implements TaskExecutionListener {
+
+    private static final int MAX_GROUPED_LOCATIONS = 20;
+
+    private final TaskTimer taskTimer;
+    private final Supplier<Boolean> groupFailures;
+    private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+    private final Map<String, Integer> failureCounts = new ConcurrentHashMap<>();
+    private final Queue<RuntimeException> writeFailures = new ConcurrentLinkedQueue<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("junit-reports-writer")
+            .setDaemon(true)
+            .build());
+
+    /** {@code taskTimer} must be notified of each task finishing before this collector. */
+    public StyleReportCollector(TaskTimer taskTimer) {
+        this(taskTimer, () -> false);
+    }
+
+    /**
+     * Like {@link #StyleReportCollector(TaskTimer)}, but writing reports with one test case per source rule and class
+     * when {@code groupFailures} is true. The full details of every failure are then written to a compressed side file
+     * next to the report.
+     */
+    public StyleReportCollector(TaskTimer taskTimer, Supplier<Boolean> groupFailures) {
+        this.taskTimer = taskTimer;
+        this.groupFailures = groupFailures;
+    }
+
+    /** Writes a report for {@code task} into {@code reportDir} whenever it runs. */
+    void register(Task task, FailuresSupplier failuresSupplier, Provider<Directory> reportDir) {
+        // Only the first registration counts, in case the plugin is applied to the root project and subprojects
+        registrations.putIfAbsent(task.getPath(), new Registration(failuresSupplier, reportDir));
+    }
+
+    @Override
+    public void beforeExecute(Task task) { }
+
+    @Override
+    public void afterExecute(Task task, TaskState state) {
+        Registration registration = registrations.get(task.getPath());
+        if (registration == null || !task.getDidWork()) {
+            return;
+        }
+
+        // Everything that touches the task or the project is read here, on the thread that ran the task
+        File rootDir = task.getProject().getRootProject().getProjectDir();
+        String taskPath = task.getPath();
+        String projectName = task.getProject().getName();
+        String taskName = task.getName();
+        long taskTimeNanos = taskTimer.getTaskTimeNanos(task);
+        Path reportDir = registration.reportDir.get().getAsFile().toPath();
+        Path targetFile = reportDir.resolve(projectName + "-" + taskName + ".xml");
+        Path fullReportFile = reportDir.resolve(projectName + "-" + taskName + "-failures.txt.gz");
+        boolean group = groupFailures.get();
+
+        writer.execute(() -> {
+            try {
+                List<Failure> failures = registration.failuresSupplier.getFailures();
+                failureCounts.put(taskPath, failures.size());
+                Files.deleteIfExists(fullReportFile);
+                Report report;
+                if (group) {
+                    report = FailuresReportGenerator.groupedFailuresReport(
+                            rootDir, projectName, taskName, taskTimeNanos, failures, MAX_GROUPED_LOCATIONS,
+                            fullReportFile.getFileName().toString());
+                    if (report.testCases().size() < failures.size()) {
+                        writeFullReport(rootDir, failures, fullReportFile);
+                    }
+                } else {
+                    report = FailuresReportGenerator.failuresReport(
+                            rootDir, projectName, taskName, taskTimeNanos, failures);
+                }
+                JunitReportCreator.writeReport(report, targetFile);
+            } catch (IOException | RuntimeException e) {
+                RuntimeException failure = e instanceof RuntimeException
+                        ? (RuntimeException) e
+                        : new RuntimeException("Failed to write " + targetFile, e);
+                try {
+                    writeFailures.add(registration.failuresSupplier.handleInternalFailure(reportDir, failure));
+                } catch (RuntimeException x) {
+                    failure.addSuppressed(x);
+                    writeFailures.add(failure);
+                }
+            }
+        });
+    }
+
+    private static void writeFullReport(File rootDir, List<Failure> failures, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try (Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(target), 64 * 1024), StandardCharsets.UTF_8)) {
+            FailuresReportGenerator.writeFailures(rootDir, failures, writer);
+        }
+    }
+
+    /** Waits for every pending report to be written, and rethrows any failure to write one. */
+    public void awaitCompletion() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.MINUTES)) {
+                throw new RuntimeException("Timed out waiting for junit reports to be written");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for junit reports to be written", e);
+        }
+
+        List<RuntimeException> allFailures = new ArrayList<>(writeFailures);
+        if (!allFailures.isEmpty()) {
+            RuntimeException first = allFailures.get(0);
+            allFailures.subList(1, allFailures.size()).forEach(first::addSuppressed);
+            throw first;
+        }
+    }
+
+    /** Map of task path to the number of failures reported, for every report written so far. */
+    public Map<String, Integer> getFailureCounts() {
+        return Collections.unmodifiableMap(failureCounts);
+    }
+
+    private static final class Registration {
+        private final FailuresSupplier failuresSupplier;
+        private final Provider<Directory> reportDir;
+
+        Registration(FailuresSupplier failuresSupplier, Provider<Directory> reportDir) {
+            this.failuresSupplier = failuresSupplier;
+            this.reportDir = reportDir;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import javax.annotation.Nullable;
+import org.inferred.freebuilder.FreeBuilder;
+
+/** When, where and with what outcome a single task ran. */
+@FreeBuilder
+interface TaskExecution {
+
+    String path();
+    String projectPath();
+    long threadId();
+    String threadName();
+    /** {@link System#nanoTime()} when the task started. */
+    long startTimeNanos();
+    /** {@link System#nanoTime()} when the task finished. */
+    long endTimeNanos();
+    /** One of {@code EXECUTED}, {@code FAILED}, {@code UP-TO-DATE}, {@code FROM-CACHE}, {@code NO-SOURCE}, etc. */
+    String outcome();
+    @Nullable TaskResourceUsage resourceUsage();
+
+    default long elapsedTimeNanos() {
+        return endTimeNanos() - startTimeNanos();
+    }
+
+    Builder toBuilder();
+    class Builder extends TaskExecution_Builder { }
+}
@@ -0,0 +1,128 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.TaskState;
+
+/**
+ * Records a {@link TaskExecution} for every task in the build. Gradle notifies listeners on the worker thread that runs
+ * the task, so the thread recorded is the one the task actually ran on. It is also the build's {@link TaskTimer}, so
+ * that each task is only timed once.
+ */
+public final class TaskExecutionRecorder implements TaskTimer {
+
+    private final LongSupplier nanoClock;
+    private final long buildStartTimeNanos;
+    private final Map<String, RunningTask> runningTasks = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<TaskExecution> executions = new ConcurrentLinkedQueue<>();
+    private final Map<String, TaskExecution> executionsByTaskPath = new ConcurrentHashMap<>();
+
+    public TaskExecutionRecorder() {
+        this(System::nanoTime);
+    }
+
+    TaskExecutionRecorder(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.buildStartTimeNanos = nanoClock.getAsLong();
+    }
+
+    @Override
+    public void beforeExecute(Task task) {
+        Thread thread = Thread.currentThread();
+        TaskExecution.Builder execution = new TaskExecution.Builder()
+                .path(task.getPath())
+                .projectPath(task.getProject().getPath())
+                .threadId(thread.getId())
+                .threadName(thread.getName());
+        TaskResourceUsage.Snapshot snapshot = TaskResourceUsage.Snapshot.take();
+        runningTasks.put(task.getPath(), new RunningTask(execution.startTimeNanos(nanoClock.getAsLong()), snapshot));
+    }
+
+    @Override
+    public void afterExecute(Task task, TaskState state) {
+        long endTimeNanos = nanoClock.getAsLong();
+        RunningTask running = runningTasks.remove(task.getPath());
+        if (running != null) {
+            TaskExecution execution = running.execution
+                    .endTimeNanos(endTimeNanos)
+                    .outcome(outcome(state))
+                    .resourceUsage(running.snapshot.usageUntilNow())
+                    .build();
+            executionsByTaskPath.put(task.getPath(), execution);
+            executions.add(execution);
+        }
+    }
+
+    @Override
+    public long getTaskTimeNanos(Task task) {
+        TaskExecution execution = executionsByTaskPath.get(task.getPath());
+        if (execution == null) {
+            throw new IllegalArgumentException("no time available for task");
+        }
+        return execution.endTimeNanos() - execution.startTimeNanos();
+    }
+
+    public long getBuildStartTimeNanos() {
+        return buildStartTimeNanos;
+    }
+
+    /** Every task that has finished so far, in the order they started. */
+    public List<TaskExecution> getExecutions() {
+        List<TaskExecution> result = new ArrayList<>(executions);
+        result.sort(Comparator.comparingLong(TaskExecution::startTimeNanos));
+        return result;
+    }
+
+    /** Map of task path to the resources used by that task, for every task that has finished so far. */
+    public Map<String, TaskResourceUsage> getResourceUsageByTaskPath() {
+        Map<String, TaskResourceUsage> result = new HashMap<>();
+        executionsByTaskPath.values().stream()
+                .filter(execution -> execution.resourceUsage() != null)
+                .forEach(execution -> result.put(execution.path(), execution.resourceUsage()));
+        return result;
+    }
+
+    private static String outcome(TaskState state) {
+        if (state.getFailure() != null) {
+            return "FAILED";
+        } else if (state.getSkipMessage() != null) {
+            return state.getSkipMessage();
+        } else if (state.getDidWork()) {
+            return "EXECUTED";
+        } else {
+            return "UP-TO-DATE";
+        }
+    }
+
+    private static final class RunningTask {
+        private final TaskExecution.Builder execution;
+        private final TaskResourceUsage.Snapshot snapshot;
+
+        RunningTask(TaskExecution.Builder execution, TaskResourceUsage.Snapshot snapshot) {
+            this.execution = execution;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import com.google.common.collect.ImmutableMap;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.inferred.freebuilder.FreeBuilder;
+
+/**
+ * Resources the Gradle daemon used while a task ran.
+ *
+ * <p>CPU time and allocated bytes are those of the worker thread that ran the task, so work the task hands off to
+ * other threads or worker processes is not counted. GC count, GC time and peak heap are daemon-wide, so they include
+ * the effect of any tasks running at the same time.
+ */
+@FreeBuilder
+interface TaskResourceUsage {
+
+    /** CPU time of the worker thread, or -1 if the JVM can't measure it. */
+    long cpuTimeNanos();
+    /** Bytes allocated by the worker thread, or -1 if the JVM can't measure it. */
+    long allocatedBytes();
+    long gcCount();
+    long gcTimeMillis();
+    /** The peak heap usage of the daemon while the task ran, as tracked by {@link HeapPeakTracker}. */
+    long peakHeapBytes();
+
+    default Map<String, String> asProperties() {
+        long cpuTimeMillis = cpuTimeNanos() < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(cpuTimeNanos());
+        return ImmutableMap.<String, String>builder()
+                .put("cpuTimeMillis", Long.toString(cpuTimeMillis))
+                .put("allocatedBytes", Long.toString(allocatedBytes()))
+                .put("gcCount", Long.toString(gcCount()))
+                .put("gcTimeMillis", Long.toString(gcTimeMillis()))
+                .put("peakHeapBytes", Long.toString(peakHeapBytes()))
+                .build();
+    }
+
+    Builder toBuilder();
+    class Builder extends TaskResourceUsage_Builder { }
+
+    /** Counters of the current thread and the daemon at a point in time. */
+    final class Snapshot {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final List<GarbageCollectorMXBean> COLLECTORS =
+                ManagementFactory.getGarbageCollectorMXBeans();
+
+        private final long threadId;
+        private final long cpuTimeNanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcTimeMillis;
+        /** Null for the snapshot at the end of an interval. */
+        private final HeapPeakTracker heapPeakTracker;
+
+        private Snapshot(
+                long threadId,
+                long cpuTimeNanos,
+                long allocatedBytes,
+                long gcCount,
+                long gcTimeMillis,
+                HeapPeakTracker heapPeakTracker) {
+            this.threadId = threadId;
+            this.cpuTimeNanos = cpuTimeNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+            this.heapPeakTracker = heapPeakTracker;
+        }
+
+        /** Takes a snapshot, and starts tracking the peak heap usage until {@link #usageUntilNow}. */
+        static Snapshot take() {
+            return take(HeapPeakTracker.start());
+        }
+
+        private static Snapshot take(HeapPeakTracker heapPeakTracker) {
+            long threadId = Thread.currentThread().getId();
+            long gcCount = 0;
+            long gcTimeMillis = 0;
+            for (GarbageCollectorMXBean collector : COLLECTORS) {
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcTimeMillis += Math.max(0, collector.getCollectionTime());
+            }
+            return new Snapshot(
+                    threadId, threadCpuTime(), threadAllocatedBytes(threadId), gcCount, gcTimeMillis, heapPeakTracker);
+        }
+
+        /** The usage between this snapshot and now, which must be taken on the same thread, and only once. */
+        TaskResourceUsage usageUntilNow() {
+            long peakHeapBytes = heapPeakTracker.stop();
+            Snapshot end = take(null);
+            boolean sameThread = end.threadId == threadId;
+            return new TaskResourceUsage.Builder()
+                    .cpuTimeNanos(sameThread ? difference(cpuTimeNanos, end.cpuTimeNanos) : -1)
+                    .allocatedBytes(sameThread ? difference(allocatedBytes, end.allocatedBytes) : -1)
+                    .gcCount(end.gcCount - gcCount)
+                    .gcTimeMillis(end.gcTimeMillis - gcTimeMillis)
+                    .peakHeapBytes(peakHeapBytes)
+                    .build();
+        }
+
+        private static long difference(long start, long end) {
+            return start < 0 || end < 0 ? -1 : end - start;
+        }
+
+        private static long threadCpuTime() {
+            if (!THREADS.isCurrentThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled()) {
+                return -1;
+            }
+            return THREADS.getCurrentThreadCpuTime();
+        }
+
+        private static long threadAllocatedBytes(long threadId) {
+            if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+                return -1;
+            }
+            return threads.getThreadAllocatedBytes(threadId);
+        }
+    }
+}
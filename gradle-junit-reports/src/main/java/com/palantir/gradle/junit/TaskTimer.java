@@ -20,5 +20,5 @@ import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionListener;
 
 public interface TaskTimer extends TaskExecutionListener {
-    long getTaskTimeNanos(Task styleTask);
+    long getTaskTimeNanos(Task task);
 }
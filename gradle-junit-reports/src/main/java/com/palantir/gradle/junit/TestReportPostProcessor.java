@@ -0,0 +1,291 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Copies the JUnit XML reports Gradle writes for a {@code Test} task into the reports directory, capping the
+ * {@code system-out} and {@code system-err} of each test case and each suite, and adding any extra properties of each
+ * suite to its {@code <properties>}. Capped output keeps its first and last
+ * halves, and the full output is written to a side file in an {@code output} directory next to the report, so that
+ * neither writing nor parsing the reports needs to hold all of a chatty test's output.
+ *
+ * <p>Reports are streamed, and the output of a single element is never held in memory beyond its cap.
+ */
+final class TestReportPostProcessor {
+
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final String OUTPUT_DIR = "output";
+
+    private final int maxTestOutputChars;
+    private final int maxSuiteOutputChars;
+    private final Map<String, Map<String, String>> suiteProperties;
+
+    TestReportPostProcessor(int maxTestOutputChars, int maxSuiteOutputChars) {
+        this(maxTestOutputChars, maxSuiteOutputChars, Collections.emptyMap());
+    }
+
+    /** @param suiteProperties map of suite name, which is the test class name, to properties to add to it */
+    TestReportPostProcessor(
+            int maxTestOutputChars, int maxSuiteOutputChars, Map<String, Map<String, String>> suiteProperties) {
+        this.maxTestOutputChars = maxTestOutputChars;
+        this.maxSuiteOutputChars = maxSuiteOutputChars;
+        this.suiteProperties = suiteProperties;
+    }
+
+    /** Replaces the reports in {@code targetDir} with processed copies of those in {@code rawDir}. */
+    void process(Path rawDir, Path targetDir) throws IOException {
+        Files.createDirectories(targetDir);
+        // Gradle clears out its own reports directory the same way, so that results of deleted tests don't linger
+        for (Path stale : list(targetDir)) {
+            Files.delete(stale);
+        }
+        Path outputDir = targetDir.resolve(OUTPUT_DIR);
+        if (Files.isDirectory(outputDir)) {
+            for (Path stale : listAll(outputDir)) {
+                Files.delete(stale);
+            }
+        }
+
+        for (Path report : list(rawDir)) {
+            try {
+                process(report, targetDir.resolve(report.getFileName()), outputDir);
+            } catch (XMLStreamException e) {
+                throw new IOException("Failed to process " + report, e);
+            }
+        }
+    }
+
+    private void process(Path source, Path target, Path outputDir) throws IOException, XMLStreamException {
+        String baseName = source.getFileName().toString().replaceAll("\\.xml$", "");
+        int outputNumber = 0;
+        String suiteName = null;
+        Deque<String> elements = new ArrayDeque<>();
+        try (InputStream input = XmlUtils.newInputStream(source);
+                OutputStream output = new BufferedOutputStream(Files.newOutputStream(target), 64 * 1024)) {
+            XMLStreamReader reader = XmlUtils.createReader(input);
+            XMLStreamWriter xml = OUTPUT_FACTORY.createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+            try {
+                xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            String name = reader.getLocalName();
+                            boolean inTestCase = "testcase".equals(elements.peek());
+                            xml.writeStartElement(name);
+                            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                                xml.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                            }
+                            if (name.equals("testsuite") && elements.isEmpty()) {
+                                suiteName = reader.getAttributeValue(null, "name");
+                            }
+                            if (name.equals("properties") && "testsuite".equals(elements.peek())) {
+                                writeProperties(xml, suiteProperties.getOrDefault(suiteName, Collections.emptyMap()));
+                            }
+                            if (name.equals("system-out") || name.equals("system-err")) {
+                                outputNumber++;
+                                int maxChars = inTestCase ? maxTestOutputChars : maxSuiteOutputChars;
+                                Path sideFile = outputDir.resolve(baseName + "-" + outputNumber + "-" + name + ".txt");
+                                copyOutput(reader, xml, maxChars, sideFile);
+                                // copyOutput consumed the end of the element
+                                xml.writeEndElement();
+                            } else {
+                                elements.push(name);
+                            }
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            elements.pop();
+                            xml.writeEndElement();
+                            break;
+                        case XMLStreamConstants.CHARACTERS:
+                        case XMLStreamConstants.SPACE:
+                        case XMLStreamConstants.CDATA:
+                            writeText(reader, xml);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                xml.writeEndDocument();
+                xml.flush();
+            } finally {
+                xml.close();
+                reader.close();
+            }
+        }
+    }
+
+    private static void writeProperties(XMLStreamWriter xml, Map<String, String> properties)
+            throws XMLStreamException {
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            xml.writeEmptyElement("property");
+            xml.writeAttribute("name", property.getKey());
+            xml.writeAttribute("value", property.getValue());
+        }
+    }
+
+    private static boolean isText(int event) {
+        return event == XMLStreamConstants.CHARACTERS
+                || event == XMLStreamConstants.CDATA
+                || event == XMLStreamConstants.SPACE;
+    }
+
+    private static void writeText(XMLStreamReader reader, XMLStreamWriter xml) throws XMLStreamException {
+        xml.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+    }
+
+    /**
+     * Copies the text of the output element the reader is on, keeping at most {@code maxChars} of it, and leaves the
+     * reader on its end.
+     */
+    private static void copyOutput(XMLStreamReader reader, XMLStreamWriter xml, int maxChars, Path sideFile)
+            throws IOException, XMLStreamException {
+        if (maxChars == Integer.MAX_VALUE) {
+            while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+                if (isText(reader.getEventType())) {
+                    writeText(reader, xml);
+                }
+            }
+            return;
+        }
+
+        CappedText text = new CappedText(maxChars, sideFile);
+        try {
+            while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+                if (isText(reader.getEventType())) {
+                    text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            }
+        } finally {
+            text.close();
+        }
+        text.writeTo(xml);
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return Collections.emptyList();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".xml"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Path> listAll(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Keeps the first and last {@code maxChars / 2} characters of some text. Once the text exceeds {@code maxChars},
+     * all of it is written to a side file as it arrives.
+     */
+    private static final class CappedText {
+        private final int maxChars;
+        private final Path sideFile;
+        private final StringBuilder head;
+        private final int tailCapacity;
+        /** Grows up to {@link #tailCapacity}, and is only used as a ring buffer once full. */
+        private char[] tail;
+        private int tailStart = 0;
+        private int tailLength = 0;
+        private long totalChars = 0;
+        private Writer spill;
+
+        CappedText(int maxChars, Path sideFile) {
+            this.maxChars = maxChars;
+            this.sideFile = sideFile;
+            this.head = new StringBuilder(Math.min(maxChars / 2, 8192));
+            this.tailCapacity = maxChars - maxChars / 2;
+            this.tail = new char[Math.min(tailCapacity, 8192)];
+        }
+
+        void append(char[] chars, int start, int length) throws IOException {
+            if (spill == null && totalChars + length > maxChars) {
+                Files.createDirectories(sideFile.getParent());
+                spill = Files.newBufferedWriter(sideFile, StandardCharsets.UTF_8);
+                spill.append(head);
+                for (int i = 0; i < tailLength; i++) {
+                    spill.write(tail[(tailStart + i) % tail.length]);
+                }
+            }
+            if (spill != null) {
+                spill.write(chars, start, length);
+            }
+            totalChars += length;
+
+            int headRoom = maxChars / 2 - head.length();
+            int toHead = Math.max(0, Math.min(headRoom, length));
+            head.append(chars, start, toHead);
+            for (int i = start + toHead; i < start + length && tailCapacity > 0; i++) {
+                if (tailLength < tailCapacity) {
+                    if (tailLength == tail.length) {
+                        tail = Arrays.copyOf(tail, Math.min(tailCapacity, tail.length * 2));
+                    }
+                    tail[tailLength++] = chars[i];
+                } else {
+                    tail[tailStart] = chars[i];
+                    tailStart = (tailStart + 1) % tail.length;
+                }
+            }
+        }
+
+        void close() throws IOException {
+            if (spill != null) {
+                spill.close();
+            }
+        }
+
+        void writeTo(XMLStreamWriter xml) throws XMLStreamException {
+            xml.writeCharacters(head.toString());
+            if (spill != null) {
+                long truncated = totalChars - head.length() - tailLength;
+                xml.writeCharacters("\n[... " + truncated + " characters truncated; the full output is in "
+                        + OUTPUT_DIR + "/" + sideFile.getFileName() + " ...]\n");
+            }
+            char[] ordered = new char[tailLength];
+            for (int i = 0; i < tailLength; i++) {
+                ordered[i] = tail[(tailStart + i) % tail.length];
+            }
+            xml.writeCharacters(ordered, 0, ordered.length);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+/**
+ * A JUnit Platform listener that measures the resources each test class used, the same way
+ * {@link TaskResourceUsage} does for tasks, and writes them to a new file in the directory given by the
+ * {@value TestResourceProfiles#OUTPUT_DIR_PROPERTY} system property once all tests have run.
+ * {@link TestResourceProfiles} reads them back.
+ *
+ * <p>This class runs in the test JVM, where it, its nested classes and {@link HeapPeakTracker} are the only classes of
+ * this project, so it may only depend on the JDK and the JUnit Platform launcher API. Any other class it uses must be
+ * listed in {@link TestResourceProfiles#writeListenerJar}. It does nothing unless the system property is set.
+ */
+public final class TestResourceProfileListener implements TestExecutionListener {
+
+    private final Optional<Path> outputDir;
+    private final Map<String, Snapshot> started = new ConcurrentHashMap<>();
+    private final Map<String, String> lines = new ConcurrentHashMap<>();
+
+    public TestResourceProfileListener() {
+        // A compile-time constant, so TestResourceProfiles itself isn't needed
+        this.outputDir = Optional.ofNullable(System.getProperty(TestResourceProfiles.OUTPUT_DIR_PROPERTY))
+                .map(Paths::get);
+    }
+
+    @Override
+    public void executionStarted(TestIdentifier testIdentifier) {
+        if (outputDir.isPresent() && isTestClass(testIdentifier)) {
+            started.put(testIdentifier.getUniqueId(), Snapshot.take());
+        }
+    }
+
+    @Override
+    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+        Snapshot start = outputDir.isPresent() ? started.remove(testIdentifier.getUniqueId()) : null;
+        if (start == null) {
+            return;
+        }
+        String className = ((ClassSource) testIdentifier.getSource().get()).getClassName();
+        lines.put(testIdentifier.getUniqueId(), className + " " + start.usageUntilNow());
+    }
+
+    @Override
+    public void testPlanExecutionFinished(TestPlan testPlan) {
+        if (!outputDir.isPresent() || lines.isEmpty()) {
+            return;
+        }
+        Path output = outputDir.get().resolve("profile-" + UUID.randomUUID() + ".txt");
+        try {
+            Files.createDirectories(outputDir.get());
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                writer.write(lines.values().stream().sorted().collect(Collectors.joining("\n", "", "\n")));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write test resource profile to " + output, e);
+        }
+        lines.clear();
+    }
+
+    private static boolean isTestClass(TestIdentifier testIdentifier) {
+        return testIdentifier.getSource().filter(source -> source instanceof ClassSource).isPresent();
+    }
+
+    /** Counters of the current thread and the JVM at a point in time. */
+    private static final class Snapshot {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final List<GarbageCollectorMXBean> COLLECTORS =
+                ManagementFactory.getGarbageCollectorMXBeans();
+
+        private final long threadId;
+        private final long cpuTimeNanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcTimeMillis;
+        private final HeapPeakTracker heapPeakTracker;
+
+        private Snapshot(
+                long threadId,
+                long cpuTimeNanos,
+                long allocatedBytes,
+                long gcCount,
+                long gcTimeMillis,
+                HeapPeakTracker heapPeakTracker) {
+            this.threadId = threadId;
+            this.cpuTimeNanos = cpuTimeNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+            this.heapPeakTracker = heapPeakTracker;
+        }
+
+        /** Takes a snapshot, and starts tracking the peak heap usage until {@link #usageUntilNow}. */
+        static Snapshot take() {
+            return take(HeapPeakTracker.start());
+        }
+
+        private static Snapshot take(HeapPeakTracker heapPeakTracker) {
+            long threadId = Thread.currentThread().getId();
+            long gcCount = 0;
+            long gcTimeMillis = 0;
+            for (GarbageCollectorMXBean collector : COLLECTORS) {
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcTimeMillis += Math.max(0, collector.getCollectionTime());
+            }
+            return new Snapshot(
+                    threadId, threadCpuTime(), threadAllocatedBytes(threadId), gcCount, gcTimeMillis, heapPeakTracker);
+        }
+
+        /**
+         * The usage between this snapshot and now, as {@code cpuTimeNanos allocatedBytes gcCount gcTimeMillis
+         * peakHeapBytes}, with -1 for anything that can't be measured.
+         */
+        String usageUntilNow() {
+            long peakHeapBytes = heapPeakTracker.stop();
+            Snapshot end = take(null);
+            boolean sameThread = end.threadId == threadId;
+            return (sameThread ? difference(cpuTimeNanos, end.cpuTimeNanos) : -1)
+                    + " " + (sameThread ? difference(allocatedBytes, end.allocatedBytes) : -1)
+                    + " " + (end.gcCount - gcCount)
+                    + " " + (end.gcTimeMillis - gcTimeMillis)
+                    + " " + peakHeapBytes;
+        }
+
+        private static long difference(long start, long end) {
+            return start < 0 || end < 0 ? -1 : end - start;
+        }
+
+        private static long threadCpuTime() {
+            if (!THREADS.isCurrentThreadCpuTimeSupported() || !THREADS.isThreadCpuTimeEnabled()) {
+                return -1;
+            }
+            return THREADS.getCurrentThreadCpuTime();
+        }
+
+        private static long threadAllocatedBytes(long threadId) {
+            if (!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+                return -1;
+            }
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+                return -1;
+            }
+            return threads.getThreadAllocatedBytes(threadId);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.reflect.TypeOf;
+import org.gradle.api.tasks.testing.Test;
+
+/**
+ * Registers {@link TestResourceProfileListener} in test JVMs, and reads the resources it found each test class used.
+ * The listener is never loaded outside test JVMs, as the JUnit Platform launcher API it implements isn't available.
+ */
+public final class TestResourceProfiles {
+
+    /** The system property that tells the listener where to write its profiles. */
+    public static final String OUTPUT_DIR_PROPERTY = "com.palantir.junit.resourceProfileDir";
+
+    /** The property of each {@code Test} task that says whether its test classes are profiled. */
+    public static final String TASK_PROPERTY = "profileTestClasses";
+
+    private static final String LISTENER = "com.palantir.gradle.junit.TestResourceProfileListener";
+    private static final List<String> LISTENER_CLASSES = ImmutableList.of(
+            LISTENER, LISTENER + "$Snapshot", HeapPeakTracker.class.getName());
+    private static final String SERVICE_FILE = "META-INF/services/org.junit.platform.launcher.TestExecutionListener";
+    private static final Splitter SPACE = Splitter.on(' ').omitEmptyStrings();
+
+    private TestResourceProfiles() {}
+
+    /**
+     * Adds a {@value #TASK_PROPERTY} property to {@code test}, which follows {@code enabled} unless it is set for that
+     * task. The JUnit reports plugin reads it to decide where the task writes its reports, before the task runs.
+     */
+    public static Property<Boolean> addTaskProperty(Test test, Provider<Boolean> enabled) {
+        Property<Boolean> property = test.getProject().getObjects().property(Boolean.class);
+        property.set(enabled);
+        test.getExtensions().add(new TypeOf<Property<Boolean>>() {}, TASK_PROPERTY, property);
+        return property;
+    }
+
+    /** Whether the test classes of {@code test} are profiled, which they never are without a task property. */
+    static boolean isEnabled(Test test) {
+        Object enabled = test.getExtensions().findByName(TASK_PROPERTY);
+        return enabled instanceof Provider && Boolean.TRUE.equals(((Provider<?>) enabled).getOrNull());
+    }
+
+    /** Where the listener writes the profiles of {@code test}'s test classes. */
+    public static File outputDir(Test test) {
+        return new File(test.getTemporaryDir(), "resource-profiles");
+    }
+
+    /**
+     * Writes a jar with just the listener, the classes it uses, and its registration as a JUnit Platform
+     * {@code TestExecutionListener}, to put on the test runtime classpath. An existing jar is only replaced if its
+     * contents would change, so that it doesn't look like a different jar to anything that compares classpaths.
+     */
+    public static void writeListenerJar(Path listenerJar) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (JarOutputStream jar = new JarOutputStream(bytes)) {
+                for (String className : LISTENER_CLASSES) {
+                    String resource = className.replace('.', '/') + ".class";
+                    jar.putNextEntry(entry(resource));
+                    try (InputStream in = TestResourceProfiles.class.getClassLoader().getResourceAsStream(resource)) {
+                        if (in == null) {
+                            throw new IOException("Unable to find " + resource);
+                        }
+                        ByteStreams.copy(in, jar);
+                    }
+                    jar.closeEntry();
+                }
+                jar.putNextEntry(entry(SERVICE_FILE));
+                jar.write((LISTENER + "\n").getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+            }
+            if (!Files.isRegularFile(listenerJar)
+                    || !Arrays.equals(Files.readAllBytes(listenerJar), bytes.toByteArray())) {
+                Files.write(listenerJar, bytes.toByteArray());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing " + listenerJar, e);
+        }
+    }
+
+    private static ZipEntry entry(String name) {
+        ZipEntry entry = new ZipEntry(name);
+        // A fixed time, so that the jar is the same every time it is written
+        entry.setTime(0);
+        return entry;
+    }
+
+    /**
+     * Map of test class name to the resources it used, according to the profiles in {@code dir}, which may not exist.
+     * The usage of a class that ran more than once, for example in several forks, is added up.
+     */
+    static SortedMap<String, TaskResourceUsage> read(Path dir) throws IOException {
+        SortedMap<String, TaskResourceUsage> profiles = new TreeMap<>();
+        if (!Files.isDirectory(dir)) {
+            return profiles;
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(".txt"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                List<String> fields = SPACE.splitToList(line);
+                if (fields.size() != 6) {
+                    continue;
+                }
+                TaskResourceUsage usage = new TaskResourceUsage.Builder()
+                        .cpuTimeNanos(Long.parseLong(fields.get(1)))
+                        .allocatedBytes(Long.parseLong(fields.get(2)))
+                        .gcCount(Long.parseLong(fields.get(3)))
+                        .gcTimeMillis(Long.parseLong(fields.get(4)))
+                        .peakHeapBytes(Long.parseLong(fields.get(5)))
+                        .build();
+                profiles.merge(fields.get(0), usage, TestResourceProfiles::add);
+            }
+        }
+        return profiles;
+    }
+
+    private static TaskResourceUsage add(TaskResourceUsage first, TaskResourceUsage second) {
+        return new TaskResourceUsage.Builder()
+                .cpuTimeNanos(sum(first.cpuTimeNanos(), second.cpuTimeNanos()))
+                .allocatedBytes(sum(first.allocatedBytes(), second.allocatedBytes()))
+                .gcCount(first.gcCount() + second.gcCount())
+                .gcTimeMillis(first.gcTimeMillis() + second.gcTimeMillis())
+                .peakHeapBytes(Math.max(first.peakHeapBytes(), second.peakHeapBytes()))
+                .build();
+    }
+
+    private static long sum(long first, long second) {
+        return first < 0 || second < 0 ? -1 : first + second;
+    }
+
+    /** The usage of each test class as the {@code <properties>} of its suite in the JUnit XML reports. */
+    static Map<String, Map<String, String>> asSuiteProperties(Map<String, TaskResourceUsage> profiles) {
+        Map<String, Map<String, String>> properties = new TreeMap<>();
+        profiles.forEach((className, usage) -> properties.put(className, usage.asProperties()));
+        return properties;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Writes task executions in the Chrome trace event format, which can be opened in {@code chrome://tracing} or
+ * <a href="https://ui.perfetto.dev">Perfetto</a>. Each worker thread is a lane and each task a complete ({@code X})
+ * event on it, timed relative to the start of the build.
+ */
+final class TraceEventWriter {
+
+    private TraceEventWriter() {}
+
+    static void writeTrace(List<TaskExecution> executions, long buildStartTimeNanos, Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            writeTrace(executions, buildStartTimeNanos, writer);
+        }
+    }
+
+    static void writeTrace(List<TaskExecution> executions, long buildStartTimeNanos, Writer writer)
+            throws IOException {
+        Map<Long, String> threadNames = new LinkedHashMap<>();
+        executions.forEach(execution -> threadNames.putIfAbsent(execution.threadId(), execution.threadName()));
+
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n");
+        writer.write("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":\"gradle\"}}");
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            writer.write(",\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + thread.getKey()
+                    + ",\"args\":{\"name\":" + quote(thread.getValue()) + "}}");
+        }
+        for (TaskExecution execution : executions) {
+            writer.write(",\n{\"name\":" + quote(execution.path())
+                    + ",\"cat\":" + quote(execution.outcome())
+                    + ",\"ph\":\"X\",\"pid\":1,\"tid\":" + execution.threadId()
+                    + ",\"ts\":" + micros(execution.startTimeNanos() - buildStartTimeNanos)
+                    + ",\"dur\":" + micros(execution.elapsedTimeNanos())
+                    + ",\"args\":{\"project\":" + quote(execution.projectPath())
+                    + ",\"outcome\":" + quote(execution.outcome())
+                    + resourceUsageArgs(execution.resourceUsage()) + "}}");
+        }
+        writer.write("\n]}\n");
+    }
+
+    private static String resourceUsageArgs(@Nullable TaskResourceUsage resourceUsage) {
+        if (resourceUsage == null) {
+            return "";
+        }
+        StringBuilder args = new StringBuilder();
+        resourceUsage.asProperties().forEach((name, value) ->
+                args.append(',').append(quote(name)).append(':').append(value));
+        return args.toString();
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        quoted.append(ch);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
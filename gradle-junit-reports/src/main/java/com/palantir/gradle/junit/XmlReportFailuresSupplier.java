@@ -16,7 +16,6 @@
 package com.palantir.gradle.junit;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -55,7 +54,7 @@ public final class XmlReportFailuresSupplier implements FailuresSupplier {
     @Override
     public List<Failure> getFailures() throws IOException {
         File sourceReport = reporting.getReports().findByName("xml").getDestination();
-        return XmlUtils.parseXml(reportHandler, new FileInputStream(sourceReport)).failures();
+        return XmlUtils.parseXml(reportHandler, sourceReport.toPath()).failures();
     }
 
     @Override
@@ -72,7 +71,7 @@ public final class XmlReportFailuresSupplier implements FailuresSupplier {
                         .renameTo(rawReportsDir.resolve(rawReport.getDestination().getName()).toFile());
             }
         }
-        return new RuntimeException(
-                "Finalizer failed; raw report files can be found at " + rawReportsDir.getFileName().toString(), ex);
+        return new RuntimeException("Failed to write junit report; raw report files can be found at "
+                + rawReportsDir.getFileName().toString(), ex);
     }
 }
@@ -15,42 +15,63 @@
  */
 package com.palantir.gradle.junit;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Writer;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParserFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 final class XmlUtils {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** Shared by all finalizers: creating a factory means a service lookup, which is expensive. */
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    public static <T extends ReportHandler<?>> T parseXml(T handler, Path report) throws IOException {
+        try (InputStream input = newInputStream(report)) {
+            return parseXml(handler, input);
+        }
+    }
+
+    /** Parses {@code report} without closing it. */
     public static <T extends ReportHandler<?>> T parseXml(T handler, InputStream report) throws IOException {
         try {
-            XMLReader xmlReader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
-            xmlReader.setContentHandler(handler);
-            xmlReader.parse(new InputSource(report));
+            XMLStreamReader reader = createReader(report);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        handler.startElement(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
             return handler;
-        } catch (SAXException | ParserConfigurationException e) {
+        } catch (XMLStreamException e) {
             throw new IOException(e);
         }
     }
 
-    public static Writer write(Writer writer, Document document) throws TransformerException {
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-        transformer.transform(new DOMSource(document), new StreamResult(writer));
-        return writer;
+    static InputStream newInputStream(Path report) throws IOException {
+        return new BufferedInputStream(
+                Channels.newInputStream(FileChannel.open(report, StandardOpenOption.READ)), BUFFER_SIZE);
+    }
+
+    static XMLStreamReader createReader(InputStream report) throws XMLStreamException {
+        return INPUT_FACTORY.createXMLStreamReader(report);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
     }
 
     private XmlUtils() { }
@@ -0,0 +1,73 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.gradle.BuildResult;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildFinishedActionTests {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void deletesJournalOnceReportIsWritten() throws IOException {
+        Path journalFile = folder.getRoot().toPath().resolve("build.journal");
+        Path reportFile = folder.getRoot().toPath().resolve("build.xml");
+        BuildJournal journal = new BuildJournal();
+        journal.open(journalFile);
+
+        action(reportFile, journal).execute(mock(BuildResult.class));
+
+        assertThat(reportFile).exists();
+        assertThat(journalFile).doesNotExist();
+    }
+
+    @Test
+    public void closesButKeepsJournalWhenReportCannotBeWritten() throws IOException {
+        Path journalFile = folder.getRoot().toPath().resolve("build.journal");
+        Path reportFile = folder.getRoot().toPath().resolve("build.xml");
+        Files.createDirectories(reportFile.resolve("in-the-way"));
+        BuildJournal journal = new BuildJournal();
+        journal.open(journalFile);
+
+        assertThatThrownBy(() -> action(reportFile, journal).execute(mock(BuildResult.class)))
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(BuildJournal.recover(journalFile)).isPresent();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BuildFinishedAction action(Path reportFile, BuildJournal journal) {
+        RegularFile regularFile = mock(RegularFile.class);
+        when(regularFile.getAsFile()).thenReturn(reportFile.toFile());
+        Provider<RegularFile> targetFile = mock(Provider.class);
+        when(targetFile.get()).thenReturn(regularFile);
+        return new BuildFinishedAction(
+                targetFile, new BuildFailureListener(journal), new TaskExecutionRecorder(), journal);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildJournalTests {
+
+    private static final Report.TestCase PASSED = new Report.TestCase.Builder()
+            .name(":foo:passed")
+            .putProperties("cpuTimeMillis", "12")
+            .build();
+    private static final Report.TestCase FAILED = new Report.TestCase.Builder()
+            .name(":foo:failed")
+            .failure(new Report.Failure.Builder().message("RuntimeException: boom").details("stack\ntrace").build())
+            .build();
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recoversJournaledTestCasesAndIgnoresTornRecord() throws IOException {
+        Path journalFile = folder.getRoot().toPath().resolve("gradle/build.journal");
+        BuildJournal journal = new BuildJournal();
+        journal.open(journalFile);
+        journal.append(PASSED);
+        journal.append(FAILED);
+        journal.flush();
+        // Simulate the daemon being killed part way through writing a record
+        Files.write(journalFile, new byte[] {0, 0, 1, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        Optional<Report> recovered = BuildJournal.recover(journalFile);
+
+        assertThat(recovered).isPresent();
+        assertThat(recovered.get().testCases()).hasSize(3);
+        assertThat(recovered.get().testCases().subList(0, 2)).containsExactly(PASSED, FAILED);
+        assertThat(recovered.get().testCases().get(2).failure().message()).isEqualTo("Build did not finish");
+        assertThat(journalFile).doesNotExist();
+    }
+
+    @Test
+    public void closingKeepsJournalUntilDeleted() throws IOException {
+        Path journalFile = folder.getRoot().toPath().resolve("build.journal");
+        BuildJournal journal = new BuildJournal();
+        journal.open(journalFile);
+        journal.append(PASSED);
+        journal.close();
+
+        assertThat(journalFile).exists();
+        journal.delete();
+        assertThat(journalFile).doesNotExist();
+        assertThat(BuildJournal.recover(journalFile)).isEmpty();
+    }
+
+    @Test
+    public void ignoresTestCasesUntilOpened() throws IOException {
+        Path journalFile = folder.getRoot().toPath().resolve("build.journal");
+        BuildJournal journal = new BuildJournal();
+        journal.append(PASSED);
+        journal.open(journalFile);
+        journal.append(FAILED);
+        journal.flush();
+
+        Optional<Report> recovered = BuildJournal.recover(journalFile);
+
+        assertThat(recovered).isPresent();
+        assertThat(recovered.get().testCases()).hasSize(2);
+        assertThat(recovered.get().testCases().get(0)).isEqualTo(FAILED);
+    }
+
+    @Test
+    public void ignoresTestCasesOnceClosed() throws IOException {
+        Path journalFile = folder.getRoot().toPath().resolve("build.journal");
+        BuildJournal journal = new BuildJournal();
+        journal.open(journalFile);
+        for (int i = 0; i < 1000; i++) {
+            journal.append(PASSED);
+        }
+        journal.close();
+        journal.append(FAILED);
+
+        Optional<Report> recovered = BuildJournal.recover(journalFile);
+        assertThat(recovered).isPresent();
+        assertThat(recovered.get().testCases()).hasSize(1001).doesNotContain(FAILED);
+    }
+}
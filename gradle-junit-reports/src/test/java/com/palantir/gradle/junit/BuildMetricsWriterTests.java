@@ -0,0 +1,107 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildMetricsWriterTests {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesPrometheusTextFormat() throws IOException {
+        TaskExecution compile = new TaskExecution.Builder()
+                .path(":foo:compileJava")
+                .projectPath(":foo")
+                .threadId(1)
+                .threadName("worker")
+                .startTimeNanos(0)
+                .endTimeNanos(TimeUnit.MILLISECONDS.toNanos(2500))
+                .outcome("EXECUTED")
+                .build();
+        TaskExecution cachedCompile = compile.toBuilder()
+                .path(":bar:compileJava")
+                .endTimeNanos(TimeUnit.MILLISECONDS.toNanos(50))
+                .outcome("FROM-CACHE")
+                .build();
+        TaskExecution checkstyle = compile.toBuilder()
+                .path(":foo:checkstyleMain")
+                .outcome("FAILED")
+                .build();
+        BuildMetrics metrics = new BuildMetrics.Builder()
+                .addExecutions(compile, cachedCompile, checkstyle)
+                .putTaskTypes(":foo:compileJava", "JavaCompile")
+                .putTaskTypes(":bar:compileJava", "JavaCompile")
+                .putTaskTypes(":foo:checkstyleMain", "Checkstyle")
+                .putCheckFailures(":foo:checkstyleMain", 3)
+                .configurationTimeNanos(TimeUnit.MILLISECONDS.toNanos(1200))
+                .buildTimeNanos(TimeUnit.SECONDS.toNanos(10))
+                .failed(true)
+                .build();
+
+        StringWriter writer = new StringWriter();
+        BuildMetricsWriter.write(metrics, writer);
+
+        assertThat(writer.toString())
+                .contains("gradle_build_seconds 10\n")
+                .contains("gradle_configuration_seconds 1.2\n")
+                .contains("gradle_build_failed 1\n")
+                .contains("gradle_task_duration_seconds_bucket{type=\"JavaCompile\",le=\"0.1\"} 1\n"
+                        + "gradle_task_duration_seconds_bucket{type=\"JavaCompile\",le=\"0.5\"} 1\n"
+                        + "gradle_task_duration_seconds_bucket{type=\"JavaCompile\",le=\"1\"} 1\n"
+                        + "gradle_task_duration_seconds_bucket{type=\"JavaCompile\",le=\"5\"} 2\n")
+                .contains("gradle_task_duration_seconds_bucket{type=\"JavaCompile\",le=\"+Inf\"} 2\n"
+                        + "gradle_task_duration_seconds_sum{type=\"JavaCompile\"} 2.55\n"
+                        + "gradle_task_duration_seconds_count{type=\"JavaCompile\"} 2\n")
+                .contains("# TYPE gradle_tasks_total gauge\n"
+                        + "gradle_tasks_total{type=\"Checkstyle\",outcome=\"FAILED\"} 1\n"
+                        + "gradle_tasks_total{type=\"JavaCompile\",outcome=\"EXECUTED\"} 1\n"
+                        + "gradle_tasks_total{type=\"JavaCompile\",outcome=\"FROM-CACHE\"} 1\n")
+                .contains("gradle_check_failures{task=\":foo:checkstyleMain\",type=\"Checkstyle\"} 3\n");
+    }
+
+    @Test
+    public void writesWorldReadableFile() throws IOException {
+        Path target = folder.getRoot().toPath().resolve("metrics/build.prom");
+        BuildMetrics metrics = new BuildMetrics.Builder()
+                .configurationTimeNanos(0)
+                .buildTimeNanos(0)
+                .failed(false)
+                .build();
+
+        BuildMetricsWriter.write(metrics, target);
+
+        assertThat(target).hasContent(metricsText(metrics));
+        assertThat(Files.getPosixFilePermissions(target)).isEqualTo(PosixFilePermissions.fromString("rw-r--r--"));
+        assertThat(target.getParent().toFile().list()).containsExactly("build.prom");
+    }
+
+    private static String metricsText(BuildMetrics metrics) throws IOException {
+        StringWriter writer = new StringWriter();
+        BuildMetricsWriter.write(metrics, writer);
+        return writer.toString();
+    }
+}
@@ -21,6 +21,8 @@ import static com.palantir.gradle.junit.XmlUtils.parseXml;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
 import java.util.List;
 import org.junit.Test;
 
@@ -41,4 +43,15 @@ public class CheckstyleReportHandlerTests {
                         .failures();
         assertThat(failures).containsExactlyElementsOf(CHECKSTYLE_FAILURES);
     }
+
+    @Test
+    public void testReadsFileAndSharesRepeatedValues() throws IOException, URISyntaxException {
+        List<Failure> failures = parseXml(
+                new CheckstyleReportHandler(),
+                Paths.get(testFile("two-namecheck-failures-checkstyle.xml").toURI()))
+                .failures();
+        assertThat(failures).containsExactlyElementsOf(CHECKSTYLE_FAILURES);
+        assertThat(failures.get(0).source()).isSameAs(failures.get(1).source());
+        assertThat(failures.get(0).severity()).isSameAs(failures.get(1).severity());
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.SAXParserFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compares {@link XmlUtils#parseXml} against the previous SAX based parsing on a generated 200 MB checkstyle report.
+ * Not run as part of the test suite; run {@link #main} directly, ideally with a fixed heap such as {@code -Xmx2g}.
+ */
+public final class CheckstyleReportParsingBenchmark {
+
+    private static final long TARGET_SIZE_BYTES = 200L * 1024 * 1024;
+    private static final int ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        Path report = Files.createTempFile("checkstyle-benchmark", ".xml");
+        try {
+            writeReport(report);
+            System.out.printf("Generated %d MB report at %s%n", Files.size(report) / (1024 * 1024), report);
+            for (int i = 0; i < ITERATIONS; i++) {
+                time("SAX, new factory per report", () -> parseWithSax(report));
+                time("StAX, shared factory", () -> XmlUtils.parseXml(new CheckstyleReportHandler(), report)
+                        .failures()
+                        .size());
+            }
+        } finally {
+            Files.delete(report);
+        }
+    }
+
+    private static void writeReport(Path report) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<checkstyle version=\"8.13\">\n");
+            long written = 0;
+            for (int file = 0; written < TARGET_SIZE_BYTES; file++) {
+                String fileElement = String.format(
+                        "<file name=\"/home/ubuntu/project/module-%d/src/main/java/com/example/Class%d.java\">\n",
+                        file % 600, file);
+                writer.write(fileElement);
+                written += fileElement.length();
+                for (int line = 1; line <= 20; line++) {
+                    String error = String.format("<error line=\"%d\" column=\"%d\" severity=\"error\" "
+                            + "message=\"Parameter name &apos;p%d&apos; must match pattern "
+                            + "&apos;^[a-z][a-zA-Z0-9]*$&apos;.\" "
+                            + "source=\"com.puppycrawl.tools.checkstyle.checks.naming.ParameterNameCheck\"/>\n",
+                            line * 10, line, line);
+                    writer.write(error);
+                    written += error.length();
+                }
+                writer.write("</file>\n");
+            }
+            writer.write("</checkstyle>\n");
+        }
+    }
+
+    private static int parseWithSax(Path report) throws Exception {
+        CountingHandler handler = new CountingHandler();
+        try (InputStream input = Files.newInputStream(report)) {
+            SAXParserFactory.newInstance().newSAXParser().parse(input, handler);
+        }
+        return handler.failures.size();
+    }
+
+    private static void time(String name, Parse parse) throws Exception {
+        System.gc();
+        long start = System.nanoTime();
+        int failures = parse.run();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%-30s %,9d failures in %,6d ms, %,6d MB heap in use%n",
+                name, failures, elapsedMillis, (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+    }
+
+    private interface Parse {
+        int run() throws Exception;
+    }
+
+    /** Equivalent to the SAX based {@link CheckstyleReportHandler} before it moved to StAX. */
+    private static final class CountingHandler extends DefaultHandler {
+        private final List<Failure> failures = new ArrayList<>();
+        private File file;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (qName.equals("file")) {
+                file = new File(attributes.getValue("name"));
+            } else if (qName.equals("error")) {
+                failures.add(new Failure.Builder()
+                        .source(attributes.getValue("source"))
+                        .severity(attributes.getValue("severity").toUpperCase())
+                        .file(file)
+                        .line(Integer.parseInt(attributes.getValue("line")))
+                        .message(attributes.getValue("message"))
+                        .build());
+            }
+        }
+    }
+
+    private CheckstyleReportParsingBenchmark() { }
+}
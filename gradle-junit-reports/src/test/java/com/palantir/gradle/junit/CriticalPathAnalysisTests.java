@@ -0,0 +1,108 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class CriticalPathAnalysisTests {
+
+    private static final TaskExecution A = execution(":a", 0, 2);
+    private static final TaskExecution B = execution(":b", 0, 10);
+    private static final TaskExecution C = execution(":c", 3, 5);
+    private static final TaskExecution D = execution(":d", 10, 20);
+
+    private final CriticalPathAnalysis analysis = CriticalPathAnalysis.analyze(
+            ImmutableList.of(A, B, C, D),
+            ImmutableMap.of(":c", ImmutableSet.of(":a"), ":d", ImmutableSet.of(":b", ":c")));
+
+    @Test
+    public void followsTheDependencyThatFinishedLast() {
+        assertThat(analysis.getCriticalPath()).containsExactly(B, D);
+        assertThat(analysis.getWallTimeNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(20));
+    }
+
+    @Test
+    public void measuresBusyWorkers() {
+        assertThat(analysis.getAverageBusyWorkers()).isEqualTo(1.2);
+        assertThat(analysis.getUtilizationIntervalNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(analysis.getBusyWorkers()).containsExactly(
+                2, 2, 1, 2, 2, 1, 1, 1, 1, 1,
+                1, 1, 1, 1, 1, 1, 1, 1, 1, 1);
+    }
+
+    @Test
+    public void findsTasksThatRanAlone() {
+        assertThat(analysis.getSerializingTasks()).containsExactly(
+                entry(D, TimeUnit.SECONDS.toNanos(10)),
+                entry(B, TimeUnit.SECONDS.toNanos(6)));
+    }
+
+    @Test
+    public void writesSummary() throws IOException {
+        StringWriter writer = new StringWriter();
+        analysis.writeSummary(writer);
+        assertThat(writer.toString()).isEqualToNormalizingNewlines(
+                "Ran 4 tasks in 20.000s, with 1.20 busy workers on average and 2 at most\n"
+                        + "\n"
+                        + "Critical path: 20.000s running tasks, 0.000s waiting for a worker\n"
+                        + "     10.000s  :b\n"
+                        + "     10.000s  :d\n"
+                        + "\n"
+                        + "Tasks that ran with no other task running:\n"
+                        + "     10.000s  :d\n"
+                        + "      6.000s  :b\n");
+    }
+
+    @Test
+    public void writesJson() throws IOException {
+        StringWriter writer = new StringWriter();
+        CriticalPathAnalysis.analyze(ImmutableList.of(A, C), ImmutableMap.of(":c", ImmutableSet.of(":a")))
+                .writeJson(writer);
+        assertThat(writer.toString()).isEqualTo(
+                "{\"wallTimeMillis\":5000,\"taskTimeMillis\":4000,\"taskCount\":2,\"averageBusyWorkers\":0.80"
+                        + ",\"peakBusyWorkers\":1,\n"
+                        + "\"criticalPath\":[\n"
+                        + "{\"path\":\":a\",\"outcome\":\"EXECUTED\",\"startMillis\":0,\"durationMillis\":2000"
+                        + ",\"waitMillis\":0},\n"
+                        + "{\"path\":\":c\",\"outcome\":\"EXECUTED\",\"startMillis\":3000,\"durationMillis\":2000"
+                        + ",\"waitMillis\":1000}],\n"
+                        + "\"utilization\":{\"intervalMillis\":1000,\"busyWorkers\":[1.00,1.00,0.00,1.00,1.00]},\n"
+                        + "\"serializingTasks\":[\n"
+                        + "{\"path\":\":a\",\"aloneMillis\":2000,\"durationMillis\":2000},\n"
+                        + "{\"path\":\":c\",\"aloneMillis\":2000,\"durationMillis\":2000}]}\n");
+    }
+
+    private static TaskExecution execution(String path, long startSeconds, long endSeconds) {
+        return new TaskExecution.Builder()
+                .path(path)
+                .projectPath(":")
+                .threadId(1)
+                .threadName("worker")
+                .startTimeNanos(TimeUnit.SECONDS.toNanos(100 + startSeconds))
+                .endTimeNanos(TimeUnit.SECONDS.toNanos(100 + endSeconds))
+                .outcome("EXECUTED")
+                .build();
+    }
+}
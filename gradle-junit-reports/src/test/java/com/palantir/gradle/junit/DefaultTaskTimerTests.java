@@ -0,0 +1,56 @@
+/*
+ * (c) Copyright 2017 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.gradle.api.Task;
+import org.gradle.api.tasks.TaskState;
+import org.junit.Test;
+
+public class DefaultTaskTimerTests {
+
+    @Test
+    public void timesOverlappingTasksIndependently() throws InterruptedException {
+        Task first = task(":first");
+        Task second = task(":second");
+        DefaultTaskTimer timer = new DefaultTaskTimer();
+
+        timer.beforeExecute(first);
+        Thread.sleep(50);
+        timer.beforeExecute(second);
+        timer.afterExecute(second, mock(TaskState.class));
+        timer.afterExecute(first, mock(TaskState.class));
+
+        assertThat(timer.getTaskTimeNanos(first)).isGreaterThanOrEqualTo(50_000_000L);
+        assertThat(timer.getTaskTimeNanos(second)).isLessThan(timer.getTaskTimeNanos(first));
+    }
+
+    @Test
+    public void failsForTasksThatHaveNotRun() {
+        assertThatThrownBy(() -> new DefaultTaskTimer().getTaskTimeNanos(task(":notRun")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Task task(String path) {
+        Task task = mock(Task.class);
+        when(task.getPath()).thenReturn(path);
+        return task;
+    }
+}
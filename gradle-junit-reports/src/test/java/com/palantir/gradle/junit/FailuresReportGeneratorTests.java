@@ -16,6 +16,7 @@
 package com.palantir.gradle.junit;
 
 import static com.palantir.gradle.junit.FailuresReportGenerator.failuresReport;
+import static com.palantir.gradle.junit.FailuresReportGenerator.groupedFailuresReport;
 import static com.palantir.gradle.junit.TestCommon.CHECKSTYLE_FAILURES;
 import static com.palantir.gradle.junit.TestCommon.FAILED_CHECKSTYLE_TIME_NANOS;
 import static com.palantir.gradle.junit.TestCommon.REPORT;
@@ -96,4 +97,35 @@ public final class FailuresReportGeneratorTests {
                 .build());
 
     }
+
+    @Test
+    public void testGroupedErrors() {
+        Report report = groupedFailuresReport(ROOT, "fooproject", "checkstyleTest", FAILED_CHECKSTYLE_TIME_NANOS,
+                CHECKSTYLE_FAILURES, 1, "fooproject-checkstyleTest-failures.txt.gz");
+        assertThat(report).isEqualTo(new Report.Builder()
+                .name("fooproject")
+                .subname("checkstyleTest")
+                .elapsedTimeNanos(FAILED_CHECKSTYLE_TIME_NANOS)
+                .addTestCases(new Report.TestCase.Builder()
+                        .name("ParameterNameCheck - org.example.server.FooApplication")
+                        .failure(new Report.Failure.Builder()
+                                .message("FooApplication.java:135: "
+                                        + "Parameter name 'b' must match pattern '^[a-z][a-zA-Z0-9][a-zA-Z0-9]*$'. "
+                                        + "(and 1 more)")
+                                .details("2 failures of com.puppycrawl.tools.checkstyle.checks.naming."
+                                        + "ParameterNameCheck\n"
+                                        + "fooproject/src/main/java/org/example/server/FooApplication.java:135: ERROR: "
+                                        + "Parameter name 'b' must match pattern '^[a-z][a-zA-Z0-9][a-zA-Z0-9]*$'.\n"
+                                        + "... and 1 more, listed in fooproject-checkstyleTest-failures.txt.gz\n")
+                                .build())
+                        .build())
+                .build());
+    }
+
+    @Test
+    public void testGroupedErrorsKeepSingleFailuresUnchanged() {
+        Report report = groupedFailuresReport(ROOT, "fooproject", "checkstyleTest", FAILED_CHECKSTYLE_TIME_NANOS,
+                CHECKSTYLE_FAILURES.subList(0, 1), 1, "fooproject-checkstyleTest-failures.txt.gz");
+        assertThat(report.testCases()).containsExactly(REPORT.testCases().get(0));
+    }
 }
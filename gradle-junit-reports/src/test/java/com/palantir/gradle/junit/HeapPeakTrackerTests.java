@@ -0,0 +1,55 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class HeapPeakTrackerTests {
+    private static final int ALLOCATION_BYTES = 64 * 1024 * 1024;
+
+    @Test
+    public void tracksHeapUsageWithoutResettingPoolPeaks() {
+        List<Long> poolPeaksBefore = heapPoolPeaks();
+        HeapPeakTracker outer = HeapPeakTracker.start();
+        byte[] allocation = new byte[ALLOCATION_BYTES];
+        HeapPeakTracker inner = HeapPeakTracker.start();
+        long innerPeak = inner.stop();
+        long outerPeak = outer.stop();
+
+        assertThat(allocation).hasSize(ALLOCATION_BYTES);
+        assertThat(innerPeak).isGreaterThanOrEqualTo(ALLOCATION_BYTES);
+        assertThat(outerPeak).isGreaterThanOrEqualTo(ALLOCATION_BYTES);
+        List<Long> poolPeaksAfter = heapPoolPeaks();
+        for (int i = 0; i < poolPeaksBefore.size(); i++) {
+            assertThat(poolPeaksAfter.get(i)).isGreaterThanOrEqualTo(poolPeaksBefore.get(i));
+        }
+    }
+
+    private static List<Long> heapPoolPeaks() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .map(MemoryPoolMXBean::getPeakUsage)
+                .map(usage -> usage.getUsed())
+                .collect(Collectors.toList());
+    }
+}
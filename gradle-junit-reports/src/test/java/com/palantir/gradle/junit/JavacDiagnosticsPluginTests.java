@@ -0,0 +1,96 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.Streams;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gradle.api.Project;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JavacDiagnosticsPluginTests {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void passesOutputFileAsSinglePluginArgument() throws IOException {
+        Project project = project("project with spaces");
+        JavaCompile javac = compileJava(project);
+
+        JavacDiagnosticsPlugin.useCompilerPlugin(javac);
+
+        List<String> args = compilerArgs(javac);
+        assertThat(args).containsExactly("-Xplugin:BaselineJavacDiagnostics --out "
+                + JavacDiagnosticsPlugin.diagnosticsFile(javac).toUri());
+        assertThat(args.get(0).split(" ")).hasSize(3);
+        // Gradle doesn't cache tasks with lambdas in their inputs
+        assertThat(javac.getOptions().getCompilerArgumentProviders())
+                .allSatisfy(provider -> assertThat(provider.getClass().isSynthetic()).isFalse());
+    }
+
+    @Test
+    public void addsPluginToProcessorPath() throws IOException {
+        Project project = project("project");
+        JavaCompile javac = compileJava(project);
+
+        JavacDiagnosticsPlugin.useCompilerPlugin(javac);
+        File pluginJar = folder.newFile("baseline-javac-diagnostics-plugin.jar");
+        project.getDependencies().add("baselineJavacDiagnostics", project.files(pluginJar));
+
+        assertThat(javac.getOptions().getAnnotationProcessorPath().getFiles()).containsExactly(pluginJar);
+    }
+
+    @Test
+    public void leavesTaskUntouchedUntilTaskGraphIsReady() throws IOException {
+        Project project = project("project");
+        JavaCompile javac = compileJava(project);
+        FileCollection processorPath = javac.getOptions().getAnnotationProcessorPath();
+        int actions = javac.getActions().size();
+
+        JavacDiagnosticsPlugin.configure(javac, project.provider(() -> true));
+
+        assertThat(javac.getOptions().getCompilerArgumentProviders()).isEmpty();
+        assertThat(javac.getOptions().getAnnotationProcessorPath()).isSameAs(processorPath);
+        assertThat(javac.getActions()).hasSize(actions);
+        assertThat(project.getConfigurations().findByName("baselineJavacDiagnostics")).isNull();
+    }
+
+    private Project project(String name) throws IOException {
+        Project project = ProjectBuilder.builder().withName(name).withProjectDir(folder.newFolder(name)).build();
+        project.getPluginManager().apply(JavaPlugin.class);
+        return project;
+    }
+
+    private static JavaCompile compileJava(Project project) {
+        return (JavaCompile) project.getTasks().getByName(JavaPlugin.COMPILE_JAVA_TASK_NAME);
+    }
+
+    private static List<String> compilerArgs(JavaCompile javac) {
+        return javac.getOptions().getCompilerArgumentProviders().stream()
+                .flatMap(provider -> Streams.stream(provider.asArguments()))
+                .collect(Collectors.toList());
+    }
+}
@@ -18,10 +18,19 @@ package com.palantir.gradle.junit;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public final class JavacFailuresSupplierTest {
 
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
     private static final String CLASS_FILE = "/tmp/ab1/src/main/java/com/example/MyClass.java";
     private static final int LINE_1 = 8;
     private static final String ERROR_1 = "incompatible types: String cannot be converted to int";
@@ -33,14 +42,14 @@ public final class JavacFailuresSupplierTest {
                     + "\n        ^                                                        ";
 
     @Test
-    public void noFailuresInEmptyOutput() {
+    public void noFailuresInEmptyOutput() throws IOException {
         String javacOutput = "";
         JavacFailuresSupplier supplier = new JavacFailuresSupplier(new StringBuilder(javacOutput));
         assertThat(supplier.getFailures()).isEmpty();
     }
 
     @Test
-    public void noFailuresInOutputWithOnlyWarnings() {
+    public void noFailuresInOutputWithOnlyWarnings() throws IOException {
         String javacOutput = "warning: [options] bootstrap class path not set in conjunction with -source 1.7\n"
                 + "Note: " + CLASS_FILE + " uses unchecked or unsafe operations.\n"
                 + "Note: Recompile with -Xlint:unchecked for details.               \n"
@@ -50,7 +59,7 @@ public final class JavacFailuresSupplierTest {
     }
 
     @Test
-    public void twoFailuresInOutputWithNoWarnings() {
+    public void twoFailuresInOutputWithNoWarnings() throws IOException {
         String javacOutput = CLASS_FILE + ":" + LINE_1 + ": error: " + ERROR_1 + DETAIL_1 + "\n"
                 + CLASS_FILE + ":" + LINE_2 + ": error: " + ERROR_2 + DETAIL_2 + "\n";
         JavacFailuresSupplier supplier = new JavacFailuresSupplier(new StringBuilder(javacOutput));
@@ -70,4 +79,33 @@ public final class JavacFailuresSupplierTest {
                         .details(DETAIL_2)
                         .build());
     }
+
+    @Test
+    public void readsErrorsFromDiagnosticsPlugin() throws IOException {
+        Path diagnostics = folder.newFile("diagnostics.tsv").toPath();
+        Files.write(diagnostics, ("MANDATORY_WARNING\tcompiler.warn.unchecked.call.mbr.of.raw.type\t4\t23\t"
+                + CLASS_FILE + "\tunchecked call to add(E) as a member of the raw type java.util.List\n"
+                + "ERROR\tcompiler.err.prob.found.req\t" + LINE_1 + "\t38\t" + CLASS_FILE + "\t" + ERROR_1 + "\n"
+                + "ERROR\tcompiler.err.cant.resolve.location.args\t" + LINE_2 + "\t47\t" + CLASS_FILE
+                + "\tcannot find symbol\\n  symbol:   method undefinedCall()\\n  location: class Foo\n"
+                + "ERROR\tcompiler.err.error.reading.file\t-1\t-1\t\terror reading file\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        JavacFailuresSupplier supplier = new JavacFailuresSupplier(
+                new StringBuilder("ignored.java:1: error: ignored\n"), () -> Optional.of(diagnostics));
+        assertThat(supplier.getFailures()).containsExactly(
+                new Failure.Builder()
+                        .file(new File(CLASS_FILE))
+                        .line(LINE_1)
+                        .severity("ERROR")
+                        .message(ERROR_1)
+                        .build(),
+                new Failure.Builder()
+                        .file(new File(CLASS_FILE))
+                        .line(LINE_2)
+                        .severity("ERROR")
+                        .message("cannot find symbol")
+                        .details("\n  symbol:   method undefinedCall()\n  location: class Foo")
+                        .build());
+    }
 }
@@ -15,37 +15,60 @@
  */
 package com.palantir.gradle.junit;
 
-import static com.palantir.gradle.junit.JunitReportCreator.reportToXml;
+import static com.palantir.gradle.junit.JunitReportCreator.writeReport;
 import static com.palantir.gradle.junit.TestCommon.REPORT;
 import static com.palantir.gradle.junit.TestCommon.readTestFile;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.IOException;
 import java.io.StringWriter;
-import javax.xml.transform.TransformerException;
 import org.junit.Test;
-import org.w3c.dom.Document;
 
 public final class JunitReportCreatorTests {
 
     @Test
-    public void testNoErrors() throws TransformerException {
-        Document junitReport = reportToXml(new Report.Builder()
+    public void testNoErrors() throws IOException {
+        StringWriter writer = new StringWriter();
+        writeReport(new Report.Builder()
                 .name("myproject")
                 .subname("checkstyleMain")
                 .elapsedTimeNanos(123_000_000_000L)
-                .build());
-        String xml = XmlUtils.write(new StringWriter(), junitReport).toString()
+                .build(), writer);
+        String xml = writer.toString()
                 .replaceAll("\\p{Blank}*(?=<)", "");
 
         assertThat(xml).isEqualTo(readTestFile("empty-checkstyle-report.xml"));
     }
 
     @Test
-    public void testTwoErrors() throws TransformerException {
-        Document junitReport = reportToXml(REPORT);
-        String xml = XmlUtils.write(new StringWriter(), junitReport).toString()
+    public void testTwoErrors() throws IOException {
+        StringWriter writer = new StringWriter();
+        writeReport(REPORT, writer);
+        String xml = writer.toString()
                 .replaceAll("\\p{Blank}*(?=<)", "");
 
         assertThat(xml).isEqualTo(readTestFile("two-namecheck-failures-checkstyle-report.xml"));
     }
+
+    @Test
+    public void testProperties() throws IOException {
+        StringWriter writer = new StringWriter();
+        writeReport(new Report.Builder()
+                .name("gradle")
+                .subname("gradle")
+                .elapsedTimeNanos(1_000_000_000L)
+                .addTestCases(new Report.TestCase.Builder()
+                        .name(":foo:bar")
+                        .putProperties("cpuTimeMillis", "12")
+                        .putProperties("gcCount", "0")
+                        .build())
+                .build(), writer);
+
+        assertThat(writer.toString()).contains("<testcase id=\":foo:bar\" name=\":foo:bar\">\n"
+                + "<properties>\n"
+                + "<property name=\"cpuTimeMillis\" value=\"12\"/>\n"
+                + "<property name=\"gcCount\" value=\"0\"/>\n"
+                + "</properties>\n"
+                + "</testcase>\n");
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReportConsolidatorTests {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mergesTestClassesIntoOneSuitePerTask() throws IOException {
+        Path reportsDir = folder.getRoot().toPath().resolve("reports");
+        write(reportsDir.resolve("junit/foo/test/TEST-com.foo.ATest.xml"),
+                "<testsuite name=\"com.foo.ATest\" tests=\"2\" skipped=\"0\" failures=\"1\" errors=\"0\" time=\"1.5\">"
+                        + "<properties/>"
+                        + "<testcase name=\"a1\" classname=\"com.foo.ATest\" time=\"1.0\"/>"
+                        + "<testcase name=\"a2\" classname=\"com.foo.ATest\" time=\"0.5\">"
+                        + "<failure message=\"boom\" type=\"java.lang.AssertionError\">a &lt; b</failure>"
+                        + "</testcase>"
+                        + "<system-out><![CDATA[lots of output]]></system-out>"
+                        + "</testsuite>");
+        write(reportsDir.resolve("junit/foo/test/TEST-com.foo.BTest.xml"),
+                "<testsuite name=\"com.foo.BTest\" tests=\"1\" skipped=\"1\" failures=\"0\" errors=\"0\" time=\"0.25\">"
+                        + "<testcase name=\"b1\" classname=\"com.foo.BTest\" time=\"0.0\"><skipped/></testcase>"
+                        + "</testsuite>");
+        write(reportsDir.resolve("checkstyle/foo-checkstyleMain.xml"),
+                "<testsuites><testsuite failures=\"0\" name=\"checkstyleMain\" tests=\"0\" time=\"0.100\"/>"
+                        + "</testsuites>");
+
+        Path outputDir = folder.getRoot().toPath().resolve("consolidated");
+        List<Path> files = ReportConsolidator.consolidate(reportsDir, outputDir, Long.MAX_VALUE, false);
+
+        assertThat(files).containsExactly(outputDir.resolve("junit-1.xml"));
+        assertThat(new String(Files.readAllBytes(files.get(0)), StandardCharsets.UTF_8)).isEqualTo(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<testsuites>\n"
+                        + "<testsuite errors=\"0\" failures=\"0\" name=\"checkstyle/foo-checkstyleMain.xml\" "
+                        + "skipped=\"0\" tests=\"0\" time=\"0.100\">\n"
+                        + "</testsuite>\n"
+                        + "<testsuite errors=\"0\" failures=\"1\" name=\"junit/foo/test\" "
+                        + "skipped=\"1\" tests=\"3\" time=\"1.750\">\n"
+                        + "<testcase name=\"a1\" classname=\"com.foo.ATest\" time=\"1.0\"></testcase>\n"
+                        + "<testcase name=\"a2\" classname=\"com.foo.ATest\" time=\"0.5\">"
+                        + "<failure message=\"boom\" type=\"java.lang.AssertionError\">a &lt; b</failure>"
+                        + "</testcase>\n"
+                        + "<testcase name=\"b1\" classname=\"com.foo.BTest\" time=\"0.0\"><skipped></skipped>"
+                        + "</testcase>\n"
+                        + "</testsuite>\n"
+                        + "</testsuites>\n");
+    }
+
+    @Test
+    public void splitsFilesAtSuiteBoundariesAndReplacesPreviousOutput() throws IOException {
+        Path reportsDir = folder.getRoot().toPath().resolve("reports");
+        for (String task : new String[] {"a", "b", "c"}) {
+            write(reportsDir.resolve("junit/" + task + "/test/TEST-Foo.xml"),
+                    "<testsuite name=\"Foo\" tests=\"1\"><testcase name=\"foo\"/></testsuite>");
+        }
+        Path outputDir = folder.getRoot().toPath().resolve("consolidated");
+        write(outputDir.resolve("junit-7.xml"), "stale");
+
+        List<Path> files = ReportConsolidator.consolidate(reportsDir, outputDir, 1, true);
+
+        assertThat(files).containsExactly(
+                outputDir.resolve("junit-1.xml.gz"),
+                outputDir.resolve("junit-2.xml.gz"),
+                outputDir.resolve("junit-3.xml.gz"));
+        assertThat(outputDir.resolve("junit-7.xml")).doesNotExist();
+        assertThat(gunzip(files.get(1))).contains("name=\"junit/b/test\"").doesNotContain("junit/a/test");
+    }
+
+    @Test
+    public void capsGzippedFilesByTheCompressedBytesWrittenSoFar() throws IOException {
+        Path reportsDir = folder.getRoot().toPath().resolve("reports");
+        for (String suite : new String[] {"a", "b"}) {
+            StringBuilder report = new StringBuilder("<testsuite name=\"" + suite + "\" tests=\"100\">");
+            for (int i = 0; i < 100; i++) {
+                report.append("<testcase name=\"").append(Integer.toHexString(i * 0x9E3779B9)).append("\"/>");
+            }
+            write(reportsDir.resolve(suite + ".xml"), report.append("</testsuite>").toString());
+        }
+
+        Path outputDir = folder.getRoot().toPath().resolve("consolidated");
+        List<Path> files = ReportConsolidator.consolidate(reportsDir, outputDir, 256, true);
+
+        assertThat(files).containsExactly(outputDir.resolve("junit-1.xml.gz"), outputDir.resolve("junit-2.xml.gz"));
+        assertThat(gunzip(files.get(0))).contains("name=\"a.xml\"").doesNotContain("name=\"b.xml\"");
+    }
+
+    private static void write(Path file, String contents) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String gunzip(Path file) throws IOException {
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8);
+        }
+    }
+}
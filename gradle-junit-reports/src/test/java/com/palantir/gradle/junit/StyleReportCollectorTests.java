@@ -20,49 +20,40 @@ import static com.palantir.gradle.junit.TestCommon.ROOT;
 import static com.palantir.gradle.junit.TestCommon.readTestFile;
 import static com.palantir.gradle.junit.TestCommon.testFile;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import javax.xml.transform.TransformerException;
 import org.gradle.api.Project;
 import org.gradle.api.plugins.quality.Checkstyle;
 import org.gradle.api.reporting.SingleFileReport;
+import org.gradle.api.tasks.TaskState;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
-public class JunitReportsFinalizerTests {
+public class StyleReportCollectorTests {
 
     @Rule public final TemporaryFolder projectDir = new TemporaryFolder();
 
     @Test
-    public void translatesCheckstyleReport() throws IOException, TransformerException {
+    public void translatesCheckstyleReport() throws IOException {
         Project project = ProjectBuilder.builder().withName("fooproject").withProjectDir(projectDir.getRoot()).build();
         Checkstyle checkstyle = createCheckstyleTask(project);
 
         checkstyle.setDidWork(true);
 
-        TaskTimer timer = mock(TaskTimer.class);
-        when(timer.getTaskTimeNanos(checkstyle)).thenReturn(FAILED_CHECKSTYLE_TIME_NANOS);
-
-        File targetFile = new File(projectDir.getRoot(), "reports/report.xml");
-
-        JunitReportsFinalizer finalizer = (JunitReportsFinalizer) project
-                .task(ImmutableMap.of("type", JunitReportsFinalizer.class), "checkstyleTestCircleFinalizer");
-        finalizer.setStyleTask(checkstyle);
-        finalizer.setTaskTimer(timer);
-        finalizer.setFailuresSupplier(XmlReportFailuresSupplier.create(checkstyle, new CheckstyleReportHandler()));
-        finalizer.getTargetFile().set(targetFile);
-
-        finalizer.createCircleReport();
+        StyleReportCollector collector = createCollector(project, checkstyle);
+        collector.afterExecute(checkstyle, mock(TaskState.class));
+        collector.awaitCompletion();
 
+        File targetFile = new File(projectDir.getRoot(), "reports/fooproject-checkstyleTest.xml");
         String report = Resources.toString(targetFile.toURI().toURL(), StandardCharsets.UTF_8)
                 .replaceAll("\\p{Blank}*(?=<)", "");
         String expectedReport = Resources.toString(
@@ -72,28 +63,43 @@ public class JunitReportsFinalizerTests {
     }
 
     @Test
-    public void doesNothingIfTaskSkipped() throws IOException, TransformerException {
+    public void doesNothingIfTaskSkipped() throws IOException {
         Project project = ProjectBuilder.builder().withName("fooproject").withProjectDir(projectDir.getRoot()).build();
         Checkstyle checkstyle = createCheckstyleTask(project);
 
         checkstyle.setDidWork(false);
 
-        TaskTimer timer = mock(TaskTimer.class);
-        when(timer.getTaskTimeNanos(checkstyle)).thenReturn(FAILED_CHECKSTYLE_TIME_NANOS);
+        StyleReportCollector collector = createCollector(project, checkstyle);
+        collector.afterExecute(checkstyle, mock(TaskState.class));
+        collector.awaitCompletion();
+
+        assertThat(new File(projectDir.getRoot(), "reports")).doesNotExist();
+    }
 
-        File targetFile = new File(projectDir.getRoot(), "reports/report.xml");
+    @Test
+    public void rethrowsFailuresToWriteReports() throws IOException {
+        Project project = ProjectBuilder.builder().withName("fooproject").withProjectDir(projectDir.getRoot()).build();
+        Checkstyle checkstyle = createCheckstyleTask(project);
+        checkstyle.getReports().getByName("xml").setDestination(new File(projectDir.getRoot(), "missing.xml"));
+
+        checkstyle.setDidWork(true);
 
-        JunitReportsFinalizer finalizer = (JunitReportsFinalizer) project
-                .task(ImmutableMap.of("type", JunitReportsFinalizer.class), "checkstyleTestCircleFinalizer");
-        finalizer.setStyleTask(checkstyle);
-        finalizer.setTaskTimer(timer);
-        finalizer.setFailuresSupplier(XmlReportFailuresSupplier.create(checkstyle, new CheckstyleReportHandler()));
-        finalizer.getTargetFile().set(targetFile);
+        StyleReportCollector collector = createCollector(project, checkstyle);
+        collector.afterExecute(checkstyle, mock(TaskState.class));
 
-        finalizer.createCircleReport();
+        assertThatThrownBy(collector::awaitCompletion).hasMessageStartingWith("Failed to write junit report");
+    }
+
+    private StyleReportCollector createCollector(Project project, Checkstyle checkstyle) {
+        TaskTimer timer = mock(TaskTimer.class);
+        when(timer.getTaskTimeNanos(checkstyle)).thenReturn(FAILED_CHECKSTYLE_TIME_NANOS);
 
-        assertThat(targetFile).doesNotExist();
-        assertThat(finalizer.getDidWork()).isFalse();
+        StyleReportCollector collector = new StyleReportCollector(timer);
+        collector.register(
+                checkstyle,
+                XmlReportFailuresSupplier.create(checkstyle, new CheckstyleReportHandler()),
+                project.provider(() -> project.getLayout().getProjectDirectory().dir("reports")));
+        return collector;
     }
 
     private Checkstyle createCheckstyleTask(Project project) throws IOException {
@@ -0,0 +1,120 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestReportPostProcessorTests {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsHeadAndTailOfLongOutput() throws IOException {
+        Path rawDir = folder.getRoot().toPath().resolve("raw");
+        Path targetDir = folder.getRoot().toPath().resolve("target");
+        write(rawDir.resolve("TEST-com.foo.ATest.xml"),
+                "<testsuite name=\"com.foo.ATest\" tests=\"1\">"
+                        + "<testcase name=\"a1\" classname=\"com.foo.ATest\" time=\"1.0\">"
+                        + "<system-out><![CDATA[0123456789abcdefghij]]></system-out>"
+                        + "</testcase>"
+                        + "<system-out><![CDATA[short]]></system-out>"
+                        + "<system-err><![CDATA[ABCDEFGHIJ]]></system-err>"
+                        + "</testsuite>");
+
+        new TestReportPostProcessor(8, 6).process(rawDir, targetDir);
+
+        assertThat(read(targetDir.resolve("TEST-com.foo.ATest.xml"))).isEqualTo(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<testsuite name=\"com.foo.ATest\" tests=\"1\">"
+                        + "<testcase name=\"a1\" classname=\"com.foo.ATest\" time=\"1.0\">"
+                        + "<system-out>0123\n[... 12 characters truncated; the full output is in "
+                        + "output/TEST-com.foo.ATest-1-system-out.txt ...]\nghij</system-out>"
+                        + "</testcase>"
+                        + "<system-out>short</system-out>"
+                        + "<system-err>ABC\n[... 4 characters truncated; the full output is in "
+                        + "output/TEST-com.foo.ATest-3-system-err.txt ...]\nHIJ</system-err>"
+                        + "</testsuite>");
+        assertThat(read(targetDir.resolve("output/TEST-com.foo.ATest-1-system-out.txt")))
+                .isEqualTo("0123456789abcdefghij");
+        assertThat(read(targetDir.resolve("output/TEST-com.foo.ATest-3-system-err.txt"))).isEqualTo("ABCDEFGHIJ");
+        assertThat(targetDir.resolve("output/TEST-com.foo.ATest-2-system-out.txt")).doesNotExist();
+    }
+
+    @Test
+    public void copiesOutputUnchangedWhenUncapped() throws IOException {
+        Path rawDir = folder.getRoot().toPath().resolve("raw");
+        Path targetDir = folder.getRoot().toPath().resolve("target");
+        write(rawDir.resolve("TEST-com.foo.ATest.xml"),
+                "<testsuite name=\"com.foo.ATest\"><system-out><![CDATA[a < b]]></system-out></testsuite>");
+        write(targetDir.resolve("TEST-com.foo.Deleted.xml"), "<testsuite/>");
+
+        new TestReportPostProcessor(Integer.MAX_VALUE, Integer.MAX_VALUE).process(rawDir, targetDir);
+
+        assertThat(read(targetDir.resolve("TEST-com.foo.ATest.xml"))).isEqualTo(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<testsuite name=\"com.foo.ATest\"><system-out>a &lt; b</system-out></testsuite>");
+        assertThat(targetDir.resolve("TEST-com.foo.Deleted.xml")).doesNotExist();
+        assertThat(targetDir.resolve("output")).doesNotExist();
+    }
+
+    @Test
+    public void addsSuiteProperties() throws IOException {
+        Path rawDir = folder.getRoot().toPath().resolve("raw");
+        Path targetDir = folder.getRoot().toPath().resolve("target");
+        write(rawDir.resolve("TEST-com.foo.ATest.xml"),
+                "<testsuite name=\"com.foo.ATest\"><properties/><testcase name=\"a1\"/></testsuite>");
+        write(rawDir.resolve("TEST-com.foo.BTest.xml"),
+                "<testsuite name=\"com.foo.BTest\"><properties/><testcase name=\"b1\"/></testsuite>");
+        String rawReport = read(rawDir.resolve("TEST-com.foo.ATest.xml"));
+
+        new TestReportPostProcessor(Integer.MAX_VALUE, Integer.MAX_VALUE,
+                ImmutableMap.of("com.foo.ATest", ImmutableMap.of("cpuTimeMillis", "12", "gcCount", "3")))
+                .process(rawDir, targetDir);
+
+        assertThat(read(targetDir.resolve("TEST-com.foo.ATest.xml"))).isEqualTo(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<testsuite name=\"com.foo.ATest\"><properties>"
+                        + "<property name=\"cpuTimeMillis\" value=\"12\"/><property name=\"gcCount\" value=\"3\"/>"
+                        + "</properties><testcase name=\"a1\"></testcase></testsuite>");
+        assertThat(read(targetDir.resolve("TEST-com.foo.BTest.xml"))).isEqualTo(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                        + "<testsuite name=\"com.foo.BTest\"><properties></properties>"
+                        + "<testcase name=\"b1\"></testcase></testsuite>");
+        try (Stream<Path> files = Files.list(targetDir)) {
+            assertThat(files).hasSize(2);
+        }
+        assertThat(read(rawDir.resolve("TEST-com.foo.ATest.xml"))).isEqualTo(rawReport);
+    }
+
+    private static void write(Path path, String contents) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path path) throws IOException {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestResourceProfilesTests {
+
+    @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void addsUpClassesThatRanInSeveralForks() throws IOException {
+        Path dir = folder.getRoot().toPath();
+        Files.write(dir.resolve("profile-1.txt"),
+                "com.foo.ATest 2000000 100 1 5 1000\ncom.foo.BTest -1 -1 0 0 500\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("profile-2.txt"),
+                "com.foo.ATest 3000000 50 2 10 800\n".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, TaskResourceUsage> profiles = TestResourceProfiles.read(dir);
+
+        assertThat(profiles).containsOnlyKeys("com.foo.ATest", "com.foo.BTest");
+        assertThat(profiles.get("com.foo.ATest").asProperties()).containsExactly(
+                entry("cpuTimeMillis", "5"),
+                entry("allocatedBytes", "150"),
+                entry("gcCount", "3"),
+                entry("gcTimeMillis", "15"),
+                entry("peakHeapBytes", "1000"));
+        assertThat(profiles.get("com.foo.BTest").cpuTimeNanos()).isEqualTo(-1);
+    }
+
+    @Test
+    public void listenerJarHasEveryListenerClass() throws IOException, URISyntaxException {
+        Path classesDir = Paths.get(TestResourceProfiles.class.getResource("TestResourceProfiles.class").toURI())
+                .getParent();
+        Set<String> listenerClasses;
+        try (Stream<Path> files = Files.list(classesDir)) {
+            listenerClasses = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("TestResourceProfileListener")
+                            || name.startsWith("HeapPeakTracker"))
+                    .map(name -> "com/palantir/gradle/junit/" + name)
+                    .collect(Collectors.toSet());
+        }
+        Path jarFile = folder.getRoot().toPath().resolve("listener.jar");
+
+        TestResourceProfiles.writeListenerJar(jarFile);
+
+        try (JarFile jar = new JarFile(jarFile.toFile())) {
+            assertThat(jar.stream().map(JarEntry::getName)).containsExactlyInAnyOrder(Stream.concat(
+                    listenerClasses.stream(),
+                    Stream.of("META-INF/services/org.junit.platform.launcher.TestExecutionListener"))
+                    .toArray(String[]::new));
+        }
+    }
+
+    @Test
+    public void hasNoProfilesWithoutDirectory() throws IOException {
+        assertThat(TestResourceProfiles.read(folder.getRoot().toPath().resolve("missing"))).isEmpty();
+    }
+
+    @Test
+    public void enablesProfilingOfEachTaskThatHasTheTaskProperty() {
+        Project project = ProjectBuilder.builder().withProjectDir(folder.getRoot()).build();
+        org.gradle.api.tasks.testing.Test test =
+                project.getTasks().create("test", org.gradle.api.tasks.testing.Test.class);
+        org.gradle.api.tasks.testing.Test other =
+                project.getTasks().create("other", org.gradle.api.tasks.testing.Test.class);
+        Property<Boolean> projectEnabled = project.getObjects().property(Boolean.class);
+        projectEnabled.set(false);
+
+        Property<Boolean> enabled = TestResourceProfiles.addTaskProperty(test, projectEnabled);
+        assertThat(TestResourceProfiles.isEnabled(test)).isFalse();
+        projectEnabled.set(true);
+        assertThat(TestResourceProfiles.isEnabled(test)).isTrue();
+        enabled.set(false);
+        assertThat(TestResourceProfiles.isEnabled(test)).isFalse();
+        assertThat(TestResourceProfiles.isEnabled(other)).isFalse();
+    }
+}
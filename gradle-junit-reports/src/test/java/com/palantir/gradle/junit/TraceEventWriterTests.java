@@ -0,0 +1,149 @@
+/*
+ * (c) Copyright 2019 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.junit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.tasks.TaskState;
+import org.junit.Test;
+
+public class TraceEventWriterTests {
+
+    @Test
+    public void writesCompleteEventsPerThread() throws IOException {
+        TaskExecution compile = new TaskExecution.Builder()
+                .path(":foo:compileJava")
+                .projectPath(":foo")
+                .threadId(7)
+                .threadName("Task worker \"1\"")
+                .startTimeNanos(1_002_000_000L)
+                .endTimeNanos(1_500_000_000L)
+                .outcome("EXECUTED")
+                .build();
+        TaskExecution jar = compile.toBuilder()
+                .path(":foo:jar")
+                .startTimeNanos(1_500_000_000L)
+                .endTimeNanos(1_500_010_000L)
+                .outcome("UP-TO-DATE")
+                .build();
+
+        StringWriter writer = new StringWriter();
+        TraceEventWriter.writeTrace(ImmutableList.of(compile, jar), 1_000_000_000L, writer);
+
+        assertThat(writer.toString()).isEqualTo("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n"
+                + "{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"args\":{\"name\":\"gradle\"}},\n"
+                + "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":7,"
+                + "\"args\":{\"name\":\"Task worker \\\"1\\\"\"}},\n"
+                + "{\"name\":\":foo:compileJava\",\"cat\":\"EXECUTED\",\"ph\":\"X\",\"pid\":1,\"tid\":7,"
+                + "\"ts\":2000,\"dur\":498000,\"args\":{\"project\":\":foo\",\"outcome\":\"EXECUTED\"}},\n"
+                + "{\"name\":\":foo:jar\",\"cat\":\"UP-TO-DATE\",\"ph\":\"X\",\"pid\":1,\"tid\":7,"
+                + "\"ts\":500000,\"dur\":10,\"args\":{\"project\":\":foo\",\"outcome\":\"UP-TO-DATE\"}}\n"
+                + "]}\n");
+    }
+
+    @Test
+    public void recordsOutcomes() {
+        AtomicLong clock = new AtomicLong();
+        TaskExecutionRecorder recorder = new TaskExecutionRecorder(clock::incrementAndGet);
+        Task executed = task(":executed");
+        Task fromCache = task(":fromCache");
+        Task failed = task(":failed");
+
+        recorder.beforeExecute(executed);
+        recorder.beforeExecute(fromCache);
+        recorder.beforeExecute(failed);
+        recorder.afterExecute(failed, state(new RuntimeException(), null, true));
+        recorder.afterExecute(fromCache, state(null, "FROM-CACHE", false));
+        recorder.afterExecute(executed, state(null, null, true));
+
+        String thread = Thread.currentThread().getName();
+        assertThat(recorder.getExecutions())
+                .extracting(TaskExecution::path, TaskExecution::outcome, TaskExecution::threadName)
+                .containsExactly(
+                        tuple(":executed", "EXECUTED", thread),
+                        tuple(":fromCache", "FROM-CACHE", thread),
+                        tuple(":failed", "FAILED", thread));
+    }
+
+    @Test
+    public void timesTasks() {
+        AtomicLong clock = new AtomicLong();
+        TaskExecutionRecorder recorder = new TaskExecutionRecorder(clock::get);
+        Task first = task(":first");
+        Task second = task(":second");
+
+        clock.set(10);
+        recorder.beforeExecute(first);
+        clock.set(20);
+        recorder.beforeExecute(second);
+        clock.set(25);
+        recorder.afterExecute(second, state(null, null, true));
+        clock.set(40);
+        recorder.afterExecute(first, state(null, null, true));
+
+        assertThat(recorder.getTaskTimeNanos(first)).isEqualTo(30);
+        assertThat(recorder.getTaskTimeNanos(second)).isEqualTo(5);
+        assertThatThrownBy(() -> recorder.getTaskTimeNanos(task(":notRun")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void recordsResourceUsage() {
+        TaskExecutionRecorder recorder = new TaskExecutionRecorder();
+        Task task = task(":allocates");
+
+        recorder.beforeExecute(task);
+        byte[][] allocated = new byte[64][];
+        for (int i = 0; i < allocated.length; i++) {
+            allocated[i] = new byte[64 * 1024];
+        }
+        recorder.afterExecute(task, state(null, null, allocated.length > 0));
+
+        TaskResourceUsage usage = recorder.getResourceUsageByTaskPath().get(":allocates");
+        assertThat(usage.allocatedBytes()).isGreaterThanOrEqualTo(64L * 64 * 1024);
+        assertThat(usage.cpuTimeNanos()).isGreaterThanOrEqualTo(0);
+        assertThat(usage.peakHeapBytes()).isGreaterThan(0);
+        assertThat(usage.asProperties()).containsOnlyKeys(
+                "cpuTimeMillis", "allocatedBytes", "gcCount", "gcTimeMillis", "peakHeapBytes");
+    }
+
+    private static Task task(String path) {
+        Project project = mock(Project.class);
+        when(project.getPath()).thenReturn(":");
+        Task task = mock(Task.class);
+        when(task.getPath()).thenReturn(path);
+        when(task.getProject()).thenReturn(project);
+        return task;
+    }
+
+    private static TaskState state(Throwable failure, String skipMessage, boolean didWork) {
+        TaskState state = mock(TaskState.class);
+        when(state.getFailure()).thenReturn(failure);
+        when(state.getSkipMessage()).thenReturn(skipMessage);
+        when(state.getDidWork()).thenReturn(didWork);
+        return state;
+    }
+}